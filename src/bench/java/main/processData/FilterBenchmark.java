@@ -0,0 +1,84 @@
+package main.processData;
+
+import main.utility.PropertyAssessments;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The FilterBenchmark class times the filters of ProcessData with and without parallel row tests
+ * over growing numbers of rows, to show where the parallel mode starts to pay off and to pick the threshold.
+ * Run it with the path of an assessment CSV file as the only argument, the default is the bundled CSV.
+ * It is a development tool, so it lives in src/bench and is not part of the application build.
+ * <p>
+ * Author: Fahad Ali
+ */
+public class FilterBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 20;
+
+    /**
+     * Private constructor, this class only has a main method.
+     */
+    private FilterBenchmark() {
+    }
+
+    /**
+     * Run the benchmark and print the average time of every filter for every list size.
+     *
+     * @param args the path of the CSV file, optional
+     */
+    public static void main(String[] args) {
+        String csvFileName = args.length > 0 ? args[0] : "src/main/java/main/Property_Assessment_Data_2023.csv";
+        ProcessData processData = new ProcessData(csvFileName);
+        processData.processFile();
+        PropertyAssessments all = processData.filterByAssessedValue(Integer.MIN_VALUE, Integer.MAX_VALUE, null);
+        System.out.println("rows " + all.size() + ", threads " + ForkJoinPool.getCommonPoolParallelism());
+        System.out.printf("%10s %-12s %14s %14s%n", "rows", "filter", "sequential us", "parallel us");
+
+        for (int size = 1024; ; size *= 4) {
+            int rows = Math.min(size, all.size());
+            // a prefix of the properties sorted by assessed value is not an indexed list, so every row is tested
+            PropertyAssessments sample = new PropertyAssessments(all.getStore(), all.getRows(), rows);
+            time(processData, sample, "address", () -> processData.filterByAddress("10 ave", sample));
+            time(processData, sample, "neighborhood", () -> processData.filterByNeighborhood("e", sample));
+            time(processData, sample, "filters", () ->
+                    processData.filters("1", "a", null, "st", 0, Integer.MAX_VALUE, sample));
+            if (rows == all.size()) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Time one filter sequentially and in parallel and print one line.
+     *
+     * @param processData the ProcessData to configure
+     * @param sample      the rows being filtered
+     * @param name        the name of the filter
+     * @param filter      runs the filter once
+     */
+    private static void time(ProcessData processData, PropertyAssessments sample, String name, Runnable filter) {
+        processData.setParallelThreshold(Integer.MAX_VALUE);
+        long sequential = averageMicros(filter);
+        processData.setParallelThreshold(1);
+        long parallel = averageMicros(filter);
+        System.out.printf("%10d %-12s %14d %14d%n", sample.size(), name, sequential, parallel);
+    }
+
+    /**
+     * Run a filter a few times to warm up and then return its average time.
+     *
+     * @param filter runs the filter once
+     * @return the average time of a run in microseconds
+     */
+    private static long averageMicros(Runnable filter) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            filter.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            filter.run();
+        }
+        return (System.nanoTime() - start) / MEASURED_ROUNDS / 1000;
+    }
+}
@@ -3,9 +3,8 @@ package com.application.main;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
+import javafx.geometry.Side;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
@@ -15,18 +14,23 @@ import javafx.stage.Stage;
 
 import main.utility.PropertyAssessment;
 import main.dao.ApiPropertyAssessmentDAO;
+import main.dao.CachingPropertyAssessmentDAO;
 import main.dao.CsvPropertyAssessmentDAO;
 import main.dao.PropertyAssessmentDAO;
 import main.utility.AssessmentClass;
 import main.utility.BuildingInformation;
+import main.utility.CompletionField;
 import main.utility.Location;
 import main.utility.NeighborhoodInfo;
+import main.utility.PropertySortKey;
 
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * The PropertyAssessmentApplication class is the graphical user interface (GUI)
@@ -49,6 +53,13 @@ public class PropertyAssessmentApplication extends Application {
     private final Label daoSelected = new Label("Select Data Source: ");
     private final Label dataInBackground = new Label("Entries Cached: 0");
     private final Label timeElapsedLabel = new Label("Time to Load: 0 milliseconds");
+    private static final int MAX_COMPLETIONS = 8;
+    // completions are looked up one at a time off the FX thread, the thread doesn't keep the app running
+    private final ExecutorService completionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "completions");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     /**
      * Initialize and start up the application.
@@ -105,6 +116,64 @@ public class PropertyAssessmentApplication extends Application {
         return textField;
     }
 
+    /**
+     * Shows completions of the typed text in a dropdown under a text field. Completions are looked up on a
+     * background thread and only shown if the text is still the same, so typing never waits on the data source.
+     *
+     * @param textField The text field to complete.
+     * @param field     The search field the text field is for.
+     */
+    private void addCompletions(TextField textField, CompletionField field) {
+        ContextMenu dropdown = new ContextMenu();
+        textField.textProperty().addListener((observable, oldText, text) -> {
+            PropertyAssessmentDAO currentDao = dao;
+            if (currentDao == null || text == null || text.isBlank() || !textField.isFocused()) {
+                dropdown.hide();
+                return;
+            }
+            completionExecutor.execute(() -> {
+                List<String> completions = currentDao.getCompletions(field, text, MAX_COMPLETIONS);
+                Platform.runLater(() -> showCompletions(textField, dropdown, text, completions));
+            });
+        });
+        textField.focusedProperty().addListener((observable, wasFocused, focused) -> {
+            if (!focused) {
+                dropdown.hide();
+            }
+        });
+    }
+
+    /**
+     * Helper function to fill the completion dropdown of a text field, picking a completion fills the text field.
+     *
+     * @param textField   The text field being completed.
+     * @param dropdown    The dropdown of the text field.
+     * @param text        The text the completions were looked up for.
+     * @param completions The completions.
+     */
+    private void showCompletions(TextField textField, ContextMenu dropdown, String text, List<String> completions) {
+        if (!text.equals(textField.getText())) {
+            return; // the user kept typing, the lookup for the newer text will show its completions
+        }
+        if (completions.isEmpty() || (completions.size() == 1 && completions.get(0).equalsIgnoreCase(text.trim()))) {
+            dropdown.hide();
+            return;
+        }
+        List<MenuItem> items = new ArrayList<>();
+        for (String completion : completions) {
+            MenuItem item = new MenuItem(completion);
+            item.setOnAction(event -> {
+                textField.setText(completion);
+                textField.positionCaret(completion.length());
+            });
+            items.add(item);
+        }
+        dropdown.getItems().setAll(items);
+        if (!dropdown.isShowing()) {
+            dropdown.show(textField, Side.BOTTOM, 0, 0);
+        }
+    }
+
     /**
      * Helper function to set grid constraints.
      *
@@ -144,6 +213,9 @@ public class PropertyAssessmentApplication extends Application {
         TextField neighborhoodInput = createText("Neighborhood (e.g., oliver)");
         TextField assessMinInput = createText("Min Value");
         TextField assessMaxInput = createText("Max Value");
+        addCompletions(accountInput, CompletionField.ACCOUNT_NUMBER);
+        addCompletions(addressInput, CompletionField.STREET_NAME);
+        addCompletions(neighborhoodInput, CompletionField.NEIGHBOURHOOD);
 
         Button readDataButton = readDataButton(dataSourceChoiceBox);
         Button resetButton = resetButton();
@@ -248,9 +320,9 @@ public class PropertyAssessmentApplication extends Application {
      */
     private void dataSourceDAO(String dataSourceChoice) {
         if ("CSV File".equals(dataSourceChoice)) {
-            this.dao = new CsvPropertyAssessmentDAO();
+            this.dao = new CachingPropertyAssessmentDAO(new CsvPropertyAssessmentDAO());
         } else if ("Edmonton's Online Property Data (API)".equals(dataSourceChoice)) {
-            this.dao = new ApiPropertyAssessmentDAO();
+            this.dao = new CachingPropertyAssessmentDAO(new ApiPropertyAssessmentDAO());
         }
     }
 
@@ -264,11 +336,13 @@ public class PropertyAssessmentApplication extends Application {
         Thread loadDataBackground = new Thread(() -> {
             String dataSourceChoice = choiceBox.getValue();
             dataSourceDAO(dataSourceChoice);
-            ObservableList<PropertyAssessment> allEntries = FXCollections.observableArrayList(dao.getAll());
+            // only the first page is shown, so only the first page is read
+            List<PropertyAssessment> firstPage = dao.getAllPage(0, 1000, PropertySortKey.UNSORTED)
+                    .getPropertyAssessmentList();
 
             Platform.runLater(() -> {
                 tableView.getItems().clear();
-                tableView.getItems().addAll(allEntries.subList(0, 1000));
+                tableView.getItems().addAll(firstPage);
                 updateEntryCount();
                 timeElapsed(startTime);
                 updateSelectedDAOLabel(choiceBox);
@@ -357,8 +431,9 @@ public class PropertyAssessmentApplication extends Application {
                         if (maxValue.isEmpty()) {
                             maxValue = String.valueOf(999999999);
                         }
-                        List<PropertyAssessment> results = dao.multipleFilter(accountNum, neighborhood, assessmentClass,
-                                address, minValue, maxValue).getPropertyAssessmentList();
+                        List<PropertyAssessment> results = dao.multipleFilterPage(accountNum, neighborhood,
+                                assessmentClass, address, minValue, maxValue, 0, 1000, PropertySortKey.UNSORTED)
+                                .getPropertyAssessmentList();
                         displayResults(results);
                     }
                 } else {
@@ -428,16 +503,23 @@ public class PropertyAssessmentApplication extends Application {
                 PropertyAssessment result = dao.getByAccountNumber(accountNum);
                 if (result != null) {
                     results.add(result);
+                } else {
+                    // no exact match, show the properties whose account number starts with the input
+                    results.addAll(dao.getByAccountPrefix(accountNum).getPage(0, 1000, PropertySortKey.UNSORTED)
+                            .getPropertyAssessmentList());
                 }
             }
             if (selectedFilters.contains("Address")) {
-                results.addAll(dao.getByAddress(address).getPropertyAssessmentList());
+                results.addAll(dao.getByAddress(address).getPage(0, 1000, PropertySortKey.UNSORTED)
+                        .getPropertyAssessmentList());
             }
             if (selectedFilters.contains("Neighborhood")) {
-                results.addAll(dao.getByNeighbourhood(neighborhood).getPropertyAssessmentList());
+                results.addAll(dao.getByNeighbourhood(neighborhood).getPage(0, 1000, PropertySortKey.UNSORTED)
+                        .getPropertyAssessmentList());
             }
             if (selectedFilters.contains("Assessment Class")) {
-                results.addAll(dao.getByAssessmentClass(assessmentClass).getPropertyAssessmentList());
+                results.addAll(dao.getByAssessmentClass(assessmentClass).getPage(0, 1000, PropertySortKey.UNSORTED)
+                        .getPropertyAssessmentList());
             }
             displayResults(results);
         }
@@ -1,16 +1,45 @@
 package main.dao;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import main.index.CompletionTrie;
+import main.index.FuzzyNameIndex;
+import main.utility.AssessmentStatistics;
+import main.utility.CompletionField;
+import main.utility.GeoArea;
+import main.utility.GroupAggregate;
+import main.utility.GroupDimension;
+import main.utility.Location;
 import main.utility.PropertyAssessment;
 import main.utility.PropertyAssessments;
+import main.utility.PropertyGroup;
+import main.utility.PropertyPage;
+import main.utility.PropertySortKey;
+import main.utility.StringDictionary;
 import main.processData.ProcessData;
+import main.processData.PropertyFilter;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The ApiPropertyAssessmentDAO class implements the PropertyAssessmentDAO interface and provides access to property
@@ -20,10 +49,35 @@ import java.util.List;
  */
 public class ApiPropertyAssessmentDAO implements PropertyAssessmentDAO {
     private static final HttpClient client = HttpClient.newHttpClient();
+    private static final int STREAM_PAGE_SIZE = 1000;
     private static String apiUrl = "https://data.edmonton.ca/resource/q7d6-ambg.json";
 
     private final ProcessData processData = new ProcessData();
     private final PropertyAssessments propertyAssessments = new PropertyAssessments();
+    private final Map<String, DistinctNames> distinctNames = new HashMap<>();
+
+    /**
+     * The distinct values of an API field with the indexes built over them.
+     */
+    private static class DistinctNames {
+        private final FuzzyNameIndex fuzzy;
+        private final CompletionTrie completions;
+
+        /**
+         * Constructor for DistinctNames.
+         *
+         * @param names  The distinct values.
+         * @param counts The number of properties holding each value.
+         */
+        DistinctNames(List<String> names, int[] counts) {
+            StringDictionary dictionary = new StringDictionary();
+            for (String name : names) {
+                dictionary.encode(name);
+            }
+            this.fuzzy = new FuzzyNameIndex(dictionary);
+            this.completions = CompletionTrie.of(names.toArray(new String[0]), counts);
+        }
+    }
 
     /**
      * Constructs an ApiPropertyAssessmentDAO.
@@ -38,31 +92,68 @@ public class ApiPropertyAssessmentDAO implements PropertyAssessmentDAO {
      * @param query The query URL.
      */
     private void getQuery(String query) {
+        String body = send(query);
+        if (body != null) {
+            parseJson(body, propertyAssessments);
+            processData.updateStatistics(propertyAssessments);
+        }
+    }
+
+    /**
+     * Sends a GET request to the specified query URL.
+     *
+     * @param query The query URL.
+     * @return The body of the response, or null if the request failed.
+     */
+    private String send(String query) {
+        try {
+            return request(query);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Sends a GET request to the specified query URL and reports a failed request to the caller.
+     *
+     * @param query The query URL.
+     * @return The body of the response.
+     * @throws IOException If the request could not be sent, was interrupted or the API answered with an error.
+     */
+    private String request(String query) throws IOException {
         System.out.println(query);
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create(query))
                 .GET()
                 .build();
+        HttpResponse<String> response;
         try {
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-            parseJson(response.body());
-        } catch (IOException | InterruptedException e) {
-            e.printStackTrace();
+            response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Request interrupted: " + query);
+        }
+        if (response.statusCode() >= 400) {
+            throw new IOException("Request failed with status " + response.statusCode() + ": " + query);
         }
+        return response.body();
     }
 
     /**
-     * Parse JSON data into PropertyAssessment objects and adds them to propertyAssessments..
+     * Parse JSON data into PropertyAssessment objects and adds the ones it doesn't have yet to a PropertyAssessments.
      *
      * @param jsonString The JSON data to parse.
+     * @param target     The PropertyAssessments the properties are added to.
+     * @return The number of properties in the JSON data.
      */
-    private void parseJson(String jsonString) {
+    private int parseJson(String jsonString, PropertyAssessments target) {
         Gson gson = new Gson();
         PropertyAssessmentAPI[] propertyAssessmentArray = gson.fromJson(jsonString, PropertyAssessmentAPI[].class);
         String[] formatJSON = new String[18];
 
         for (PropertyAssessmentAPI propertyAPI : propertyAssessmentArray) {
-            if (propertyAssessments.getPropertyByAccountNum(Integer.parseInt(propertyAPI.getAccountNumber())) == null) {
+            if (target.getRowByAccountNum(Integer.parseInt(propertyAPI.getAccountNumber())) < 0) {
                 formatJSON[0] = propertyAPI.getAccountNumber();
                 formatJSON[1] = propertyAPI.getSuite();
                 formatJSON[2] = propertyAPI.getHouseNum();
@@ -86,11 +177,10 @@ public class ApiPropertyAssessmentDAO implements PropertyAssessmentDAO {
                         formatJSON[i] = "";
                     }
                 }
-                PropertyAssessment property = processData.getPropertyAssessment(formatJSON);
-                propertyAssessments.addList(property);
-                propertyAssessments.hashProperty(property);
+                processData.addPropertyAssessment(formatJSON, target);
             }
         }
+        return propertyAssessmentArray.length;
     }
 
     /**
@@ -107,6 +197,46 @@ public class ApiPropertyAssessmentDAO implements PropertyAssessmentDAO {
         return propertyAssessments.getPropertyByAccountNum(Integer.parseInt(accountNumberInput));
     }
 
+    /**
+     * Retrieves the PropertyAssessments of many account numbers with a single API request.
+     *
+     * @param accountNumbers The account numbers of the properties.
+     * @return The PropertyAssessments that were found, in the order of the account numbers.
+     */
+    @Override
+    public PropertyAssessments getByAccountNumbers(List<String> accountNumbers) {
+        StringBuilder inList = new StringBuilder();
+        for (String accountNumber : accountNumbers) {
+            String accountNumberInput = accountNumber.trim();
+            if (!accountNumberInput.matches("\\d+")) {
+                continue;
+            }
+            if (inList.length() > 0) {
+                inList.append(",");
+            }
+            inList.append("%27").append(accountNumberInput).append("%27");
+        }
+        if (inList.length() > 0) {
+            getQuery(apiUrl + "?$where=account_number%20in(" + inList + ")");
+        }
+        return processData.handleAccountNumbers(accountNumbers, propertyAssessments);
+    }
+
+    /**
+     * Retrieves the PropertyAssessments whose account number starts with a partial account number.
+     *
+     * @param accountNumberPrefix The digits the account numbers start with.
+     * @return The PropertyAssessments with a matching account number.
+     */
+    @Override
+    public PropertyAssessments getByAccountPrefix(String accountNumberPrefix) {
+        String prefix = accountNumberPrefix.trim();
+        if (prefix.matches("\\d+")) {
+            getQuery(apiUrl + "?$where=account_number%20LIKE%20%27" + prefix + "%25%27");
+        }
+        return processData.findByAccountPrefix(prefix, propertyAssessments);
+    }
+
     /**
      * Retrieves PropertyAssessment(s) by the specified address, can be singled by suite, house number, or street number,
      * or all three.
@@ -126,7 +256,11 @@ public class ApiPropertyAssessmentDAO implements PropertyAssessmentDAO {
                 address.toUpperCase() +
                 "%25%27";
         getQuery(addressQuery);
-        return processData.filterByAddress(address.replace("%20", " "), propertyAssessments);
+        PropertyAssessments result = processData.filterByAddress(address.replace("%20", " "), propertyAssessments);
+        // nothing found, ask once more with the misspelled words corrected to known street name words
+        String corrected = result.size() == 0
+                ? names("street_name").fuzzy.correct(input, ProcessData.TYPO_DISTANCE) : null;
+        return corrected == null ? result : getByAddress(corrected);
     }
 
     /**
@@ -140,7 +274,11 @@ public class ApiPropertyAssessmentDAO implements PropertyAssessmentDAO {
         String neighborhoodInput = neighbourhood.trim().replace(" ","").toUpperCase();
         String neighbourhoodQuery = apiUrl + "?$where=neighbourhood%20LIKE%20%27" + neighborhoodInput + "%25%27";
         getQuery(neighbourhoodQuery);
-        return processData.filterByNeighborhood(neighborhoodInput, propertyAssessments);
+        PropertyAssessments result = processData.filterByNeighborhood(neighborhoodInput, propertyAssessments);
+        // nothing found, ask once more with the misspelled words corrected to known neighbourhood words
+        String corrected = result.size() == 0
+                ? names("neighbourhood").fuzzy.correct(neighbourhood, ProcessData.TYPO_DISTANCE) : null;
+        return corrected == null ? result : getByNeighbourhood(corrected);
     }
 
     /**
@@ -177,59 +315,203 @@ public class ApiPropertyAssessmentDAO implements PropertyAssessmentDAO {
     @Override
     public PropertyAssessments multipleFilter(String accountNumber, String neighbourhood, String assessmentClass,
                                               String address, String min, String max) {
+        return multipleFilter(accountNumber, neighbourhood, assessmentClass, address, min, max, null);
+    }
+
+    /**
+     * Retrieves PropertyAssessments by the specified filters and the area they are located in.
+     * The area is sent to the API as a within_circle or within_box condition on the point location.
+     *
+     * @param accountNumber   The account number of the property.
+     * @param neighbourhood   The neighbourhood of the properties.
+     * @param assessmentClass The assessment class of the properties.
+     * @param address         The address for properties.
+     * @param min             The minimum assessed value for filtering properties.
+     * @param max             The maximum assessed value for filtering properties.
+     * @param area            The circle or rectangle the properties must be located in, or null for anywhere.
+     * @return The PropertyAssessments that match the specified filters.
+     */
+    @Override
+    public PropertyAssessments multipleFilter(String accountNumber, String neighbourhood, String assessmentClass,
+                                              String address, String min, String max, GeoArea area) {
         int minValue = Integer.parseInt(min.trim());
         int maxValue = Integer.parseInt(max.trim());
 
-        StringBuilder finalQuery = new StringBuilder(apiUrl + "?$where=");
+        String where = whereClause(accountNumber, neighbourhood, assessmentClass, address, minValue, maxValue, area);
+        getQuery(apiUrl + (where.isEmpty() ? "" : "?$where=" + where));
+
+        return processData.filters(accountNumber, neighbourhood, assessmentClass, address,
+                minValue, maxValue, area, propertyAssessments);
+    }
+
+    /**
+     * Retrieves the PropertyAssessments that pass a filter expression. The parts of the filter that translate
+     * into SoQL select the properties requested from the API, the whole filter then runs on the retrieved properties.
+     *
+     * @param filter The compiled filter.
+     * @return The PropertyAssessments that pass the filter.
+     */
+    @Override
+    public PropertyAssessments filter(PropertyFilter filter) {
+        String where = filter.toSoql();
+        getQuery(apiUrl + (where == null ? ""
+                : "?$where=" + URLEncoder.encode(where, StandardCharsets.UTF_8).replace("+", "%20")));
+        return processData.filter(filter, propertyAssessments);
+    }
+
+    /**
+     * Retrieves one page of the PropertyAssessments that match the specified filters.
+     *
+     * @param accountNum      The account number of the property.
+     * @param neighbourhood   The neighbourhood of the properties.
+     * @param assessmentClass The assessment class of the properties.
+     * @param address         The address for properties.
+     * @param min             The minimum assessed value for filtering properties.
+     * @param max             The maximum assessed value for filtering properties.
+     * @param offset          The position of the first property of the page.
+     * @param limit           The largest number of properties on the page.
+     * @param sortKey         The order of the properties.
+     * @return The page and the number of PropertyAssessments that match the specified filters.
+     */
+    @Override
+    public PropertyPage multipleFilterPage(String accountNum, String neighbourhood, String assessmentClass,
+                                           String address, String min, String max,
+                                           int offset, int limit, PropertySortKey sortKey) {
+        return getPage(multipleFilter(accountNum, neighbourhood, assessmentClass, address, min, max),
+                offset, limit, sortKey);
+    }
 
-        if (accountNumber != null) {
-            finalQuery.append("account_number=%27")
-                    .append(accountNumber.trim())
-                    .append("%27");
+    /**
+     * Retrieves one page of PropertyAssessments retrieved from the API.
+     *
+     * @param properties The PropertyAssessments to page.
+     * @param offset     The position of the first property of the page.
+     * @param limit      The largest number of properties on the page.
+     * @param sortKey    The order of the properties.
+     * @return The page and the number of PropertyAssessments.
+     */
+    @Override
+    public PropertyPage getPage(PropertyAssessments properties, int offset, int limit, PropertySortKey sortKey) {
+        return properties.getPage(offset, limit, sortKey);
+    }
+
+    /**
+     * Groups the PropertyAssessments retrieved from the API (1000 calls), the groups are counted locally.
+     *
+     * @param filter         A filter the properties must pass first, or null for every property.
+     * @param valueBandWidth The width of the assessed value bands, only used when grouping by VALUE_BAND.
+     * @param rollup         True to add subtotals for every shorter prefix of the dimensions and a grand total.
+     * @param dimensions     The dimensions to group by, in the order their keys are listed.
+     * @return The groups that hold properties, ordered by their keys.
+     */
+    @Override
+    public List<GroupAggregate> groupBy(PropertyFilter filter, int valueBandWidth, boolean rollup, GroupDimension... dimensions) {
+        PropertyAssessments grouped;
+        if (filter != null) {
+            grouped = filter(filter);
+        } else {
+            getQuery(apiUrl);
+            grouped = propertyAssessments;
         }
+        return processData.groupBy(null, grouped, valueBandWidth, rollup, dimensions);
+    }
+
+    /**
+     * Retrieves the comparable PropertyAssessments of a property. The API is asked for the properties of the same
+     * class and value range within the radius, and the nearest of them are picked locally.
+     *
+     * @param accountNumber  The account number of the property to compare with.
+     * @param k              The largest number of comparable properties.
+     * @param radius         The largest distance from the property in meters.
+     * @param valueTolerance The largest difference of assessed value as a fraction of the property's value.
+     * @return The comparable PropertyAssessments, nearest first.
+     */
+    @Override
+    public PropertyAssessments findComparables(String accountNumber, int k, double radius, double valueTolerance) {
+        PropertyAssessment property = getByAccountNumber(accountNumber);
+        Location location = property == null ? null : property.getLocation();
+        if (location == null || Double.isNaN(location.getLatitude()) || Double.isNaN(location.getLongitude())
+                || !(radius >= 0)) {
+            return new PropertyAssessments();
+        }
+        double tolerance = Math.abs(property.getAssessedValue()) * valueTolerance;
+        String where = areaCondition(GeoArea.circle(location.getLatitude(), location.getLongitude(), radius))
+                + " AND mill_class_1 = '" + property.getAssessmentClass().getAssessmentClass1().replace("'", "''")
+                + "' AND assessed_value BETWEEN " + (long) Math.ceil(property.getAssessedValue() - tolerance)
+                + " AND " + (long) Math.floor(property.getAssessedValue() + tolerance);
+        getQuery(apiUrl + "?$where=" + URLEncoder.encode(where, StandardCharsets.UTF_8).replace("+", "%20"));
+        return processData.findComparables(property.getAccountNum(), k, radius, valueTolerance, propertyAssessments);
+    }
+
+    /**
+     * Builds the $where clause of a search by the specified filters.
+     *
+     * @param accountNumber   The account number of the property.
+     * @param neighbourhood   The neighbourhood of the properties.
+     * @param assessmentClass The assessment class of the properties.
+     * @param address         The address for properties.
+     * @param minValue        The minimum assessed value for filtering properties, inclusive.
+     * @param maxValue        The maximum assessed value for filtering properties, inclusive.
+     * @param area            The area the properties are located in, or null for anywhere.
+     * @return The URL encoded $where clause with the filters joined by AND, blank text filters are left out,
+     * empty if no filter is given.
+     */
+    private static String whereClause(String accountNumber, String neighbourhood, String assessmentClass,
+                                      String address, int minValue, int maxValue, GeoArea area) {
+        List<String> conditions = new ArrayList<>();
 
-        if (neighbourhood != null) {
+        if (accountNumber != null && !accountNumber.isBlank()) {
+            conditions.add("account_number=%27" + accountNumber.trim() + "%27");
+        }
+
+        if (neighbourhood != null && !neighbourhood.isBlank()) {
             String neighbourhoodInput = neighbourhood.trim().toUpperCase().replace(" ", "%20");
-            finalQuery.append("%20OR%20neighbourhood%20LIKE%20%27%25")
-                    .append(neighbourhoodInput)
-                    .append("%25%27");
+            conditions.add("neighbourhood%20LIKE%20%27%25" + neighbourhoodInput + "%25%27");
         }
 
-        if (assessmentClass != null) {
+        if (assessmentClass != null && !assessmentClass.isBlank()) {
             String assessmentClassInput = assessmentClass.replace(" ", "%20");
-            finalQuery.append("%20AND%20(mill_class_1%20LIKE%20%27")
-                    .append(assessmentClassInput.toUpperCase())
-                    .append("%27%20OR%20mill_class_2%20LIKE%20%27")
-                    .append(assessmentClassInput.toUpperCase())
-                    .append("%27%20OR%20mill_class_3%20LIKE%20%27")
-                    .append(assessmentClassInput.toUpperCase())
-                    .append("%27)");
+            conditions.add("(mill_class_1%20LIKE%20%27" + assessmentClassInput.toUpperCase()
+                    + "%27%20OR%20mill_class_2%20LIKE%20%27" + assessmentClassInput.toUpperCase()
+                    + "%27%20OR%20mill_class_3%20LIKE%20%27" + assessmentClassInput.toUpperCase() + "%27)");
         }
 
-        if (address != null) {
+        if (address != null && !address.isBlank()) {
             String addressInput = address.trim().replace(" ", "%20");
-            finalQuery.append("%20AND%20(suite%20LIKE%20%27%25")
-                    .append(addressInput.toUpperCase())
-                    .append("%25%27%20OR%20street_name%20LIKE%20%27%25")
-                    .append(addressInput.toUpperCase())
-                    .append("%25%27%20OR%20house_number%20LIKE%20%27%25")
-                    .append(addressInput.toUpperCase())
-                    .append("%25%27)");
+            conditions.add("(suite%20LIKE%20%27%25" + addressInput.toUpperCase()
+                    + "%25%27%20OR%20street_name%20LIKE%20%27%25" + addressInput.toUpperCase()
+                    + "%25%27%20OR%20house_number%20LIKE%20%27%25" + addressInput.toUpperCase() + "%25%27)");
         }
 
         if (minValue > 0 || maxValue < 999999999) {
-            finalQuery.append("%20AND%20(assessed_value%20%3E%20%27")
-                    .append(minValue).append("%27%20AND%20assessed_value%20%3C%20%27")
-                    .append(maxValue).append("%27)");
+            // inclusive like the local assessed value filter, and compared as numbers, not as text
+            conditions.add("assessed_value%20BETWEEN%20" + minValue + "%20AND%20" + maxValue);
         }
-        getQuery(String.valueOf(finalQuery));
 
-        return processData.filters(accountNumber, neighbourhood, assessmentClass, address,
-                minValue, maxValue, propertyAssessments);
+        if (area != null) {
+            conditions.add(URLEncoder.encode(areaCondition(area), StandardCharsets.UTF_8).replace("+", "%20"));
+        }
+        return String.join("%20AND%20", conditions);
+    }
+
+    /**
+     * Builds the SoQL condition of an area on the point location. A box is given by its north west
+     * and south east corners.
+     *
+     * @param area The circle or rectangle.
+     * @return The condition, not URL encoded.
+     */
+    private static String areaCondition(GeoArea area) {
+        if (area.isCircle()) {
+            return "within_circle(point_location, " + area.getCenterLatitude() + ", "
+                    + area.getCenterLongitude() + ", " + area.getRadius() + ")";
+        }
+        return "within_box(point_location, " + area.getNorth() + ", " + area.getWest() + ", "
+                + area.getSouth() + ", " + area.getEast() + ")";
     }
 
     //https://data.edmonton.ca/resource/q7d6-ambg.json?$where=account_number='' OR neighbourhood='OLIVER' AND (mill_class_1='COMMERCIAL' OR mill_class_2='COMMERCIAL' OR mill_class_3='COMMERCIAL') AND (suite LIKE '104' OR street_name LIKE '104' OR house_number LIKE '104') AND (assessed_value > '0' AND assessed_value < '30000000')
-    //https://data.edmonton.ca/resource/q7d6-ambg.json?$where=account_number=%27%27%20OR%20neighbourhood=%27OLIVER%27%20AND%20(mill_class_1=%27COMMERCIAL%27%20OR%20mill_class_2=%27COMMERCIAL%27%20OR%20mill_class_3=%27COMMERCIAL%27)%20AND%20(suite%20LIKE%20%27104%27%20OR%20street_name%20LIKE%20%27104%27%20OR%20house_number%20LIKE%20%27104%27)%20AND%20(assessed_value%20%3E%20%270%27%20AND%20assessed_value%20%3C%20%2730000000%27)
+    //https://data.edmonton.ca/resource/q7d6-ambg.json?$where=account_number=%27%27%20OR%20neighbourhood=%27OLIVER%27%20AND%20(mill_class_1=%27COMMERCIAL%27%20OR%20mill_class_2=%27COMMERCIAL%27%20OR%20mill_class_3=%27COMMERCIAL%27)%20AND%20(suite%20LIKE%20%27104%27%20OR%20street_name%20LIKE%20%27104%27%20OR%20house_number%20LIKE%20%27104%27)%20AND%20assessed_value%20BETWEEN%201%20AND%2030000000
 
     /**
      * Retrieves a list of all PropertyAssessments from the API (1000 calls).
@@ -241,4 +523,240 @@ public class ApiPropertyAssessmentDAO implements PropertyAssessmentDAO {
         getQuery(apiUrl);
         return propertyAssessments.getPropertyAssessmentList();
     }
+
+    /**
+     * Retrieves one page of the PropertyAssessments from the API (1000 calls).
+     *
+     * @param offset  The position of the first property of the page.
+     * @param limit   The largest number of properties on the page.
+     * @param sortKey The order of the properties.
+     * @return The page and the number of PropertyAssessments retrieved from the API.
+     */
+    @Override
+    public PropertyPage getAllPage(int offset, int limit, PropertySortKey sortKey) {
+        getQuery(apiUrl);
+        return propertyAssessments.getPage(offset, limit, sortKey);
+    }
+
+    /**
+     * Streams every PropertyAssessment of the API one page at a time. A page is only requested when the stream
+     * reaches it and is dropped once it has been consumed, so the properties are not kept by this DAO.
+     * A page that can't be retrieved throws an UncheckedIOException from the stream instead of ending it early.
+     *
+     * @return A Stream of PropertyAssessment objects.
+     */
+    @Override
+    public Stream<PropertyAssessment> streamAll() {
+        return pages(apiUrl + "?", page -> page);
+    }
+
+    /**
+     * Streams the PropertyAssessments of the API that match the specified filters one page at a time.
+     * Each page is filtered again locally, the same way multipleFilter filters its results.
+     *
+     * @param accountNumber   The account number of the property.
+     * @param neighbourhood   The neighbourhood of the properties.
+     * @param assessmentClass The assessment class of the properties.
+     * @param address         The address for properties.
+     * @param min             The minimum assessed value for filtering properties.
+     * @param max             The maximum assessed value for filtering properties.
+     * @return A Stream of the PropertyAssessments that match the specified filters.
+     */
+    @Override
+    public Stream<PropertyAssessment> streamFilter(String accountNumber, String neighbourhood, String assessmentClass,
+                                                   String address, String min, String max) {
+        int minValue = Integer.parseInt(min.trim());
+        int maxValue = Integer.parseInt(max.trim());
+        String where = whereClause(accountNumber, neighbourhood, assessmentClass, address, minValue, maxValue, null);
+        String query = apiUrl + (where.isEmpty() ? "?" : "?$where=" + where + "&");
+        ProcessData pageFilter = new ProcessData();
+        return pages(query, page -> pageFilter.filters(accountNumber, neighbourhood, assessmentClass, address,
+                minValue, maxValue, page));
+    }
+
+    /**
+     * Creates a Stream over the pages of a query, ordered by account number so the pages don't overlap.
+     *
+     * @param query  The query URL ending with "?" or "&", so paging parameters can be appended.
+     * @param filter Selects the properties of a page that are streamed.
+     * @return A Stream of PropertyAssessment objects.
+     */
+    private Stream<PropertyAssessment> pages(String query, UnaryOperator<PropertyAssessments> filter) {
+        return StreamSupport.stream(new PageSpliterator(query, filter), false);
+    }
+
+    /**
+     * Hands over the properties of one page of a query at a time, requesting the next page when the current one
+     * has been consumed. Only the current page is held.
+     */
+    private class PageSpliterator extends Spliterators.AbstractSpliterator<PropertyAssessment> {
+        private final String query;
+        private final UnaryOperator<PropertyAssessments> filter;
+        private PropertyAssessments page = new PropertyAssessments();
+        private int position;
+        private int offset;
+        private boolean lastPage;
+
+        /**
+         * Constructor for a PageSpliterator.
+         *
+         * @param query  The query URL ending with "?" or "&".
+         * @param filter Selects the properties of a page that are streamed.
+         */
+        PageSpliterator(String query, UnaryOperator<PropertyAssessments> filter) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.query = query;
+            this.filter = filter;
+        }
+
+        /**
+         * Hand the next property to the consumer, requesting pages until one has a property or none are left.
+         *
+         * @param action The consumer of the property.
+         * @return False if there are no properties left.
+         * @throws UncheckedIOException If a page could not be retrieved from the API.
+         */
+        @Override
+        public boolean tryAdvance(Consumer<? super PropertyAssessment> action) {
+            while (position == page.size()) {
+                if (lastPage) {
+                    return false;
+                }
+                String body;
+                try {
+                    body = request(query + "$order=account_number&$limit=" + STREAM_PAGE_SIZE + "&$offset=" + offset);
+                } catch (IOException e) {
+                    // a failed page must not look like the end of the data, or an export would be cut short
+                    throw new UncheckedIOException(e);
+                }
+                PropertyAssessments parsed = new PropertyAssessments();
+                int count = parseJson(body, parsed);
+                lastPage = count < STREAM_PAGE_SIZE; // a short page ends the stream
+                offset += count;
+                page = filter.apply(parsed);
+                position = 0;
+            }
+            action.accept(page.getPropertyAssessmentList().get(position++));
+            return true;
+        }
+    }
+
+    /**
+     * Get the assessed value statistics of every group of the properties retrieved so far.
+     * They are updated with only the new properties whenever a request adds properties.
+     *
+     * @param group The column the properties are grouped by.
+     * @return The statistics of every group, ordered by group name.
+     */
+    @Override
+    public List<AssessmentStatistics> getStatistics(PropertyGroup group) {
+        return processData.getStatistics(group, propertyAssessments);
+    }
+
+    /**
+     * Finds the neighbourhoods of the API a possibly misspelled neighbourhood was meant to be.
+     *
+     * @param neighbourhood The neighbourhood search.
+     * @param maxDistance   The largest number of edits allowed for each word.
+     * @return The matching neighbourhood names, closest first.
+     */
+    @Override
+    public List<String> getNeighbourhoodSuggestions(String neighbourhood, int maxDistance) {
+        return names("neighbourhood").fuzzy.candidates(neighbourhood, maxDistance);
+    }
+
+    /**
+     * Finds the street names of the API a possibly misspelled street name was meant to be.
+     *
+     * @param streetName  The street name search.
+     * @param maxDistance The largest number of edits allowed for each word.
+     * @return The matching street names, closest first.
+     */
+    @Override
+    public List<String> getStreetNameSuggestions(String streetName, int maxDistance) {
+        return names("street_name").fuzzy.candidates(streetName, maxDistance);
+    }
+
+    /**
+     * Completes a typed prefix. Neighbourhoods and street names are completed from every value of the API,
+     * account numbers from the properties retrieved so far.
+     *
+     * @param field  The search field.
+     * @param prefix The typed prefix.
+     * @param limit  The largest number of completions.
+     * @return The completions held by the most properties first.
+     */
+    @Override
+    public List<String> getCompletions(CompletionField field, String prefix, int limit) {
+        switch (field) {
+            case NEIGHBOURHOOD:
+                return names("neighbourhood").completions.complete(prefix, limit);
+            case STREET_NAME:
+                return names("street_name").completions.complete(prefix, limit);
+            default:
+                return processData.complete(field, prefix, limit, propertyAssessments);
+        }
+    }
+
+    /**
+     * Get approximate assessed value percentiles of the properties retrieved so far.
+     *
+     * @param neighbourhood   The neighbourhood to match, or null for every neighbourhood.
+     * @param ward            The ward to match, or null for every ward.
+     * @param assessmentClass The assessment class to match, or null for every assessment class.
+     * @param percentiles     The percentiles, each between 0 and 100.
+     * @return The approximate assessed value at each percentile, or null if no property matches.
+     */
+    @Override
+    public int[] getAssessedValuePercentiles(String neighbourhood, String ward, String assessmentClass,
+                                             double... percentiles) {
+        return processData.assessedValuePercentiles(neighbourhood, ward, assessmentClass,
+                propertyAssessments, percentiles);
+    }
+
+    /**
+     * Get the distinct values of a field with the number of properties holding each, requesting them once
+     * with a grouped query. A failed request gives no values and is tried again on the next call.
+     *
+     * @param field The API field, like neighbourhood or street_name.
+     * @return The distinct values and their indexes.
+     */
+    private synchronized DistinctNames names(String field) {
+        DistinctNames names = distinctNames.get(field);
+        if (names != null) {
+            return names;
+        }
+        List<String> values = new ArrayList<>();
+        int[] counts = new int[16];
+        String body = send(apiUrl + "?$select=" + field + ",count(*)%20AS%20properties&$group=" + field
+                + "&$limit=50000");
+        if (body != null) {
+            for (JsonElement row : JsonParser.parseString(body).getAsJsonArray()) {
+                JsonElement value = row.getAsJsonObject().get(field);
+                JsonElement count = row.getAsJsonObject().get("properties");
+                if (value != null) {
+                    if (values.size() == counts.length) {
+                        counts = Arrays.copyOf(counts, counts.length * 2);
+                    }
+                    counts[values.size()] = count == null ? 0 : count.getAsInt();
+                    values.add(value.getAsString());
+                }
+            }
+        }
+        names = new DistinctNames(values, Arrays.copyOf(counts, values.size()));
+        if (body != null) {
+            distinctNames.put(field, names);
+        }
+        return names;
+    }
+
+    /**
+     * Get the version of the properties retrieved so far, it changes whenever a request adds new properties.
+     *
+     * @return The data version.
+     */
+    @Override
+    public long getDataVersion() {
+        return propertyAssessments.getVersion();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,508 @@
+package main.dao;
+
+import main.processData.PropertyFilter;
+import main.utility.AssessmentStatistics;
+import main.utility.CompletionField;
+import main.utility.GeoArea;
+import main.utility.GroupAggregate;
+import main.utility.GroupDimension;
+import main.utility.PropertyAssessment;
+import main.utility.PropertyAssessments;
+import main.utility.PropertyGroup;
+import main.utility.PropertyPage;
+import main.utility.PropertySortKey;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * The CachingPropertyAssessmentDAO class wraps another PropertyAssessmentDAO and remembers the results of recent
+ * filter searches, so repeating a search returns the earlier result instead of running it again.
+ * <p>
+ * Searches are keyed by their filters normalized the way ProcessData compares them: neighborhoods and assessment
+ * classes are case-folded, addresses are case-folded with their spaces removed and assessed values are parsed.
+ * The least recently used results are dropped once there are too many or their estimated size is too large.
+ * Every result is dropped when the data version of the wrapped DAO changes. Every caller gets its own
+ * copy of a cached result, so modifying it does not change the cache.
+ * <p>
+ * Author: Fahad Ali
+ */
+public class CachingPropertyAssessmentDAO implements PropertyAssessmentDAO {
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final PropertyAssessmentDAO dao;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<String, CachedResult> results = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedVersion;
+    private long cachedBytes;
+    private long hits;
+    private long misses;
+
+    /**
+     * A cached search result with its estimated size.
+     */
+    private static class CachedResult {
+        private final PropertyAssessments result;
+        private final long bytes;
+
+        /**
+         * Constructor for a CachedResult.
+         *
+         * @param result The search result.
+         * @param bytes  The estimated size of the entry in bytes.
+         */
+        CachedResult(PropertyAssessments result, long bytes) {
+            this.result = result;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Constructs a CachingPropertyAssessmentDAO with the default limits.
+     *
+     * @param dao The PropertyAssessmentDAO whose searches are cached.
+     */
+    public CachingPropertyAssessmentDAO(PropertyAssessmentDAO dao) {
+        this(dao, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Constructs a CachingPropertyAssessmentDAO.
+     *
+     * @param dao        The PropertyAssessmentDAO whose searches are cached.
+     * @param maxEntries The largest number of cached results.
+     * @param maxBytes   The largest estimated size of all cached results together.
+     */
+    public CachingPropertyAssessmentDAO(PropertyAssessmentDAO dao, int maxEntries, long maxBytes) {
+        this.dao = dao;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxBytes = Math.max(0, maxBytes);
+        this.cachedVersion = dao.getDataVersion();
+    }
+
+    /**
+     * Retrieves a PropertyAssessment by the account number, account lookups are not cached.
+     *
+     * @param accountNumber The account number of the property.
+     * @return The PropertyAssessment with the account number.
+     */
+    @Override
+    public PropertyAssessment getByAccountNumber(String accountNumber) {
+        return dao.getByAccountNumber(accountNumber);
+    }
+
+    /**
+     * Retrieves the PropertyAssessments of many account numbers, account lookups are not cached.
+     *
+     * @param accountNumbers The account numbers of the properties.
+     * @return The PropertyAssessments that were found, in the order of the account numbers.
+     */
+    @Override
+    public PropertyAssessments getByAccountNumbers(List<String> accountNumbers) {
+        return dao.getByAccountNumbers(accountNumbers);
+    }
+
+    /**
+     * Retrieves the PropertyAssessments whose account number starts with a partial account number,
+     * from the cache when the search was made before.
+     *
+     * @param accountNumberPrefix The digits the account numbers start with.
+     * @return The PropertyAssessments with a matching account number.
+     */
+    @Override
+    public PropertyAssessments getByAccountPrefix(String accountNumberPrefix) {
+        String key = "accountPrefix|" + accountNumberPrefix.trim();
+        return cached(key, () -> dao.getByAccountPrefix(accountNumberPrefix));
+    }
+
+    /**
+     * Retrieves PropertyAssessments by neighbourhood, from the cache when the search was made before.
+     *
+     * @param neighbourhood The neighborhood of the properties.
+     * @return The PropertyAssessments with the specified neighborhood.
+     */
+    @Override
+    public PropertyAssessments getByNeighbourhood(String neighbourhood) {
+        String key = "neighbourhood|" + neighbourhood.trim().toLowerCase();
+        return cached(key, () -> dao.getByNeighbourhood(neighbourhood));
+    }
+
+    /**
+     * Retrieves PropertyAssessments by address, from the cache when the search was made before.
+     *
+     * @param address The address (or part of address) of the property.
+     * @return The PropertyAssessments with the specified address.
+     */
+    @Override
+    public PropertyAssessments getByAddress(String address) {
+        String key = "address|" + normalizeAddress(address);
+        return cached(key, () -> dao.getByAddress(address));
+    }
+
+    /**
+     * Retrieves PropertyAssessments by assessment class, from the cache when the search was made before.
+     *
+     * @param assessmentClass The assessmentClass of the properties.
+     * @return The PropertyAssessments with the specified assessmentClass.
+     */
+    @Override
+    public PropertyAssessments getByAssessmentClass(String assessmentClass) {
+        String key = "class|" + assessmentClass.trim().toLowerCase();
+        return cached(key, () -> dao.getByAssessmentClass(assessmentClass));
+    }
+
+    /**
+     * Retrieves PropertyAssessments by the specified filters, from the cache when the search was made before.
+     *
+     * @param accountNum      The account number of the property.
+     * @param neighbourhood   The neighbourhood of the properties.
+     * @param assessmentClass The assessment class of the properties.
+     * @param address         The address for properties.
+     * @param min             The minimum assessed value for filtering properties.
+     * @param max             The maximum assessed value for filtering properties.
+     * @return The PropertyAssessments that match the specified filters.
+     */
+    @Override
+    public PropertyAssessments multipleFilter(String accountNum, String neighbourhood, String assessmentClass,
+                                              String address, String min, String max) {
+        return multipleFilter(accountNum, neighbourhood, assessmentClass, address, min, max, null);
+    }
+
+    /**
+     * Retrieves PropertyAssessments by the specified filters and area, from the cache when possible.
+     *
+     * @param accountNum      The account number of the property.
+     * @param neighbourhood   The neighbourhood of the properties.
+     * @param assessmentClass The assessment class of the properties.
+     * @param address         The address for properties.
+     * @param min             The minimum assessed value for filtering properties.
+     * @param max             The maximum assessed value for filtering properties.
+     * @param area            The circle or rectangle the properties must be located in, or null for anywhere.
+     * @return The PropertyAssessments that match the specified filters.
+     */
+    @Override
+    public PropertyAssessments multipleFilter(String accountNum, String neighbourhood, String assessmentClass,
+                                              String address, String min, String max, GeoArea area) {
+        // only fold what the filters ignore, so different searches never share a key
+        String key = "filters|" + accountNum +
+                "|" + (neighbourhood == null ? null : neighbourhood.toLowerCase()) +
+                "|" + (assessmentClass == null ? null : assessmentClass.toLowerCase()) +
+                "|" + (address == null ? null : normalizeAddress(address)) +
+                "|" + Integer.parseInt(min.trim()) +
+                "|" + Integer.parseInt(max.trim()) +
+                "|" + area;
+        return cached(key, () -> dao.multipleFilter(accountNum, neighbourhood, assessmentClass, address, min, max, area));
+    }
+
+    /**
+     * Retrieves one page of the PropertyAssessments that match the specified filters,
+     * cut from the cached result of the search.
+     *
+     * @param accountNum      The account number of the property.
+     * @param neighbourhood   The neighbourhood of the properties.
+     * @param assessmentClass The assessment class of the properties.
+     * @param address         The address for properties.
+     * @param min             The minimum assessed value for filtering properties.
+     * @param max             The maximum assessed value for filtering properties.
+     * @param offset          The position of the first property of the page.
+     * @param limit           The largest number of properties on the page.
+     * @param sortKey         The order of the properties.
+     * @return The page and the number of PropertyAssessments that match the specified filters.
+     */
+    @Override
+    public PropertyPage multipleFilterPage(String accountNum, String neighbourhood, String assessmentClass,
+                                           String address, String min, String max,
+                                           int offset, int limit, PropertySortKey sortKey) {
+        return getPage(multipleFilter(accountNum, neighbourhood, assessmentClass, address, min, max),
+                offset, limit, sortKey);
+    }
+
+    /**
+     * Retrieves the PropertyAssessments that pass a filter expression, cached by the expression.
+     *
+     * @param filter The compiled filter.
+     * @return The PropertyAssessments that pass the filter.
+     */
+    @Override
+    public PropertyAssessments filter(PropertyFilter filter) {
+        return cached("filter|" + filter, () -> dao.filter(filter));
+    }
+
+    /**
+     * Retrieves one page of PropertyAssessments, sorted by the wrapped DAO.
+     *
+     * @param properties The PropertyAssessments to page.
+     * @param offset     The position of the first property of the page.
+     * @param limit      The largest number of properties on the page.
+     * @param sortKey    The order of the properties.
+     * @return The page and the number of PropertyAssessments.
+     */
+    @Override
+    public PropertyPage getPage(PropertyAssessments properties, int offset, int limit, PropertySortKey sortKey) {
+        return dao.getPage(properties, offset, limit, sortKey);
+    }
+
+    /**
+     * Groups the PropertyAssessments with the wrapped DAO, the groups are not cached.
+     *
+     * @param filter         A filter the properties must pass first, or null for every property.
+     * @param valueBandWidth The width of the assessed value bands, only used when grouping by VALUE_BAND.
+     * @param rollup         True to add subtotals for every shorter prefix of the dimensions and a grand total.
+     * @param dimensions     The dimensions to group by, in the order their keys are listed.
+     * @return The groups that hold properties, ordered by their keys.
+     */
+    @Override
+    public List<GroupAggregate> groupBy(PropertyFilter filter, int valueBandWidth, boolean rollup, GroupDimension... dimensions) {
+        return dao.groupBy(filter, valueBandWidth, rollup, dimensions);
+    }
+
+    /**
+     * Retrieves the comparable PropertyAssessments of a property, from the cache when possible.
+     *
+     * @param accountNumber  The account number of the property to compare with.
+     * @param k              The largest number of comparable properties.
+     * @param radius         The largest distance from the property in meters.
+     * @param valueTolerance The largest difference of assessed value as a fraction of the property's value.
+     * @return The comparable PropertyAssessments, nearest first.
+     */
+    @Override
+    public PropertyAssessments findComparables(String accountNumber, int k, double radius, double valueTolerance) {
+        String key = "comparables|" + accountNumber.trim() + "|" + k + "|" + radius + "|" + valueTolerance;
+        return cached(key, () -> dao.findComparables(accountNumber, k, radius, valueTolerance));
+    }
+
+    /**
+     * Retrieves a list of all PropertyAssessments, it is not cached.
+     *
+     * @return List of all PropertyAssessments available.
+     */
+    @Override
+    public List<PropertyAssessment> getAll() {
+        return dao.getAll();
+    }
+
+    /**
+     * Retrieves one page of all PropertyAssessments, it is not cached.
+     *
+     * @param offset  The position of the first property of the page.
+     * @param limit   The largest number of properties on the page.
+     * @param sortKey The order of the properties.
+     * @return The page and the number of all PropertyAssessments.
+     */
+    @Override
+    public PropertyPage getAllPage(int offset, int limit, PropertySortKey sortKey) {
+        return dao.getAllPage(offset, limit, sortKey);
+    }
+
+    /**
+     * Streams every PropertyAssessment, streams are not cached.
+     *
+     * @return A Stream of PropertyAssessment objects.
+     */
+    @Override
+    public Stream<PropertyAssessment> streamAll() {
+        return dao.streamAll();
+    }
+
+    /**
+     * Streams the PropertyAssessments that match the specified filters, streams are not cached.
+     *
+     * @param accountNum      The account number of the property.
+     * @param neighbourhood   The neighbourhood of the properties.
+     * @param assessmentClass The assessment class of the properties.
+     * @param address         The address for properties.
+     * @param min             The minimum assessed value for filtering properties.
+     * @param max             The maximum assessed value for filtering properties.
+     * @return A Stream of the PropertyAssessments that match the specified filters.
+     */
+    @Override
+    public Stream<PropertyAssessment> streamFilter(String accountNum, String neighbourhood, String assessmentClass,
+                                                   String address, String min, String max) {
+        return dao.streamFilter(accountNum, neighbourhood, assessmentClass, address, min, max);
+    }
+
+    /**
+     * Get the assessed value statistics of every group, they are kept up to date by the wrapped DAO.
+     *
+     * @param group The column the properties are grouped by.
+     * @return The statistics of every group, ordered by group name.
+     */
+    @Override
+    public List<AssessmentStatistics> getStatistics(PropertyGroup group) {
+        return dao.getStatistics(group);
+    }
+
+    /**
+     * Finds the neighbourhoods a possibly misspelled neighbourhood was meant to be, suggestions are not cached.
+     *
+     * @param neighbourhood The neighbourhood search.
+     * @param maxDistance   The largest number of edits allowed for each word.
+     * @return The matching neighbourhood names, closest first.
+     */
+    @Override
+    public List<String> getNeighbourhoodSuggestions(String neighbourhood, int maxDistance) {
+        return dao.getNeighbourhoodSuggestions(neighbourhood, maxDistance);
+    }
+
+    /**
+     * Finds the street names a possibly misspelled street name was meant to be, suggestions are not cached.
+     *
+     * @param streetName  The street name search.
+     * @param maxDistance The largest number of edits allowed for each word.
+     * @return The matching street names, closest first.
+     */
+    @Override
+    public List<String> getStreetNameSuggestions(String streetName, int maxDistance) {
+        return dao.getStreetNameSuggestions(streetName, maxDistance);
+    }
+
+    /**
+     * Completes a typed prefix, completions are precomputed by the wrapped DAO and not cached.
+     *
+     * @param field  The search field.
+     * @param prefix The typed prefix.
+     * @param limit  The largest number of completions.
+     * @return The completions held by the most properties first.
+     */
+    @Override
+    public List<String> getCompletions(CompletionField field, String prefix, int limit) {
+        return dao.getCompletions(field, prefix, limit);
+    }
+
+    /**
+     * Get approximate assessed value percentiles, they are merged from the sketches of the wrapped DAO.
+     *
+     * @param neighbourhood   The neighbourhood to match, or null for every neighbourhood.
+     * @param ward            The ward to match, or null for every ward.
+     * @param assessmentClass The assessment class to match, or null for every assessment class.
+     * @param percentiles     The percentiles, each between 0 and 100.
+     * @return The approximate assessed value at each percentile, or null if no property matches.
+     */
+    @Override
+    public int[] getAssessedValuePercentiles(String neighbourhood, String ward, String assessmentClass,
+                                             double... percentiles) {
+        return dao.getAssessedValuePercentiles(neighbourhood, ward, assessmentClass, percentiles);
+    }
+
+    /**
+     * Get the data version of the wrapped DAO.
+     *
+     * @return The data version.
+     */
+    @Override
+    public long getDataVersion() {
+        return dao.getDataVersion();
+    }
+
+    /**
+     * Get the number of searches answered from the cache.
+     *
+     * @return The number of hits.
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Get the number of searches that had to be run.
+     *
+     * @return The number of misses.
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Get the number of cached results.
+     *
+     * @return The number of entries.
+     */
+    public synchronized int size() {
+        return results.size();
+    }
+
+    /**
+     * Drop every cached result.
+     */
+    public synchronized void clear() {
+        results.clear();
+        cachedBytes = 0;
+    }
+
+    /**
+     * A search that can be run when its result is not cached.
+     */
+    private interface Search {
+        PropertyAssessments run();
+    }
+
+    /**
+     * Return the cached result of a search or run it and cache the result. The search runs without holding the
+     * lock so a slow search does not block the others, two threads missing the same key may both run it.
+     *
+     * @param key    The normalized search.
+     * @param search Runs the search.
+     * @return A copy of the search result that the caller may modify.
+     */
+    private PropertyAssessments cached(String key, Search search) {
+        synchronized (this) {
+            dropIfStale();
+            CachedResult cachedResult = results.get(key);
+            if (cachedResult != null) {
+                hits++;
+                return cachedResult.result.copy();
+            }
+            misses++;
+        }
+
+        PropertyAssessments result = search.run();
+        long bytes = ENTRY_OVERHEAD_BYTES + key.length() * 2L + (long) result.size() * Integer.BYTES;
+        synchronized (this) {
+            dropIfStale(); // the search itself may have loaded more data, like the API does
+            if (bytes <= maxBytes) {
+                CachedResult previous = results.put(key, new CachedResult(result, bytes));
+                cachedBytes += bytes - (previous == null ? 0 : previous.bytes);
+                evict();
+            }
+        }
+        return result.copy();
+    }
+
+    /**
+     * Drop every cached result if the data version of the wrapped DAO changed.
+     */
+    private void dropIfStale() {
+        long version = dao.getDataVersion();
+        if (version != cachedVersion) {
+            clear();
+            cachedVersion = version;
+        }
+    }
+
+    /**
+     * Drop the least recently used results until the limits are met.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, CachedResult>> eldest = results.entrySet().iterator();
+        while ((results.size() > maxEntries || cachedBytes > maxBytes) && eldest.hasNext()) {
+            cachedBytes -= eldest.next().getValue().bytes;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Normalize an address the way ProcessData compares addresses.
+     *
+     * @param address The address.
+     * @return The address upper-cased with every space removed.
+     */
+    private static String normalizeAddress(String address) {
+        return address.toUpperCase().replace(" ", "");
+    }
+}
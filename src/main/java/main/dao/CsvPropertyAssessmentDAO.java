@@ -1,19 +1,43 @@
 package main.dao;
 
+import main.utility.AssessmentStatistics;
+import main.utility.CompletionField;
+import main.utility.GeoArea;
+import main.utility.GroupAggregate;
+import main.utility.GroupDimension;
 import main.utility.PropertyAssessment;
 import main.utility.PropertyAssessments;
+import main.utility.PropertyGroup;
+import main.utility.PropertyPage;
+import main.utility.PropertySortKey;
 import main.processData.ProcessData;
+import main.processData.PropertyFilter;
 
 import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * The CsvPropertyAssessmentDAO class implements the PropertyAssessmentDAO interface and provides access to property
  * assessment data in a predefined CSV file.
  * <p>
+ * The last filter search is remembered. When the next search can only keep fewer properties, for example a longer
+ * address, a tighter value range or an extra neighborhood, and the last result was small, the new search only
+ * filters the last result instead of every property.
+ * <p>
+ * A search for a neighbourhood or address that finds nothing is run once more with its misspelled words
+ * corrected to the closest words of the known neighbourhoods and street names.
+ * <p>
  * Author: Fahad Ali
  */
 public class CsvPropertyAssessmentDAO implements PropertyAssessmentDAO {
+    // a last result holding more than 1 / REFINE_FRACTION of the properties is searched again with the indexes
+    private static final int REFINE_FRACTION = 8;
+
     private final ProcessData file;
+    private Search lastSearch;
+    private PropertyAssessments lastResult;
+    private long lastVersion;
 
     /**
      * Constructs a CsvPropertyAssessmentDAO and initializes it with the CSV file.
@@ -36,6 +60,28 @@ public class CsvPropertyAssessmentDAO implements PropertyAssessmentDAO {
         return file.handleAccountNumber(accountNumber.trim());
     }
 
+    /**
+     * Retrieves the PropertyAssessments of many account numbers with one batch lookup.
+     *
+     * @param accountNumbers The account numbers of the properties.
+     * @return The PropertyAssessments that were found, in the order of the account numbers.
+     */
+    @Override
+    public PropertyAssessments getByAccountNumbers(List<String> accountNumbers) {
+        return file.handleAccountNumbers(accountNumbers, null);
+    }
+
+    /**
+     * Retrieves the PropertyAssessments whose account number starts with a partial account number.
+     *
+     * @param accountNumberPrefix The digits the account numbers start with.
+     * @return The PropertyAssessments with a matching account number.
+     */
+    @Override
+    public PropertyAssessments getByAccountPrefix(String accountNumberPrefix) {
+        return file.findByAccountPrefix(accountNumberPrefix.trim(), null);
+    }
+
     /**
      * Retrieves PropertyAssessment(s) by the specified address, can be singled by suite, house number, or street number,
      * or all three.
@@ -45,9 +91,14 @@ public class CsvPropertyAssessmentDAO implements PropertyAssessmentDAO {
      */
     @Override
     public PropertyAssessments getByAddress(String address) {
-        // set second parameter to null so that it uses the properties
-        // that are already populated with the CSV inside this DAO
-        return file.filterByAddress(address.trim(), null);
+        String addressInput = address.trim();
+        PropertyAssessments result = search(
+                new Search(null, null, null, addressInput, Integer.MIN_VALUE, Integer.MAX_VALUE),
+                // set second parameter to null so that it uses the properties
+                // that are already populated with the CSV inside this DAO
+                () -> file.filterByAddress(addressInput, null));
+        String corrected = result.size() == 0 ? file.correctAddress(addressInput) : null;
+        return corrected == null ? result : getByAddress(corrected);
     }
 
     /**
@@ -58,7 +109,12 @@ public class CsvPropertyAssessmentDAO implements PropertyAssessmentDAO {
      */
     @Override
     public PropertyAssessments getByNeighbourhood(String neighbourhood) {
-        return file.filterByNeighborhood(neighbourhood.trim(), null);
+        String neighbourhoodInput = neighbourhood.trim();
+        PropertyAssessments result = search(
+                new Search(null, neighbourhoodInput, null, null, Integer.MIN_VALUE, Integer.MAX_VALUE),
+                () -> file.filterByNeighborhood(neighbourhoodInput, null));
+        String corrected = result.size() == 0 ? file.correctNeighborhood(neighbourhoodInput) : null;
+        return corrected == null ? result : getByNeighbourhood(corrected);
     }
 
     /**
@@ -69,7 +125,9 @@ public class CsvPropertyAssessmentDAO implements PropertyAssessmentDAO {
      */
     @Override
     public PropertyAssessments getByAssessmentClass(String assessmentClass) {
-        return file.filterByAssessment(assessmentClass.trim(), null);
+        String assessmentClassInput = assessmentClass.trim();
+        return search(new Search(null, null, assessmentClassInput, null, Integer.MIN_VALUE, Integer.MAX_VALUE),
+                () -> file.filterByAssessment(assessmentClassInput, null));
     }
 
     /**
@@ -86,11 +144,142 @@ public class CsvPropertyAssessmentDAO implements PropertyAssessmentDAO {
     @Override
     public PropertyAssessments multipleFilter(String accountNum, String neighbourhood, String assessmentClass,
                                               String address, String min, String max) {
+        return multipleFilter(accountNum, neighbourhood, assessmentClass, address, min, max, null);
+    }
+
+    /**
+     * Retrieves PropertyAssessments by the specified filters and the area they are located in,
+     * the area is answered from the location index of the CSV.
+     *
+     * @param accountNum      The account number of the property.
+     * @param neighbourhood   The neighbourhood of the properties.
+     * @param assessmentClass The assessment class of the properties.
+     * @param address         The address for properties.
+     * @param min             The minimum assessed value for filtering properties.
+     * @param max             The maximum assessed value for filtering properties.
+     * @param area            The circle or rectangle the properties must be located in, or null for anywhere.
+     * @return The PropertyAssessments that match the specified filters.
+     */
+    @Override
+    public PropertyAssessments multipleFilter(String accountNum, String neighbourhood, String assessmentClass,
+                                              String address, String min, String max, GeoArea area) {
         int minValue = Integer.parseInt(min.trim());
         int maxValue = Integer.parseInt(max.trim());
 
-        return file.filters(accountNum, neighbourhood, assessmentClass, address,
-                minValue, maxValue, null);
+        PropertyAssessments result = search(
+                new Search(accountNum, neighbourhood, assessmentClass, address, minValue, maxValue, area),
+                () -> file.filters(accountNum, neighbourhood, assessmentClass, address, minValue, maxValue, area, null));
+        if (result.size() > 0) {
+            return result;
+        }
+        // nothing found, try again once with the misspelled neighbourhood and address words corrected
+        String correctedNeighbourhood = file.correctNeighborhood(neighbourhood);
+        String correctedAddress = file.correctAddress(address);
+        if (correctedNeighbourhood == null && correctedAddress == null) {
+            return result;
+        }
+        String retryNeighbourhood = correctedNeighbourhood == null ? neighbourhood : correctedNeighbourhood;
+        String retryAddress = correctedAddress == null ? address : correctedAddress;
+        return search(new Search(accountNum, retryNeighbourhood, assessmentClass, retryAddress, minValue, maxValue, area),
+                () -> file.filters(accountNum, retryNeighbourhood, assessmentClass, retryAddress,
+                        minValue, maxValue, area, null));
+    }
+
+    /**
+     * Retrieves one page of the PropertyAssessments that match the specified filters.
+     *
+     * @param accountNum      The account number of the property.
+     * @param neighbourhood   The neighbourhood of the properties.
+     * @param assessmentClass The assessment class of the properties.
+     * @param address         The address for properties.
+     * @param min             The minimum assessed value for filtering properties.
+     * @param max             The maximum assessed value for filtering properties.
+     * @param offset          The position of the first property of the page.
+     * @param limit           The largest number of properties on the page.
+     * @param sortKey         The order of the properties.
+     * @return The page and the number of PropertyAssessments that match the specified filters.
+     */
+    @Override
+    public PropertyPage multipleFilterPage(String accountNum, String neighbourhood, String assessmentClass,
+                                           String address, String min, String max,
+                                           int offset, int limit, PropertySortKey sortKey) {
+        return getPage(multipleFilter(accountNum, neighbourhood, assessmentClass, address, min, max),
+                offset, limit, sortKey);
+    }
+
+    /**
+     * Retrieves the PropertyAssessments of the CSV that pass a filter expression.
+     *
+     * @param filter The compiled filter.
+     * @return The PropertyAssessments that pass the filter.
+     */
+    @Override
+    public PropertyAssessments filter(PropertyFilter filter) {
+        return file.filter(filter, null);
+    }
+
+    /**
+     * Retrieves one page of PropertyAssessments of the CSV, sorted with the sort permutations of the CSV.
+     *
+     * @param properties The PropertyAssessments to page.
+     * @param offset     The position of the first property of the page.
+     * @param limit      The largest number of properties on the page.
+     * @param sortKey    The order of the properties.
+     * @return The page and the number of PropertyAssessments.
+     */
+    @Override
+    public PropertyPage getPage(PropertyAssessments properties, int offset, int limit, PropertySortKey sortKey) {
+        return file.getPage(properties, offset, limit, sortKey);
+    }
+
+    /**
+     * Groups the PropertyAssessments of the CSV in parallel, keyed by their dictionary codes.
+     *
+     * @param filter         A filter the properties must pass first, or null for every property.
+     * @param valueBandWidth The width of the assessed value bands, only used when grouping by VALUE_BAND.
+     * @param rollup         True to add subtotals for every shorter prefix of the dimensions and a grand total.
+     * @param dimensions     The dimensions to group by, in the order their keys are listed.
+     * @return The groups that hold properties, ordered by their keys.
+     */
+    @Override
+    public List<GroupAggregate> groupBy(PropertyFilter filter, int valueBandWidth, boolean rollup, GroupDimension... dimensions) {
+        return file.groupBy(filter, valueBandWidth, rollup, dimensions);
+    }
+
+    /**
+     * Finds the comparable PropertyAssessments of the CSV with its location index.
+     *
+     * @param accountNumber  The account number of the property to compare with.
+     * @param k              The largest number of comparable properties.
+     * @param radius         The largest distance from the property in meters.
+     * @param valueTolerance The largest difference of assessed value as a fraction of the property's value.
+     * @return The comparable PropertyAssessments, nearest first.
+     */
+    @Override
+    public PropertyAssessments findComparables(String accountNumber, int k, double radius, double valueTolerance) {
+        return file.findComparables(Integer.parseInt(accountNumber.trim()), k, radius, valueTolerance);
+    }
+
+    /**
+     * Run a filter search, over the last result when the search narrows it, and remember the result.
+     *
+     * @param search     The filters of the search.
+     * @param fullSearch Runs the search over every property.
+     * @return The PropertyAssessments that match the search.
+     */
+    private synchronized PropertyAssessments search(Search search, Supplier<PropertyAssessments> fullSearch) {
+        PropertyAssessments result;
+        if (lastSearch != null && lastVersion == file.getDataVersion() && search.narrows(lastSearch)
+                && lastResult.size() <= file.getAllList().size() / REFINE_FRACTION) {
+            result = file.filters(search.accountNum, search.neighbourhood, search.assessmentClass, search.address,
+                    search.min, search.max, search.area, lastResult);
+        } else {
+            result = fullSearch.get();
+        }
+        lastSearch = search;
+        lastResult = result;
+        lastVersion = file.getDataVersion();
+        return result;
     }
 
     /**
@@ -102,4 +291,216 @@ public class CsvPropertyAssessmentDAO implements PropertyAssessmentDAO {
     public List<PropertyAssessment> getAll() {
         return file.getAllList();
     }
+
+    /**
+     * Retrieves one page of all PropertyAssessments from the CSV.
+     *
+     * @param offset  The position of the first property of the page.
+     * @param limit   The largest number of properties on the page.
+     * @param sortKey The order of the properties.
+     * @return The page and the number of PropertyAssessments in the CSV.
+     */
+    @Override
+    public PropertyPage getAllPage(int offset, int limit, PropertySortKey sortKey) {
+        return file.getPage(offset, limit, sortKey);
+    }
+
+    /**
+     * Streams every PropertyAssessment of the CSV in file order.
+     *
+     * @return A Stream of PropertyAssessment objects.
+     */
+    @Override
+    public Stream<PropertyAssessment> streamAll() {
+        return file.stream();
+    }
+
+    /**
+     * Streams the PropertyAssessments of the CSV that match the specified filters, testing each property
+     * as the stream reaches it.
+     *
+     * @param accountNum      The account number of the property.
+     * @param neighbourhood   The neighbourhood of the properties.
+     * @param assessmentClass The assessment class of the properties.
+     * @param address         The address for properties.
+     * @param min             The minimum assessed value for filtering properties.
+     * @param max             The maximum assessed value for filtering properties.
+     * @return A Stream of the PropertyAssessments that match the specified filters.
+     */
+    @Override
+    public Stream<PropertyAssessment> streamFilter(String accountNum, String neighbourhood, String assessmentClass,
+                                                   String address, String min, String max) {
+        return file.streamFilters(accountNum, neighbourhood, assessmentClass, address,
+                Integer.parseInt(min.trim()), Integer.parseInt(max.trim()));
+    }
+
+    /**
+     * Get the precomputed assessed value statistics of every group of the CSV properties.
+     *
+     * @param group The column the properties are grouped by.
+     * @return The statistics of every group, ordered by group name.
+     */
+    @Override
+    public List<AssessmentStatistics> getStatistics(PropertyGroup group) {
+        return file.getStatistics(group);
+    }
+
+    /**
+     * Finds the neighbourhoods of the CSV a possibly misspelled neighbourhood was meant to be.
+     *
+     * @param neighbourhood The neighbourhood search.
+     * @param maxDistance   The largest number of edits allowed for each word.
+     * @return The matching neighbourhood names, closest first.
+     */
+    @Override
+    public List<String> getNeighbourhoodSuggestions(String neighbourhood, int maxDistance) {
+        return file.suggestNeighborhoods(neighbourhood, maxDistance);
+    }
+
+    /**
+     * Finds the street names of the CSV a possibly misspelled street name was meant to be.
+     *
+     * @param streetName  The street name search.
+     * @param maxDistance The largest number of edits allowed for each word.
+     * @return The matching street names, closest first.
+     */
+    @Override
+    public List<String> getStreetNameSuggestions(String streetName, int maxDistance) {
+        return file.suggestStreetNames(streetName, maxDistance);
+    }
+
+    /**
+     * Completes a typed prefix from the completions precomputed when the CSV was loaded.
+     *
+     * @param field  The search field.
+     * @param prefix The typed prefix.
+     * @param limit  The largest number of completions.
+     * @return The completions held by the most properties first.
+     */
+    @Override
+    public List<String> getCompletions(CompletionField field, String prefix, int limit) {
+        return file.complete(field, prefix, limit);
+    }
+
+    /**
+     * Get approximate assessed value percentiles of the CSV properties from the sketches built at load.
+     *
+     * @param neighbourhood   The neighbourhood to match, or null for every neighbourhood.
+     * @param ward            The ward to match, or null for every ward.
+     * @param assessmentClass The assessment class to match, or null for every assessment class.
+     * @param percentiles     The percentiles, each between 0 and 100.
+     * @return The approximate assessed value at each percentile, or null if no property matches.
+     */
+    @Override
+    public int[] getAssessedValuePercentiles(String neighbourhood, String ward, String assessmentClass,
+                                             double... percentiles) {
+        return file.assessedValuePercentiles(neighbourhood, ward, assessmentClass, percentiles);
+    }
+
+    /**
+     * Get the version of the CSV data, it changes when the file is processed again.
+     *
+     * @return The data version.
+     */
+    @Override
+    public long getDataVersion() {
+        return file.getDataVersion();
+    }
+
+    /**
+     * The filters of one search, null filters match every property.
+     */
+    private static class Search {
+        private final String accountNum;
+        private final String neighbourhood;
+        private final String assessmentClass;
+        private final String address;
+        private final int min;
+        private final int max;
+        private final GeoArea area;
+
+        /**
+         * Constructor for a Search anywhere.
+         *
+         * @param accountNum      The account number filter.
+         * @param neighbourhood   The neighbourhood filter.
+         * @param assessmentClass The assessment class filter.
+         * @param address         The address filter.
+         * @param min             The minimum assessed value.
+         * @param max             The maximum assessed value.
+         */
+        Search(String accountNum, String neighbourhood, String assessmentClass, String address, int min, int max) {
+            this(accountNum, neighbourhood, assessmentClass, address, min, max, null);
+        }
+
+        /**
+         * Constructor for a Search.
+         *
+         * @param accountNum      The account number filter.
+         * @param neighbourhood   The neighbourhood filter.
+         * @param assessmentClass The assessment class filter.
+         * @param address         The address filter.
+         * @param min             The minimum assessed value.
+         * @param max             The maximum assessed value.
+         * @param area            The area filter, or null for anywhere.
+         */
+        Search(String accountNum, String neighbourhood, String assessmentClass, String address, int min, int max,
+               GeoArea area) {
+            this.accountNum = accountNum;
+            this.neighbourhood = neighbourhood;
+            this.assessmentClass = assessmentClass;
+            this.address = address;
+            this.min = min;
+            this.max = max;
+            this.area = area;
+        }
+
+        /**
+         * Check if every property this search keeps is also kept by another search, following the way
+         * ProcessData compares each filter: text filters that contain the earlier text, the same assessment class,
+         * a range inside the earlier range and the same area.
+         *
+         * @param previous The earlier search.
+         * @return True if this search can be run over the result of the earlier one.
+         */
+        boolean narrows(Search previous) {
+            return contains(accountNum, previous.accountNum)
+                    && contains(lower(neighbourhood), lower(previous.neighbourhood))
+                    && (previous.assessmentClass == null || previous.assessmentClass.equalsIgnoreCase(assessmentClass))
+                    && contains(normalizeAddress(address), normalizeAddress(previous.address))
+                    && min >= previous.min && max <= previous.max
+                    && (previous.area == null || previous.area.equals(area));
+        }
+
+        /**
+         * Check if a text filter is at least as strict as an earlier one.
+         *
+         * @param text     The filter text, null matches everything.
+         * @param previous The earlier filter text, null matches everything.
+         * @return True if the text contains the earlier text.
+         */
+        private static boolean contains(String text, String previous) {
+            return previous == null || (text != null && text.contains(previous));
+        }
+
+        /**
+         * Lower-case a filter the way neighborhoods are compared.
+         *
+         * @param text The filter text.
+         * @return The lower-cased text, or null.
+         */
+        private static String lower(String text) {
+            return text == null ? null : text.toLowerCase();
+        }
+
+        /**
+         * Normalize an address filter the way addresses are compared.
+         *
+         * @param address The address filter.
+         * @return The upper-cased address with every space removed, or null.
+         */
+        private static String normalizeAddress(String address) {
+            return address == null ? null : address.toUpperCase().replace(" ", "");
+        }
+    }
 }
\ No newline at end of file
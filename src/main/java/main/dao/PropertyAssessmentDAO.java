@@ -1,9 +1,19 @@
 package main.dao;
 
+import main.processData.PropertyFilter;
+import main.utility.AssessmentStatistics;
+import main.utility.CompletionField;
+import main.utility.GroupAggregate;
+import main.utility.GeoArea;
+import main.utility.GroupDimension;
 import main.utility.PropertyAssessment;
 import main.utility.PropertyAssessments;
+import main.utility.PropertyGroup;
+import main.utility.PropertyPage;
+import main.utility.PropertySortKey;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * The PropertyAssessmentDAO interface holds methods for retrieving property assessment data.
@@ -19,6 +29,22 @@ public interface PropertyAssessmentDAO {
      */
     PropertyAssessment getByAccountNumber(String accountNumber);
 
+    /**
+     * Retrieve the PropertyAssessments of many account numbers at once.
+     *
+     * @param accountNumbers The account numbers to look up.
+     * @return PropertyAssessments with the properties that were found, in the order of the account numbers.
+     */
+    PropertyAssessments getByAccountNumbers(List<String> accountNumbers);
+
+    /**
+     * Retrieve the PropertyAssessments whose account number starts with a partial account number.
+     *
+     * @param accountNumberPrefix The digits the account numbers start with.
+     * @return PropertyAssessments with the matching properties, empty if the prefix is not a number.
+     */
+    PropertyAssessments getByAccountPrefix(String accountNumberPrefix);
+
     /**
      * Retrieve range of PropertyAssessments by neighborhood.
      *
@@ -57,10 +83,177 @@ public interface PropertyAssessmentDAO {
     PropertyAssessments multipleFilter(String accountNum, String neighborhoodToMatch, String assessmentClassToMatch,
                                        String addressToMatch, String minAssessedValue, String maxAssessedValue);
 
+    /**
+     * Get range of Properties based on multiple filters and the area they are located in.
+     *
+     * @param accountNum             The account number to filter assessments.
+     * @param neighborhoodToMatch    The neighborhood to filter assessments.
+     * @param assessmentClassToMatch The assessment class to filter assessments.
+     * @param addressToMatch         The address to filter assessments.
+     * @param minAssessedValue       The minimum assessed value to filter assessments.
+     * @param maxAssessedValue       The maximum assessed value to filter assessments.
+     * @param area                   The circle or rectangle the properties must be located in, or null for anywhere.
+     * @return PropertyAssessments containing assessments that match all specified criteria.
+     */
+    PropertyAssessments multipleFilter(String accountNum, String neighborhoodToMatch, String assessmentClassToMatch,
+                                       String addressToMatch, String minAssessedValue, String maxAssessedValue,
+                                       GeoArea area);
+
     /**
      * Retrieve a list of all PropertyAssessments.
      *
      * @return A list of all PropertyAssessment objects available.
      */
     List<PropertyAssessment> getAll();
+
+    /**
+     * Retrieve one page of all PropertyAssessments.
+     *
+     * @param offset  The position of the first property of the page.
+     * @param limit   The largest number of properties on the page.
+     * @param sortKey The order of the properties.
+     * @return The page and the number of all PropertyAssessments.
+     */
+    PropertyPage getAllPage(int offset, int limit, PropertySortKey sortKey);
+
+    /**
+     * Get one page of the Properties that match multiple filters.
+     *
+     * @param accountNum             The account number to filter assessments.
+     * @param neighborhoodToMatch    The neighborhood to filter assessments.
+     * @param assessmentClassToMatch The assessment class to filter assessments.
+     * @param addressToMatch         The address to filter assessments.
+     * @param minAssessedValue       The minimum assessed value to filter assessments.
+     * @param maxAssessedValue       The maximum assessed value to filter assessments.
+     * @param offset                 The position of the first property of the page.
+     * @param limit                  The largest number of properties on the page.
+     * @param sortKey                The order of the properties.
+     * @return The page and the number of assessments that match all specified criteria.
+     */
+    PropertyPage multipleFilterPage(String accountNum, String neighborhoodToMatch, String assessmentClassToMatch,
+                                    String addressToMatch, String minAssessedValue, String maxAssessedValue,
+                                    int offset, int limit, PropertySortKey sortKey);
+
+    /**
+     * Retrieve the PropertyAssessments that pass a filter expression.
+     *
+     * @param filter The compiled filter, see PropertyFilter.parse.
+     * @return The PropertyAssessments that pass the filter.
+     */
+    PropertyAssessments filter(PropertyFilter filter);
+
+    /**
+     * Get one page of PropertyAssessments returned by this DAO, sorted across all of them.
+     *
+     * @param properties The PropertyAssessments to page.
+     * @param offset     The position of the first property of the page.
+     * @param limit      The largest number of properties on the page.
+     * @param sortKey    The order of the properties.
+     * @return The page and the number of PropertyAssessments.
+     */
+    PropertyPage getPage(PropertyAssessments properties, int offset, int limit, PropertySortKey sortKey);
+
+    /**
+     * Count and total the assessed values of the PropertyAssessments of this DAO grouped by any combination of dimensions.
+     *
+     * @param filter         A filter the properties must pass first, or null for every property.
+     * @param valueBandWidth The width of the assessed value bands, only used when grouping by VALUE_BAND.
+     * @param rollup         True to add subtotals for every shorter prefix of the dimensions and a grand total.
+     * @param dimensions     The dimensions to group by, in the order their keys are listed.
+     * @return The groups that hold properties, ordered by their keys.
+     */
+    List<GroupAggregate> groupBy(PropertyFilter filter, int valueBandWidth, boolean rollup, GroupDimension... dimensions);
+
+    /**
+     * Find the comparable properties of a property: the nearest ones within a radius with the same first
+     * assessment class and an assessed value within a tolerance of its own.
+     *
+     * @param accountNumber  The account number of the property to compare with.
+     * @param k              The largest number of comparable properties.
+     * @param radius         The largest distance from the property in meters.
+     * @param valueTolerance The largest difference of assessed value as a fraction of the property's value.
+     * @return The comparable PropertyAssessments, nearest first.
+     */
+    PropertyAssessments findComparables(String accountNumber, int k, double radius, double valueTolerance);
+
+    /**
+     * Stream every PropertyAssessment. Properties are handed over as they are produced,
+     * so consuming the stream doesn't need the full list in memory.
+     *
+     * @return A Stream of PropertyAssessment objects.
+     */
+    Stream<PropertyAssessment> streamAll();
+
+    /**
+     * Stream the PropertyAssessments that match multiple filters, as they are produced.
+     *
+     * @param accountNum             The account number to filter assessments.
+     * @param neighborhoodToMatch    The neighborhood to filter assessments.
+     * @param assessmentClassToMatch The assessment class to filter assessments.
+     * @param addressToMatch         The address to filter assessments.
+     * @param minAssessedValue       The minimum assessed value to filter assessments.
+     * @param maxAssessedValue       The maximum assessed value to filter assessments.
+     * @return A Stream of the PropertyAssessments that match all specified criteria.
+     */
+    Stream<PropertyAssessment> streamFilter(String accountNum, String neighborhoodToMatch, String assessmentClassToMatch,
+                                            String addressToMatch, String minAssessedValue, String maxAssessedValue);
+
+    /**
+     * Get the assessed value statistics of every group of properties, like every neighbourhood or ward.
+     *
+     * @param group The column the properties are grouped by.
+     * @return The count, total, mean, median, minimum and maximum assessed value of every group,
+     * ordered by group name.
+     */
+    List<AssessmentStatistics> getStatistics(PropertyGroup group);
+
+    /**
+     * Find the neighbourhoods a possibly misspelled neighbourhood was meant to be.
+     *
+     * @param neighbourhood The neighbourhood search.
+     * @param maxDistance   The largest number of edits allowed for each word.
+     * @return The matching neighbourhood names, closest first.
+     */
+    List<String> getNeighbourhoodSuggestions(String neighbourhood, int maxDistance);
+
+    /**
+     * Find the street names a possibly misspelled street name was meant to be.
+     *
+     * @param streetName  The street name search.
+     * @param maxDistance The largest number of edits allowed for each word.
+     * @return The matching street names, closest first.
+     */
+    List<String> getStreetNameSuggestions(String streetName, int maxDistance);
+
+    /**
+     * Complete a typed prefix of a search field, for suggestions while the user types.
+     *
+     * @param field  The search field.
+     * @param prefix The typed prefix, case is ignored.
+     * @param limit  The largest number of completions.
+     * @return The completions held by the most properties first.
+     */
+    List<String> getCompletions(CompletionField field, String prefix, int limit);
+
+    /**
+     * Get approximate assessed value percentiles of the properties in a neighbourhood, ward and assessment class.
+     * They are merged from precomputed quantile sketches, so the rank of each value is off by about 1.5%
+     * of the matching properties at most.
+     *
+     * @param neighbourhood   The neighbourhood to match, or null for every neighbourhood.
+     * @param ward            The ward to match, or null for every ward.
+     * @param assessmentClass The assessment class to match, or null for every assessment class.
+     * @param percentiles     The percentiles, each between 0 and 100.
+     * @return The approximate assessed value at each percentile, or null if no property matches.
+     */
+    int[] getAssessedValuePercentiles(String neighbourhood, String ward, String assessmentClass,
+                                      double... percentiles);
+
+    /**
+     * Get the version of the data behind this DAO. It changes whenever the data is loaded again or grows,
+     * results retrieved under another version may be out of date.
+     *
+     * @return The data version.
+     */
+    long getDataVersion();
 }
\ No newline at end of file
@@ -0,0 +1,342 @@
+package main.index;
+
+import main.utility.PropertyStore;
+
+import java.util.Arrays;
+
+/**
+ * AccountNumberIndex answers partial account number searches without turning account numbers into strings.
+ * <p>
+ * Account numbers are kept sorted, so the numbers starting with a prefix are one range per number of digits:
+ * the 8 digit numbers starting with 1066 are 10660000 to 10669999. A prefix search is a few binary searches.
+ * <p>
+ * Every run of three digits (a digit trigram) of an account number lists its rows. A substring search of three
+ * or more digits walks the shortest list among the trigrams of the query and checks each row with integer
+ * arithmetic. Shorter searches have no trigram and match a large part of the rows anyway, they are scanned with
+ * the same arithmetic check.
+ * <p>
+ * Author: Fahad Ali
+ */
+public class AccountNumberIndex implements RowIndex {
+    public static final int MAX_DIGITS = 10; // digits of the largest int
+    private static final int TRIGRAMS = 1000;
+    private static final long[] POWERS_OF_TEN = new long[MAX_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i <= MAX_DIGITS; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final PropertyStore store;
+    private final int rowCount;
+    private final long[] sortedAccounts; // account number and row packed, sorted by account number
+    private final int[] trigramStart; // rows of trigram t are trigramRows[trigramStart[t]] up to trigramStart[t + 1]
+    private final int[] trigramRows;
+
+    /**
+     * Constructor for an AccountNumberIndex over the current rows of a store.
+     *
+     * @param store The PropertyStore to index.
+     */
+    public AccountNumberIndex(PropertyStore store) {
+        this.store = store;
+        this.rowCount = store.size();
+        int[] accounts = store.intColumn(PropertyStore.ACCOUNT_NUM);
+
+        sortedAccounts = new long[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            sortedAccounts[row] = ((long) accounts[row] << 32) | row;
+        }
+        Arrays.sort(sortedAccounts);
+
+        // count first so the lists fit one array, rows are added in order so every list is ascending
+        trigramStart = new int[TRIGRAMS + 1];
+        int[] seen = new int[TRIGRAMS];
+        Arrays.fill(seen, -1);
+        for (int row = 0; row < rowCount; row++) {
+            for (int number = accounts[row]; number >= 100; number /= 10) {
+                int trigram = number % TRIGRAMS;
+                if (seen[trigram] != row) {
+                    seen[trigram] = row;
+                    trigramStart[trigram + 1]++;
+                }
+            }
+        }
+        for (int trigram = 0; trigram < TRIGRAMS; trigram++) {
+            trigramStart[trigram + 1] += trigramStart[trigram];
+        }
+        trigramRows = new int[trigramStart[TRIGRAMS]];
+        int[] next = Arrays.copyOf(trigramStart, TRIGRAMS);
+        Arrays.fill(seen, -1);
+        for (int row = 0; row < rowCount; row++) {
+            for (int number = accounts[row]; number >= 100; number /= 10) {
+                int trigram = number % TRIGRAMS;
+                if (seen[trigram] != row) {
+                    seen[trigram] = row;
+                    trigramRows[next[trigram]++] = row;
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if the index was built over every row of a store.
+     *
+     * @param store The PropertyStore to check.
+     * @return True if the index is up to date for the store.
+     */
+    @Override
+    public boolean covers(PropertyStore store) {
+        return store == this.store && rowCount == store.size();
+    }
+
+    /**
+     * Find the rows whose account number contains the digits of a query.
+     *
+     * @param query The digits to search for, a query that is not only digits matches no row.
+     * @return The matching rows in ascending order.
+     */
+    public int[] rowsContaining(String query) {
+        int digits = digitCount(query);
+        if (digits < 0) {
+            return new int[0];
+        }
+        long value = digits == 0 ? 0 : Long.parseLong(query);
+        int[] accounts = store.intColumn(PropertyStore.ACCOUNT_NUM);
+        int[] rows;
+        int from;
+        int to;
+        if (digits >= 3) {
+            int trigram = rarestTrigram(value, digits);
+            rows = trigramRows;
+            from = trigramStart[trigram];
+            to = trigramStart[trigram + 1];
+        } else {
+            rows = null;
+            from = 0;
+            to = rowCount;
+        }
+
+        int[] matches = new int[Math.min(to - from, 1024)];
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            int row = rows == null ? i : rows[i];
+            if (contains(accounts[row], value, digits)) {
+                if (count == matches.length) {
+                    matches = Arrays.copyOf(matches, count * 2);
+                }
+                matches[count++] = row;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * Estimate the number of rows whose account number contains a query, from the length of the list
+     * that rowsContaining walks.
+     *
+     * @param query The digits to search for.
+     * @return An upper bound of the number of matching rows.
+     */
+    public int estimate(String query) {
+        int digits = digitCount(query);
+        if (digits < 0) {
+            return 0;
+        }
+        if (digits < 3) {
+            return rowCount;
+        }
+        int trigram = rarestTrigram(Long.parseLong(query), digits);
+        return trigramStart[trigram + 1] - trigramStart[trigram];
+    }
+
+    /**
+     * Find the rows whose account number starts with the digits of a prefix.
+     *
+     * @param prefix The digits the account number starts with.
+     * @return The matching rows ordered by account number.
+     */
+    public int[] rowsWithPrefix(String prefix) {
+        int digits = digitCount(prefix);
+        if (digits <= 0 || (prefix.charAt(0) == '0' && digits > 1)) {
+            return new int[0]; // numbers have no leading zeros
+        }
+        long value = Long.parseLong(prefix);
+        int[] rows = new int[countWithPrefix(value, digits)];
+        int count = 0;
+        for (int length = digits; length <= maxLength(value); length++) {
+            long[] range = prefixRange(value, digits, length);
+            for (int i = lowerBound(range[0]); i < rowCount && (sortedAccounts[i] >> 32) <= range[1]; i++) {
+                rows[count++] = (int) sortedAccounts[i];
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Count the rows whose account number starts with the digits of a prefix.
+     *
+     * @param prefix The digits the account number starts with.
+     * @return The number of matching rows.
+     */
+    public int countWithPrefix(String prefix) {
+        int digits = digitCount(prefix);
+        if (digits <= 0 || (prefix.charAt(0) == '0' && digits > 1)) {
+            return 0;
+        }
+        return countWithPrefix(Long.parseLong(prefix), digits);
+    }
+
+    /**
+     * Check if the decimal digits of an account number contain the digits of a query, without building strings.
+     * The lowest digits of the number are compared with the query, then the number is shifted right one digit
+     * at a time while it still has as many digits as the query.
+     *
+     * @param accountNumber The account number.
+     * @param query         The value of the query digits.
+     * @param queryDigits   The number of query digits, leading zeros included, or -1 for a query that never matches.
+     * @return True if the account number contains the query.
+     */
+    public static boolean contains(int accountNumber, long query, int queryDigits) {
+        if (queryDigits <= 0) {
+            return queryDigits == 0;
+        }
+        long number = accountNumber;
+        if (number < 0) {
+            return false;
+        }
+        long window = POWERS_OF_TEN[queryDigits];
+        long smallest = queryDigits == 1 ? 0 : POWERS_OF_TEN[queryDigits - 1];
+        while (number >= smallest) {
+            if (number % window == query) {
+                return true;
+            }
+            if (number < 10) {
+                return false;
+            }
+            number /= 10;
+        }
+        return false;
+    }
+
+    /**
+     * Check if the decimal digits of an account number start with the digits of a prefix, without building strings.
+     * The number is divided down to as many digits as the prefix and compared with it.
+     *
+     * @param accountNumber The account number.
+     * @param prefix        The value of the prefix digits.
+     * @param prefixDigits  The number of prefix digits, leading zeros included, or -1 for a prefix that never matches.
+     * @return True if the account number starts with the prefix.
+     */
+    public static boolean startsWith(int accountNumber, long prefix, int prefixDigits) {
+        if (prefixDigits <= 0 || accountNumber < 0) {
+            return false;
+        }
+        int digits = 1;
+        while (digits < MAX_DIGITS && accountNumber >= POWERS_OF_TEN[digits]) {
+            digits++;
+        }
+        return digits >= prefixDigits && accountNumber / POWERS_OF_TEN[digits - prefixDigits] == prefix;
+    }
+
+    /**
+     * Count the digits of a query.
+     *
+     * @param query The query.
+     * @return The number of digits, or -1 if the query holds something other than digits or is too long.
+     */
+    public static int digitCount(String query) {
+        if (query.length() > MAX_DIGITS) {
+            return -1;
+        }
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+        }
+        return query.length();
+    }
+
+    /**
+     * Find the trigram of a query with the fewest rows.
+     *
+     * @param value  The value of the query digits.
+     * @param digits The number of query digits, at least 3.
+     * @return The trigram.
+     */
+    private int rarestTrigram(long value, int digits) {
+        int best = (int) (value % TRIGRAMS);
+        for (int shift = 1; shift <= digits - 3; shift++) {
+            int trigram = (int) (value / POWERS_OF_TEN[shift] % TRIGRAMS);
+            if (trigramStart[trigram + 1] - trigramStart[trigram] < trigramStart[best + 1] - trigramStart[best]) {
+                best = trigram;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Count the rows whose account number starts with a prefix.
+     *
+     * @param value  The value of the prefix digits, without leading zeros.
+     * @param digits The number of prefix digits.
+     * @return The number of matching rows.
+     */
+    private int countWithPrefix(long value, int digits) {
+        int count = 0;
+        for (int length = digits; length <= maxLength(value); length++) {
+            long[] range = prefixRange(value, digits, length);
+            count += lowerBound(range[1] + 1) - lowerBound(range[0]);
+        }
+        return count;
+    }
+
+    /**
+     * Get the largest number of digits of the numbers that can start with a prefix.
+     *
+     * @param value The value of the prefix digits.
+     * @return The number of digits, only the number 0 itself starts with the prefix 0.
+     */
+    private static int maxLength(long value) {
+        return value == 0 ? 1 : MAX_DIGITS;
+    }
+
+    /**
+     * Get the range of the numbers with a number of digits that start with a prefix.
+     *
+     * @param value  The value of the prefix digits.
+     * @param digits The number of prefix digits.
+     * @param length The number of digits of the numbers.
+     * @return The smallest and largest number of the range, inclusive.
+     */
+    private static long[] prefixRange(long value, int digits, int length) {
+        long scale = POWERS_OF_TEN[length - digits];
+        return new long[]{value * scale, (value + 1) * scale - 1};
+    }
+
+    /**
+     * Find the first sorted position whose account number is at least a value.
+     *
+     * @param accountNumber The value.
+     * @return The position, or the number of rows if every account number is smaller.
+     */
+    private int lowerBound(long accountNumber) {
+        if (accountNumber > Integer.MAX_VALUE) {
+            return rowCount;
+        }
+        int low = 0;
+        int high = rowCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if ((sortedAccounts[middle] >> 32) < accountNumber) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
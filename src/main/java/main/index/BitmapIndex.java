@@ -0,0 +1,167 @@
+package main.index;
+
+import main.utility.PropertyStore;
+import main.utility.StringDictionary;
+
+import java.util.BitSet;
+import java.util.function.Predicate;
+
+/**
+ * BitmapIndex is an inverted index from the dictionary codes of one or more text columns of a PropertyStore
+ * to the rows holding them. Every code keeps a sorted array of its rows, a lookup matches the query against the
+ * small dictionary first and then ORs the rows of every matching code into a bitmap of store rows,
+ * so a query costs a pass over the dictionary and the matching rows instead of a pass over every property.
+ * <p>
+ * Columns that share a dictionary, like the three assessment class columns, can be indexed together,
+ * a row is then listed once under every code found in any of the columns.
+ * <p>
+ * Author: Fahad Ali
+ */
+public class BitmapIndex implements RowIndex {
+    private final PropertyStore store;
+    private final StringDictionary dictionary;
+    private final int rowCount;
+    private final int[][] rowsByCode;
+
+    /**
+     * Constructor for a BitmapIndex over the current rows of a store.
+     *
+     * @param store       The PropertyStore to index.
+     * @param textColumns The text column constants to index, they must share one dictionary.
+     */
+    public BitmapIndex(PropertyStore store, int... textColumns) {
+        this.store = store;
+        this.dictionary = store.getDictionary(textColumns[0]);
+        this.rowCount = store.size();
+        for (int column : textColumns) {
+            if (store.getDictionary(column) != dictionary) {
+                throw new IllegalArgumentException("Indexed columns must share a dictionary");
+            }
+        }
+
+        // count first so every code gets an exactly sized array
+        int[] counts = new int[dictionary.size()];
+        int[][] columns = new int[textColumns.length][];
+        for (int i = 0; i < textColumns.length; i++) {
+            columns[i] = store.codeColumn(textColumns[i]);
+        }
+        for (int row = 0; row < rowCount; row++) {
+            for (int i = 0; i < columns.length; i++) {
+                int code = columns[i][row];
+                if (isFirstOccurrence(columns, i, row, code)) {
+                    counts[code]++;
+                }
+            }
+        }
+
+        rowsByCode = new int[counts.length][];
+        for (int code = 0; code < counts.length; code++) {
+            rowsByCode[code] = new int[counts[code]];
+            counts[code] = 0;
+        }
+        for (int row = 0; row < rowCount; row++) {
+            for (int i = 0; i < columns.length; i++) {
+                int code = columns[i][row];
+                if (isFirstOccurrence(columns, i, row, code)) {
+                    rowsByCode[code][counts[code]++] = row;
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if the index was built over every row of a store.
+     *
+     * @param store The PropertyStore to check.
+     * @return True if the index is up to date for the store.
+     */
+    @Override
+    public boolean covers(PropertyStore store) {
+        return this.store == store && rowCount == store.size();
+    }
+
+    /**
+     * Get the store rows whose indexed columns hold a value that passes a test.
+     *
+     * @param test The test every dictionary value is matched against.
+     * @return A bitmap of the matching store rows.
+     */
+    public BitSet rowsMatching(Predicate<String> test) {
+        BitSet rows = new BitSet(rowCount);
+        for (int code = 0; code < rowsByCode.length; code++) {
+            if (test.test(dictionary.decode(code))) {
+                for (int row : rowsByCode[code]) {
+                    rows.set(row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Get the number of rows listed under the values that pass a test, without building a bitmap.
+     * A row listed under several matching values is counted once per value, so this is an upper bound.
+     *
+     * @param test The test every dictionary value is matched against.
+     * @return The number of listed rows.
+     */
+    public int countMatching(Predicate<String> test) {
+        int count = 0;
+        for (int code = 0; code < rowsByCode.length; code++) {
+            if (test.test(dictionary.decode(code))) {
+                count += rowsByCode[code].length;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the rows set in a bitmap.
+     *
+     * @param rows The bitmap of rows.
+     * @return The rows in ascending order.
+     */
+    public static int[] toRows(BitSet rows) {
+        int[] array = new int[rows.cardinality()];
+        int count = 0;
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            array[count++] = row;
+        }
+        return array;
+    }
+
+    /**
+     * Get the dictionary codes whose values pass a test, used to test rows of lists the index doesn't cover.
+     *
+     * @param dictionary The dictionary to match.
+     * @param test       The test every dictionary value is matched against.
+     * @return A bitmap of the matching codes.
+     */
+    public static BitSet codesMatching(StringDictionary dictionary, Predicate<String> test) {
+        BitSet codes = new BitSet(dictionary.size());
+        for (int code = 0; code < dictionary.size(); code++) {
+            if (test.test(dictionary.decode(code))) {
+                codes.set(code);
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * Check if a code is seen for the first time in a row, so a row is not listed twice under one code.
+     *
+     * @param columns The code columns being indexed.
+     * @param column  The position of the column being read.
+     * @param row     The row.
+     * @param code    The code read from the column.
+     * @return True if none of the earlier columns of the row hold the code.
+     */
+    private static boolean isFirstOccurrence(int[][] columns, int column, int row, int code) {
+        for (int i = 0; i < column; i++) {
+            if (columns[i][row] == code) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,326 @@
+package main.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CompletionTrie completes typed prefixes to the most common keys starting with them, like the street names
+ * held by the most properties. Keys are upper-cased into a character trie, and every node keeps its best
+ * completions precomputed: the heaviest keys of its subtree, ties going to the first key alphabetically.
+ * A lookup walks one node per character of the prefix and reads the list of the last node, so its cost doesn't
+ * depend on the number of keys.
+ * <p>
+ * Nodes are kept in flat arrays. The completion lists share one pool, and a node without a key of its own that
+ * has a single child reuses the list of that child, so long chains like the digits of account numbers
+ * don't store a list per node.
+ * <p>
+ * Author: Fahad Ali
+ */
+public class CompletionTrie {
+    public static final int DEFAULT_COMPLETIONS = 10;
+    private static final int MAX_DIGITS = 10; // digits of the largest int
+    private static final long[] POWERS_OF_TEN = new long[MAX_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i <= MAX_DIGITS; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final int maxCompletions;
+    private final String[] keys;
+    private final int[] weights;
+    private int nodeCount;
+    private char[] labels;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int[] terminalKey; // key ending at a node, -1 if none
+    private int[] completionStart;
+    private int[] completionCount;
+    private int[] completionPool;
+    private long[] ranked = new long[0]; // scratch space of best()
+
+    /**
+     * Constructor for a CompletionTrie over sorted distinct keys.
+     *
+     * @param keys           The upper-cased keys in ascending order, without duplicates or empty keys.
+     * @param weights        The weight of every key.
+     * @param maxCompletions The number of completions kept for every prefix.
+     */
+    private CompletionTrie(String[] keys, int[] weights, int maxCompletions) {
+        this.maxCompletions = Math.max(1, maxCompletions);
+        this.keys = keys;
+        this.weights = weights;
+        allocate(Math.max(16, keys.length * 2));
+        nodeCount = 1; // the root, for the empty prefix
+        firstChild[0] = -1;
+        nextSibling[0] = -1;
+        terminalKey[0] = -1;
+        build();
+        rankCompletions();
+    }
+
+    /**
+     * Build a CompletionTrie over keys and their weights, keeping the default number of completions.
+     *
+     * @param keys    The keys, keys that are equal once upper-cased are added up and blank keys are skipped.
+     * @param weights The weight of every key, like the number of properties holding it.
+     * @return The trie.
+     */
+    public static CompletionTrie of(String[] keys, int[] weights) {
+        Map<String, Integer> merged = new HashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            String key = keys[i] == null ? "" : keys[i].trim().toUpperCase();
+            if (!key.isEmpty()) {
+                merged.merge(key, weights[i], Integer::sum);
+            }
+        }
+        String[] sortedKeys = merged.keySet().toArray(new String[0]);
+        Arrays.sort(sortedKeys);
+        int[] sortedWeights = new int[sortedKeys.length];
+        for (int i = 0; i < sortedKeys.length; i++) {
+            sortedWeights[i] = merged.get(sortedKeys[i]);
+        }
+        return new CompletionTrie(sortedKeys, sortedWeights, DEFAULT_COMPLETIONS);
+    }
+
+    /**
+     * Build a CompletionTrie over the decimal digits of numbers that all have the same weight, like account
+     * numbers, so they complete in order. The numbers are sorted as text with a primitive sort: each number is
+     * padded with zeros on the right to the same length, which orders digits like text, and its length breaks
+     * the ties so a number comes before the longer numbers it is a prefix of.
+     *
+     * @param numbers The numbers, must not be negative, duplicates are kept once.
+     * @return The trie.
+     */
+    public static CompletionTrie ofNumbers(int[] numbers) {
+        long[] sortKeys = new long[numbers.length];
+        for (int i = 0; i < numbers.length; i++) {
+            int digits = digits(numbers[i]);
+            sortKeys[i] = ((long) numbers[i] * POWERS_OF_TEN[MAX_DIGITS - digits]) << 4 | digits;
+        }
+        Arrays.sort(sortKeys);
+        String[] keys = new String[sortKeys.length];
+        int count = 0;
+        for (int i = 0; i < sortKeys.length; i++) {
+            if (i == 0 || sortKeys[i] != sortKeys[i - 1]) {
+                int digits = (int) (sortKeys[i] & 0xF);
+                keys[count++] = String.valueOf((sortKeys[i] >>> 4) / POWERS_OF_TEN[MAX_DIGITS - digits]);
+            }
+        }
+        int[] weights = new int[count];
+        Arrays.fill(weights, 1);
+        return new CompletionTrie(Arrays.copyOf(keys, count), weights, DEFAULT_COMPLETIONS);
+    }
+
+    /**
+     * Get the best completions of a prefix.
+     *
+     * @param prefix The typed prefix, case is ignored.
+     * @param limit  The largest number of completions, at most the number kept for every prefix.
+     * @return The completions, heaviest first.
+     */
+    public List<String> complete(String prefix, int limit) {
+        List<String> completions = new ArrayList<>();
+        int node = find(prefix == null ? "" : prefix.stripLeading().toUpperCase());
+        if (node < 0) {
+            return completions;
+        }
+        int count = Math.min(limit, completionCount[node]);
+        for (int i = 0; i < count; i++) {
+            completions.add(keys[completionPool[completionStart[node] + i]]);
+        }
+        return completions;
+    }
+
+    /**
+     * Get the number of keys in the trie.
+     *
+     * @return The number of distinct keys.
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Count the decimal digits of a number.
+     *
+     * @param number The number, must not be negative.
+     * @return The number of digits.
+     */
+    private static int digits(int number) {
+        int digits = 1;
+        while (digits < MAX_DIGITS && number >= POWERS_OF_TEN[digits]) {
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * Find the node of a prefix.
+     *
+     * @param prefix The upper-cased prefix.
+     * @return The node, or -1 if no key starts with the prefix.
+     */
+    private int find(String prefix) {
+        int node = 0;
+        for (int i = 0; i < prefix.length() && node >= 0; i++) {
+            node = child(node, prefix.charAt(i));
+        }
+        return node;
+    }
+
+    /**
+     * Find the child of a node with a label.
+     *
+     * @param node  The node.
+     * @param label The character.
+     * @return The child, or -1 if there is none.
+     */
+    private int child(int node, char label) {
+        int child = firstChild[node];
+        while (child >= 0 && labels[child] != label) {
+            child = nextSibling[child];
+        }
+        return child;
+    }
+
+    /**
+     * Add the sorted keys to the trie. The path of the previous key is kept on a stack, so a key only walks
+     * back to the prefix it shares with the previous key and adds its remaining characters as new nodes.
+     * Nodes are created in depth first order, every node after its parent.
+     */
+    private void build() {
+        int[] path = new int[16];
+        String previous = "";
+        for (int key = 0; key < keys.length; key++) {
+            String current = keys[key];
+            int shared = 0;
+            int max = Math.min(previous.length(), current.length());
+            while (shared < max && previous.charAt(shared) == current.charAt(shared)) {
+                shared++;
+            }
+            if (current.length() + 1 > path.length) {
+                path = Arrays.copyOf(path, current.length() * 2 + 1);
+            }
+            // path[depth] is the node of the first depth characters of the previous key
+            for (int depth = shared; depth < current.length(); depth++) {
+                path[depth + 1] = addChild(path[depth], current.charAt(depth));
+            }
+            terminalKey[path[current.length()]] = key;
+            previous = current;
+        }
+    }
+
+    /**
+     * Add a child to a node. Keys arrive sorted, so children are kept in reverse order of their labels.
+     *
+     * @param parent The parent node.
+     * @param label  The character of the child.
+     * @return The new node.
+     */
+    private int addChild(int parent, char label) {
+        if (nodeCount == labels.length) {
+            grow(nodeCount * 2);
+        }
+        int node = nodeCount++;
+        labels[node] = label;
+        firstChild[node] = -1;
+        terminalKey[node] = -1;
+        nextSibling[node] = firstChild[parent];
+        firstChild[parent] = node;
+        return node;
+    }
+
+    /**
+     * Rank the completions of every node from the lists of its children, from the last node to the root.
+     * Children are created after their parents, so their lists are ready when the parent is ranked.
+     */
+    private void rankCompletions() {
+        completionStart = new int[nodeCount];
+        completionCount = new int[nodeCount];
+        completionPool = new int[Math.max(16, nodeCount)];
+        int poolSize = 0;
+        int[] candidates = new int[maxCompletions * 4];
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            int onlyChild = firstChild[node];
+            if (terminalKey[node] < 0 && onlyChild >= 0 && nextSibling[onlyChild] < 0) {
+                completionStart[node] = completionStart[onlyChild];
+                completionCount[node] = completionCount[onlyChild];
+                continue;
+            }
+            int count = 0;
+            if (terminalKey[node] >= 0) {
+                candidates[count++] = terminalKey[node];
+            }
+            for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+                if (count + completionCount[child] > candidates.length) {
+                    candidates = Arrays.copyOf(candidates, (count + completionCount[child]) * 2);
+                }
+                System.arraycopy(completionPool, completionStart[child], candidates, count, completionCount[child]);
+                count += completionCount[child];
+            }
+            count = best(candidates, count);
+            if (poolSize + count > completionPool.length) {
+                completionPool = Arrays.copyOf(completionPool, Math.max(poolSize + count, completionPool.length * 2));
+            }
+            System.arraycopy(candidates, 0, completionPool, poolSize, count);
+            completionStart[node] = poolSize;
+            completionCount[node] = count;
+            poolSize += count;
+        }
+        completionPool = Arrays.copyOf(completionPool, poolSize);
+    }
+
+    /**
+     * Order candidate keys heaviest first, ties by key, and keep the best of them.
+     * Keys are numbered in sorted order, so a tie is broken by the smaller key number.
+     *
+     * @param candidates The candidate keys, the best are moved to the front.
+     * @param count      The number of candidates.
+     * @return The number of candidates kept.
+     */
+    private int best(int[] candidates, int count) {
+        if (ranked.length < count) {
+            ranked = new long[count * 2];
+        }
+        for (int i = 0; i < count; i++) {
+            int key = candidates[i];
+            ranked[i] = ((long) (Integer.MAX_VALUE - weights[key]) << 32) | key;
+        }
+        Arrays.sort(ranked, 0, count);
+        int kept = Math.min(count, maxCompletions);
+        for (int i = 0; i < kept; i++) {
+            candidates[i] = (int) ranked[i];
+        }
+        return kept;
+    }
+
+    /**
+     * Create the node arrays.
+     *
+     * @param capacity The number of nodes.
+     */
+    private void allocate(int capacity) {
+        labels = new char[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        terminalKey = new int[capacity];
+    }
+
+    /**
+     * Grow the node arrays.
+     *
+     * @param capacity The new number of nodes.
+     */
+    private void grow(int capacity) {
+        labels = Arrays.copyOf(labels, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        terminalKey = Arrays.copyOf(terminalKey, capacity);
+    }
+}
@@ -0,0 +1,303 @@
+package main.index;
+
+import main.utility.StringDictionary;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * FuzzyNameIndex finds the names of a StringDictionary, like the neighbourhoods or street names,
+ * that a misspelled search was meant to match. Names are split into words and the distinct words are kept in a
+ * BK-tree ordered by Levenshtein distance, so only the words within the edit distance of a search word are
+ * compared instead of every word. A search matches a name when every word of the search is within the edit
+ * distance of some word of the name, numbers have to match exactly.
+ * <p>
+ * The index is built over the names the dictionary holds at the time and is not changed afterwards.
+ * <p>
+ * Author: Fahad Ali
+ */
+public class FuzzyNameIndex {
+    private final StringDictionary dictionary;
+    private final int nameCount;
+    private final String[] words;
+    private final Map<String, Integer> wordIds = new HashMap<>();
+    private final int[] nameCounts; // number of names holding each word, used to break ties
+    private final int[][] wordsByName;
+    // BK-tree over the words, node i is word i and node 0 is the root
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final int[] edge;
+
+    /**
+     * Constructor for a FuzzyNameIndex over the current names of a dictionary.
+     *
+     * @param dictionary The StringDictionary holding the names.
+     */
+    public FuzzyNameIndex(StringDictionary dictionary) {
+        this.dictionary = dictionary;
+        this.nameCount = dictionary.size();
+        List<String> wordList = new ArrayList<>();
+        int[] counts = new int[16];
+        wordsByName = new int[nameCount][];
+        for (int code = 0; code < nameCount; code++) {
+            String[] nameWords = split(dictionary.decode(code));
+            int[] ids = new int[nameWords.length];
+            int distinct = 0;
+            for (String word : nameWords) {
+                Integer id = wordIds.get(word);
+                if (id == null) {
+                    id = wordList.size();
+                    wordIds.put(word, id);
+                    wordList.add(word);
+                    if (id == counts.length) {
+                        counts = Arrays.copyOf(counts, id * 2);
+                    }
+                }
+                if (!contains(ids, distinct, id)) {
+                    ids[distinct++] = id;
+                    counts[id]++;
+                }
+            }
+            wordsByName[code] = Arrays.copyOf(ids, distinct);
+        }
+        words = wordList.toArray(new String[0]);
+        nameCounts = Arrays.copyOf(counts, words.length);
+
+        firstChild = new int[words.length];
+        nextSibling = new int[words.length];
+        edge = new int[words.length];
+        Arrays.fill(firstChild, -1);
+        Arrays.fill(nextSibling, -1);
+        for (int word = 1; word < words.length; word++) {
+            insert(word);
+        }
+    }
+
+    /**
+     * Check if the index was built over every name the dictionary holds now.
+     *
+     * @param dictionary The StringDictionary to check.
+     * @return True if the index is up to date for the dictionary.
+     */
+    public boolean covers(StringDictionary dictionary) {
+        return dictionary == this.dictionary && nameCount == dictionary.size();
+    }
+
+    /**
+     * Find the names a search was meant to match, closest first.
+     *
+     * @param query       The search, case is ignored.
+     * @param maxDistance The largest edit distance allowed for each word of the search.
+     * @return The matching names ordered by their total edit distance to the search, then by name.
+     */
+    public List<String> candidates(String query, int maxDistance) {
+        String[] queryWords = split(query);
+        List<String> candidates = new ArrayList<>();
+        if (queryWords.length == 0) {
+            return candidates;
+        }
+        // distance from every search word to each word close enough to it, -1 when too far
+        int[][] distances = new int[queryWords.length][];
+        for (int i = 0; i < queryWords.length; i++) {
+            distances[i] = new int[words.length];
+            Arrays.fill(distances[i], -1);
+            for (int[] match : search(queryWords[i], maxDistance)) {
+                distances[i][match[0]] = match[1];
+            }
+        }
+
+        List<long[]> ranked = new ArrayList<>();
+        for (int code = 0; code < nameCount; code++) {
+            int total = 0;
+            for (int i = 0; i < queryWords.length && total >= 0; i++) {
+                int best = -1;
+                for (int word : wordsByName[code]) {
+                    int distance = distances[i][word];
+                    if (distance >= 0 && (best < 0 || distance < best)) {
+                        best = distance;
+                    }
+                }
+                total = best < 0 ? -1 : total + best;
+            }
+            if (total >= 0) {
+                ranked.add(new long[]{total, code});
+            }
+        }
+        ranked.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0])
+                : dictionary.decode((int) a[1]).compareTo(dictionary.decode((int) b[1])));
+        for (long[] candidate : ranked) {
+            candidates.add(dictionary.decode((int) candidate[1]));
+        }
+        return candidates;
+    }
+
+    /**
+     * Rewrite a search with every word that no name holds replaced by the closest word that one does.
+     * Ties go to the word held by more names, then to the first word alphabetically.
+     *
+     * @param query       The search, case is ignored.
+     * @param maxDistance The largest edit distance allowed for each word.
+     * @return The corrected search in upper case, or null if it needs no correction or a word has no close word.
+     */
+    public String correct(String query, int maxDistance) {
+        String[] queryWords = split(query);
+        boolean corrected = false;
+        for (int i = 0; i < queryWords.length; i++) {
+            if (wordIds.containsKey(queryWords[i]) || isNumber(queryWords[i])) {
+                continue;
+            }
+            int best = -1;
+            int bestDistance = Integer.MAX_VALUE;
+            for (int[] match : search(queryWords[i], maxDistance)) {
+                int word = match[0];
+                if (match[1] < bestDistance || (match[1] == bestDistance && (nameCounts[word] > nameCounts[best]
+                        || (nameCounts[word] == nameCounts[best] && words[word].compareTo(words[best]) < 0)))) {
+                    best = word;
+                    bestDistance = match[1];
+                }
+            }
+            if (best < 0) {
+                return null;
+            }
+            queryWords[i] = words[best];
+            corrected = true;
+        }
+        return corrected ? String.join(" ", queryWords) : null;
+    }
+
+    /**
+     * Find the words within an edit distance of a word by walking the BK-tree. A child is only visited when the
+     * distance on its edge is within maxDistance of the distance to its parent, by the triangle inequality
+     * no other child can hold a close word.
+     *
+     * @param word        The upper-cased word.
+     * @param maxDistance The largest edit distance.
+     * @return The close words as {word id, distance} pairs.
+     */
+    private List<int[]> search(String word, int maxDistance) {
+        List<int[]> matches = new ArrayList<>();
+        if (words.length == 0) {
+            return matches;
+        }
+        if (isNumber(word)) {
+            // house and street numbers that are off by a digit are different places, only match them exactly
+            Integer id = wordIds.get(word);
+            if (id != null) {
+                matches.add(new int[]{id, 0});
+            }
+            return matches;
+        }
+        ArrayDeque<Integer> pending = new ArrayDeque<>();
+        pending.push(0);
+        while (!pending.isEmpty()) {
+            int node = pending.pop();
+            int distance = distance(words[node], word);
+            if (distance <= maxDistance) {
+                matches.add(new int[]{node, distance});
+            }
+            for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+                if (Math.abs(edge[child] - distance) <= maxDistance) {
+                    pending.push(child);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Add a word to the BK-tree under the child of the root path with its distance.
+     *
+     * @param word The word id.
+     */
+    private void insert(int word) {
+        int node = 0;
+        while (true) {
+            int distance = distance(words[node], words[word]);
+            int child = firstChild[node];
+            while (child >= 0 && edge[child] != distance) {
+                child = nextSibling[child];
+            }
+            if (child < 0) {
+                edge[word] = distance;
+                nextSibling[word] = firstChild[node];
+                firstChild[node] = word;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Get the Levenshtein distance between two words with two rows of the dynamic programming table.
+     *
+     * @param a The first word.
+     * @param b The second word.
+     * @return The edit distance.
+     */
+    static int distance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            char c = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    /**
+     * Split a name or search into upper-cased words.
+     *
+     * @param text The text.
+     * @return The words.
+     */
+    private static String[] split(String text) {
+        String trimmed = text == null ? "" : text.trim().toUpperCase();
+        return trimmed.isEmpty() ? new String[0] : trimmed.split("\\s+");
+    }
+
+    /**
+     * Check if a word only holds digits.
+     *
+     * @param word The word.
+     * @return True if the word is a number.
+     */
+    private static boolean isNumber(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (!Character.isDigit(word.charAt(i))) {
+                return false;
+            }
+        }
+        return !word.isEmpty();
+    }
+
+    /**
+     * Check if the first entries of an array hold a value.
+     *
+     * @param values The array.
+     * @param count  The number of entries to check.
+     * @param value  The value.
+     * @return True if the value is found.
+     */
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,560 @@
+package main.index;
+
+import main.utility.Location;
+import main.utility.PropertyStore;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * GeoGridIndex places the rows of a PropertyStore in a uniform grid over their latitude and longitude, with cells
+ * about the same number of meters on each side. The rows of a cell are stored together, so a spatial query only
+ * reads the cells its area overlaps and then measures the exact haversine distance of the rows in them.
+ * A nearest neighbour search reads rings of cells around the point until no closer row can be outside them.
+ * Rows without coordinates are not in the grid, and the grid does not wrap around the antimeridian.
+ * <p>
+ * Author: Fahad Ali
+ */
+public class GeoGridIndex implements RowIndex {
+    public static final double DEFAULT_CELL_METERS = 250;
+    private static final double METERS_PER_DEGREE = Math.toRadians(Location.EARTH_RADIUS_METERS);
+    private static final int MAX_CELLS = 1 << 22;
+
+    private final PropertyStore store;
+    private final int rowCount;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double minLat;
+    private final double minLon;
+    private final double cellLat;
+    private final double cellLon;
+    private final int latCells;
+    private final int lonCells;
+    private final int[] cellStart;
+    private final int[] cellRows;
+
+    /**
+     * Constructor for a GeoGridIndex over the current rows of a store with cells of the default size.
+     *
+     * @param store The PropertyStore to index.
+     */
+    public GeoGridIndex(PropertyStore store) {
+        this(store, DEFAULT_CELL_METERS);
+    }
+
+    /**
+     * Constructor for a GeoGridIndex over the current rows of a store.
+     *
+     * @param store      The PropertyStore to index.
+     * @param cellMeters The length of a side of a cell in meters, cells grow when the area would need too many.
+     * @throws IllegalArgumentException If the cell size is not positive.
+     */
+    public GeoGridIndex(PropertyStore store, double cellMeters) {
+        if (!(cellMeters > 0)) {
+            throw new IllegalArgumentException("Cell size must be positive: " + cellMeters);
+        }
+        this.store = store;
+        this.rowCount = store.size();
+        this.latitudes = store.doubleColumn(PropertyStore.LATITUDE);
+        this.longitudes = store.doubleColumn(PropertyStore.LONGITUDE);
+
+        double lowLat = Double.POSITIVE_INFINITY;
+        double highLat = Double.NEGATIVE_INFINITY;
+        double lowLon = Double.POSITIVE_INFINITY;
+        double highLon = Double.NEGATIVE_INFINITY;
+        int located = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (isLocated(row)) {
+                lowLat = Math.min(lowLat, latitudes[row]);
+                highLat = Math.max(highLat, latitudes[row]);
+                lowLon = Math.min(lowLon, longitudes[row]);
+                highLon = Math.max(highLon, longitudes[row]);
+                located++;
+            }
+        }
+        if (located == 0) {
+            lowLat = 0;
+            highLat = 0;
+            lowLon = 0;
+            highLon = 0;
+        }
+
+        // a degree of longitude shrinks away from the equator, so cells are wider in degrees than they are tall
+        double latDegrees = cellMeters / METERS_PER_DEGREE;
+        double lonDegrees = latDegrees / Math.max(0.01, Math.cos(Math.toRadians((lowLat + highLat) / 2)));
+        while (((highLat - lowLat) / latDegrees + 1) * ((highLon - lowLon) / lonDegrees + 1) > MAX_CELLS) {
+            latDegrees *= 2;
+            lonDegrees *= 2;
+        }
+        this.minLat = lowLat;
+        this.minLon = lowLon;
+        this.cellLat = latDegrees;
+        this.cellLon = lonDegrees;
+        this.latCells = located == 0 ? 0 : (int) ((highLat - lowLat) / latDegrees) + 1;
+        this.lonCells = located == 0 ? 0 : (int) ((highLon - lowLon) / lonDegrees) + 1;
+
+        // counting sort of the located rows by cell, rows of a cell stay in row order
+        cellStart = new int[latCells * lonCells + 1];
+        for (int row = 0; row < rowCount; row++) {
+            if (isLocated(row)) {
+                cellStart[cell(row) + 1]++;
+            }
+        }
+        for (int cell = 0; cell < latCells * lonCells; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        cellRows = new int[located];
+        int[] next = Arrays.copyOf(cellStart, cellStart.length - 1);
+        for (int row = 0; row < rowCount; row++) {
+            if (isLocated(row)) {
+                cellRows[next[cell(row)]++] = row;
+            }
+        }
+    }
+
+    /**
+     * Check if the index was built over every row of a store.
+     *
+     * @param store The PropertyStore to check.
+     * @return True if the index is up to date for the store.
+     */
+    @Override
+    public boolean covers(PropertyStore store) {
+        return this.store == store && rowCount == store.size();
+    }
+
+    /**
+     * Estimate the number of rows within a distance of a point, counting the rows of the cells the circle overlaps.
+     *
+     * @param lat    The latitude of the point in degrees.
+     * @param lon    The longitude of the point in degrees.
+     * @param radius The distance in meters.
+     * @return An upper bound of the number of rows.
+     */
+    public int estimateWithin(double lat, double lon, double radius) {
+        return count(circleCells(lat, lon, radius));
+    }
+
+    /**
+     * Get the rows within a distance of a point.
+     *
+     * @param lat    The latitude of the point in degrees.
+     * @param lon    The longitude of the point in degrees.
+     * @param radius The distance in meters, inclusive.
+     * @return The rows in ascending order in a new array.
+     */
+    public int[] rowsWithin(double lat, double lon, double radius) {
+        int[] cells = circleCells(lat, lon, radius);
+        return collect(cells, row -> Location.distance(lat, lon, latitudes[row], longitudes[row]) <= radius);
+    }
+
+    /**
+     * Estimate the number of rows inside a rectangle, counting the rows of the cells it overlaps.
+     *
+     * @param south The lowest latitude in degrees.
+     * @param west  The lowest longitude in degrees.
+     * @param north The highest latitude in degrees.
+     * @param east  The highest longitude in degrees.
+     * @return An upper bound of the number of rows.
+     */
+    public int estimateInBox(double south, double west, double north, double east) {
+        return count(boxCells(south, west, north, east));
+    }
+
+    /**
+     * Get the rows inside a rectangle of latitudes and longitudes.
+     *
+     * @param south The lowest latitude in degrees, inclusive.
+     * @param west  The lowest longitude in degrees, inclusive.
+     * @param north The highest latitude in degrees, inclusive.
+     * @param east  The highest longitude in degrees, inclusive.
+     * @return The rows in ascending order in a new array, empty if a bound is above its opposite.
+     */
+    public int[] rowsInBox(double south, double west, double north, double east) {
+        return collect(boxCells(south, west, north, east), row -> latitudes[row] >= south && latitudes[row] <= north
+                && longitudes[row] >= west && longitudes[row] <= east);
+    }
+
+    /**
+     * Find the rows nearest to a point that pass a test. Rings of cells are read outwards from the cell of the
+     * point until the nearest row outside them would be farther than the k-th row found or the largest distance.
+     *
+     * @param lat         The latitude of the point in degrees.
+     * @param lon         The longitude of the point in degrees.
+     * @param k           The largest number of rows to find.
+     * @param maxDistance The largest distance in meters, inclusive.
+     * @param accept      The test a row must pass, or null to accept every row.
+     * @return The rows, nearest first, rows at the same distance in row order.
+     */
+    public int[] nearest(double lat, double lon, int k, double maxDistance, IntPredicate accept) {
+        NearestRows nearest = new NearestRows(k);
+        if (k <= 0 || latCells == 0 || Double.isNaN(lat) || Double.isNaN(lon)) {
+            return nearest.toRows();
+        }
+        int centerLat = latCell(lat);
+        int centerLon = lonCell(lon);
+        double highestLat = Math.max(Math.abs(lat), Math.max(Math.abs(minLat), Math.abs(minLat + latCells * cellLat)));
+        double cosHighestLat = Math.cos(Math.toRadians(Math.min(90, highestLat)));
+
+        for (int ring = 0; ; ring++) {
+            int latFrom = centerLat - ring;
+            int latTo = centerLat + ring;
+            int lonFrom = centerLon - ring;
+            int lonTo = centerLon + ring;
+            for (int i = Math.max(0, latFrom); i <= Math.min(latCells - 1, latTo); i++) {
+                // inner rows of the ring only have its first and last cell
+                int step = i == latFrom || i == latTo || lonFrom == lonTo ? 1 : lonTo - lonFrom;
+                for (int j = lonFrom; j <= lonTo; j += step) {
+                    if (j >= 0 && j < lonCells) {
+                        int cell = i * lonCells + j;
+                        for (int p = cellStart[cell]; p < cellStart[cell + 1]; p++) {
+                            int row = cellRows[p];
+                            if (accept == null || accept.test(row)) {
+                                double distance = Location.distance(lat, lon, latitudes[row], longitudes[row]);
+                                if (distance <= maxDistance) {
+                                    nearest.offer(row, distance);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            if (latFrom <= 0 && latTo >= latCells - 1 && lonFrom <= 0 && lonTo >= lonCells - 1) {
+                break;
+            }
+            double limit = nearest.isFull() ? Math.min(maxDistance, nearest.farthest()) : maxDistance;
+            if (distanceOutside(lat, lon, latFrom, latTo, lonFrom, lonTo, cosHighestLat) > limit) {
+                break;
+            }
+        }
+        return nearest.toRows();
+    }
+
+    /**
+     * Find the rows nearest to a point that pass a test by measuring every row of a list, for rows no grid covers.
+     *
+     * @param store       The PropertyStore holding the rows.
+     * @param rows        The rows to search.
+     * @param lat         The latitude of the point in degrees.
+     * @param lon         The longitude of the point in degrees.
+     * @param k           The largest number of rows to find.
+     * @param maxDistance The largest distance in meters, inclusive.
+     * @param accept      The test a row must pass, or null to accept every row.
+     * @return The rows, nearest first, rows at the same distance in row order.
+     */
+    public static int[] nearest(PropertyStore store, int[] rows, double lat, double lon, int k, double maxDistance,
+                                IntPredicate accept) {
+        NearestRows nearest = new NearestRows(k);
+        for (int row : rows) {
+            if (k > 0 && (accept == null || accept.test(row))) {
+                double distance = Location.distance(lat, lon, store.getDouble(PropertyStore.LATITUDE, row),
+                        store.getDouble(PropertyStore.LONGITUDE, row));
+                if (distance <= maxDistance) {
+                    nearest.offer(row, distance);
+                }
+            }
+        }
+        return nearest.toRows();
+    }
+
+    /**
+     * Get the smallest distance from a point to any row outside a rectangle of cells around it.
+     * Rows beyond the edge of the grid don't exist, so those sides don't bound anything.
+     *
+     * @param lat           The latitude of the point in degrees.
+     * @param lon           The longitude of the point in degrees.
+     * @param latFrom       The first cell row of the rectangle.
+     * @param latTo         The last cell row of the rectangle.
+     * @param lonFrom       The first cell column of the rectangle.
+     * @param lonTo         The last cell column of the rectangle.
+     * @param cosHighestLat The cosine of the highest absolute latitude of the point and the grid.
+     * @return A lower bound of the distance in meters.
+     */
+    private double distanceOutside(double lat, double lon, int latFrom, int latTo, int lonFrom, int lonTo,
+                                   double cosHighestLat) {
+        double bound = Double.POSITIVE_INFINITY;
+        if (latFrom > 0) {
+            bound = Math.min(bound, latitudeDistance(lat - (minLat + latFrom * cellLat)));
+        }
+        if (latTo < latCells - 1) {
+            bound = Math.min(bound, latitudeDistance(minLat + (latTo + 1) * cellLat - lat));
+        }
+        if (lonFrom > 0) {
+            bound = Math.min(bound, longitudeDistance(lon - (minLon + lonFrom * cellLon), cosHighestLat));
+        }
+        if (lonTo < lonCells - 1) {
+            bound = Math.min(bound, longitudeDistance(minLon + (lonTo + 1) * cellLon - lon, cosHighestLat));
+        }
+        return bound;
+    }
+
+    /**
+     * Get the smallest distance between two points whose latitudes differ by some degrees.
+     *
+     * @param degrees The difference of latitude.
+     * @return The distance in meters.
+     */
+    private static double latitudeDistance(double degrees) {
+        return Math.max(0, degrees) * METERS_PER_DEGREE;
+    }
+
+    /**
+     * Get the smallest distance between two points whose longitudes differ by some degrees, from the haversine
+     * formula with both cosines of latitude at their lowest.
+     *
+     * @param degrees       The difference of longitude.
+     * @param cosHighestLat The cosine of the highest absolute latitude of the points.
+     * @return The distance in meters.
+     */
+    private static double longitudeDistance(double degrees, double cosHighestLat) {
+        double halfAngle = Math.toRadians(Math.min(180, Math.max(0, degrees))) / 2;
+        return 2 * Location.EARTH_RADIUS_METERS * Math.asin(cosHighestLat * Math.sin(halfAngle));
+    }
+
+    /**
+     * Get the cells a circle overlaps.
+     *
+     * @param lat    The latitude of the center in degrees.
+     * @param lon    The longitude of the center in degrees.
+     * @param radius The radius in meters.
+     * @return The first and last cell row and column, or null if the circle misses the grid.
+     */
+    private int[] circleCells(double lat, double lon, double radius) {
+        if (!(radius >= 0) || Double.isNaN(lat) || Double.isNaN(lon)) {
+            return null;
+        }
+        double latSpan = radius / METERS_PER_DEGREE;
+        double south = lat - latSpan;
+        double north = lat + latSpan;
+        double lonSpan = 360;
+        if (south > -90 && north < 90) {
+            // a row at distance radius can be no further in longitude than where the haversine formula allows
+            double cosHighestLat = Math.cos(Math.toRadians(Math.max(Math.abs(south), Math.abs(north))));
+            double ratio = Math.sin(radius / (2 * Location.EARTH_RADIUS_METERS)) / cosHighestLat;
+            if (ratio < 1) {
+                lonSpan = Math.toDegrees(2 * Math.asin(ratio));
+            }
+        }
+        return boxCells(south, lon - lonSpan, north, lon + lonSpan);
+    }
+
+    /**
+     * Get the cells a rectangle overlaps.
+     *
+     * @param south The lowest latitude in degrees.
+     * @param west  The lowest longitude in degrees.
+     * @param north The highest latitude in degrees.
+     * @param east  The highest longitude in degrees.
+     * @return The first and last cell row and column, or null if the rectangle misses the grid.
+     */
+    private int[] boxCells(double south, double west, double north, double east) {
+        if (latCells == 0 || !(south <= north) || !(west <= east)
+                || north < minLat || south > minLat + latCells * cellLat
+                || east < minLon || west > minLon + lonCells * cellLon) {
+            return null;
+        }
+        return new int[]{latCell(south), latCell(north), lonCell(west), lonCell(east)};
+    }
+
+    /**
+     * Count the rows of a range of cells.
+     *
+     * @param cells The first and last cell row and column, or null for none.
+     * @return The number of rows.
+     */
+    private int count(int[] cells) {
+        int count = 0;
+        if (cells != null) {
+            for (int i = cells[0]; i <= cells[1]; i++) {
+                count += cellStart[i * lonCells + cells[3] + 1] - cellStart[i * lonCells + cells[2]];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Collect the rows of a range of cells that pass a test.
+     *
+     * @param cells The first and last cell row and column, or null for none.
+     * @param test  The test a row must pass.
+     * @return The rows in ascending order in a new array.
+     */
+    private int[] collect(int[] cells, IntPredicate test) {
+        if (cells == null) {
+            return new int[0];
+        }
+        int[] rows = new int[16];
+        int count = 0;
+        for (int i = cells[0]; i <= cells[1]; i++) {
+            // the cells of one grid row are next to each other, so their rows are one slice
+            for (int p = cellStart[i * lonCells + cells[2]]; p < cellStart[i * lonCells + cells[3] + 1]; p++) {
+                int row = cellRows[p];
+                if (test.test(row)) {
+                    if (count == rows.length) {
+                        rows = Arrays.copyOf(rows, count * 2);
+                    }
+                    rows[count++] = row;
+                }
+            }
+        }
+        rows = Arrays.copyOf(rows, count);
+        Arrays.sort(rows);
+        return rows;
+    }
+
+    /**
+     * Check if a row has coordinates.
+     *
+     * @param row The row.
+     * @return True if the latitude and longitude are known.
+     */
+    private boolean isLocated(int row) {
+        return !Double.isNaN(latitudes[row]) && !Double.isNaN(longitudes[row]);
+    }
+
+    /**
+     * Get the cell of a located row.
+     *
+     * @param row The row.
+     * @return The cell.
+     */
+    private int cell(int row) {
+        return latCell(latitudes[row]) * lonCells + lonCell(longitudes[row]);
+    }
+
+    /**
+     * Get the cell row of a latitude, latitudes off the grid get the nearest row.
+     *
+     * @param lat The latitude in degrees.
+     * @return The cell row.
+     */
+    private int latCell(double lat) {
+        return (int) Math.max(0, Math.min(latCells - 1, Math.floor((lat - minLat) / cellLat)));
+    }
+
+    /**
+     * Get the cell column of a longitude, longitudes off the grid get the nearest column.
+     *
+     * @param lon The longitude in degrees.
+     * @return The cell column.
+     */
+    private int lonCell(double lon) {
+        return (int) Math.max(0, Math.min(lonCells - 1, Math.floor((lon - minLon) / cellLon)));
+    }
+
+    /**
+     * The k nearest rows found so far, kept in a heap with the farthest row on top.
+     */
+    private static final class NearestRows {
+        private final int[] rows;
+        private final double[] distances;
+        private int size;
+
+        /**
+         * Constructor for an empty NearestRows.
+         *
+         * @param k The largest number of rows to keep.
+         */
+        NearestRows(int k) {
+            rows = new int[Math.max(0, k)];
+            distances = new double[rows.length];
+        }
+
+        /**
+         * Check if k rows have been kept.
+         *
+         * @return True if a row must be nearer than the farthest one to be kept.
+         */
+        boolean isFull() {
+            return size == rows.length;
+        }
+
+        /**
+         * Get the distance of the farthest row kept.
+         *
+         * @return The distance in meters.
+         */
+        double farthest() {
+            return distances[0];
+        }
+
+        /**
+         * Keep a row if it is one of the k nearest so far.
+         *
+         * @param row      The row.
+         * @param distance The distance of the row in meters.
+         */
+        void offer(int row, double distance) {
+            if (size < rows.length) {
+                int i = size++;
+                while (i > 0 && isFarther(row, distance, (i - 1) / 2)) {
+                    rows[i] = rows[(i - 1) / 2];
+                    distances[i] = distances[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                rows[i] = row;
+                distances[i] = distance;
+            } else if (size > 0 && !isFarther(row, distance, 0)) {
+                int i = 0;
+                while (2 * i + 1 < size) {
+                    int child = 2 * i + 1;
+                    if (child + 1 < size && isFarther(rows[child + 1], distances[child + 1], child)) {
+                        child++;
+                    }
+                    if (!isFarther(rows[child], distances[child], row, distance)) {
+                        break;
+                    }
+                    rows[i] = rows[child];
+                    distances[i] = distances[child];
+                    i = child;
+                }
+                rows[i] = row;
+                distances[i] = distance;
+            }
+        }
+
+        /**
+         * Compare a row with the row at a position of the heap.
+         *
+         * @param row      The row.
+         * @param distance The distance of the row.
+         * @param position The position in the heap.
+         * @return True if the row is farther, or as far and later in the store.
+         */
+        private boolean isFarther(int row, double distance, int position) {
+            return isFarther(row, distance, rows[position], distances[position]);
+        }
+
+        /**
+         * Compare two rows by distance, then by row.
+         *
+         * @param row           The row.
+         * @param distance      The distance of the row.
+         * @param otherRow      The other row.
+         * @param otherDistance The distance of the other row.
+         * @return True if the row is farther, or as far and later in the store.
+         */
+        private static boolean isFarther(int row, double distance, int otherRow, double otherDistance) {
+            return distance > otherDistance || distance == otherDistance && row > otherRow;
+        }
+
+        /**
+         * Get the kept rows.
+         *
+         * @return The rows, nearest first.
+         */
+        int[] toRows() {
+            Integer[] positions = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                positions[i] = i;
+            }
+            Arrays.sort(positions, (a, b) -> isFarther(rows[a], distances[a], rows[b], distances[b]) ? 1
+                    : isFarther(rows[b], distances[b], rows[a], distances[a]) ? -1 : 0);
+            int[] nearest = new int[size];
+            for (int i = 0; i < size; i++) {
+                nearest[i] = rows[positions[i]];
+            }
+            return nearest;
+        }
+    }
+}
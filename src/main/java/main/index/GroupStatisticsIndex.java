@@ -0,0 +1,230 @@
+package main.index;
+
+import main.utility.AssessmentStatistics;
+import main.utility.PropertyStore;
+import main.utility.StringDictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * GroupStatisticsIndex keeps the assessed value statistics of every group of a text column of a PropertyStore,
+ * like every neighbourhood or ward. Groups are the dictionary codes of the column, each keeps its count, total,
+ * minimum and maximum along with a primitive array of its assessed values.
+ * <p>
+ * Rows appended to the store are added with update(), which only reads the new rows. The exact median of a group
+ * is found by quickselect over a copy of its values when it is asked for, and kept until the group changes.
+ * <p>
+ * Author: Fahad Ali
+ */
+public class GroupStatisticsIndex implements RowIndex {
+    private final PropertyStore store;
+    private final int column;
+    private int rowCount;
+    private int[] counts = new int[0];
+    private long[] totals = new long[0];
+    private int[] mins = new int[0];
+    private int[] maxes = new int[0];
+    private int[][] values = new int[0][];
+    private double[] medians = new double[0]; // NaN until computed for the current values
+
+    /**
+     * Constructor for a GroupStatisticsIndex over the current rows of a store.
+     *
+     * @param store  The PropertyStore to index.
+     * @param column The text column constant the rows are grouped by.
+     */
+    public GroupStatisticsIndex(PropertyStore store, int column) {
+        this.store = store;
+        this.column = column;
+        update();
+    }
+
+    /**
+     * Check if the index was built over every row of a store.
+     *
+     * @param store The PropertyStore to check.
+     * @return True if the index is up to date for the store.
+     */
+    @Override
+    public synchronized boolean covers(PropertyStore store) {
+        return store == this.store && rowCount == store.size();
+    }
+
+    /**
+     * Check if the index was built over a store, even if rows were appended to it since.
+     *
+     * @param store The PropertyStore to check.
+     * @return True if update() can bring the index up to date for the store.
+     */
+    public boolean indexes(PropertyStore store) {
+        return store == this.store;
+    }
+
+    /**
+     * Add the rows appended to the store since the index was built or last updated.
+     */
+    public synchronized void update() {
+        int size = store.size();
+        if (rowCount == size) {
+            return;
+        }
+        grow(store.getDictionary(column).size());
+        int[] codes = store.codeColumn(column);
+        int[] assessedValues = store.intColumn(PropertyStore.ASSESSED_VALUE);
+        for (int row = rowCount; row < size; row++) {
+            add(codes[row], assessedValues[row]);
+        }
+        rowCount = size;
+    }
+
+    /**
+     * Get the statistics of every group, ordered by group name.
+     *
+     * @return The statistics of the groups holding at least one row.
+     */
+    public synchronized List<AssessmentStatistics> statistics() {
+        StringDictionary dictionary = store.getDictionary(column);
+        List<AssessmentStatistics> statistics = new ArrayList<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                statistics.add(statistics(code, dictionary.decode(code)));
+            }
+        }
+        statistics.sort(Comparator.comparing(AssessmentStatistics::getGroup));
+        return statistics;
+    }
+
+    /**
+     * Get the statistics of one group.
+     *
+     * @param group The name of the group, matched exactly.
+     * @return The statistics, or null if no row is in the group.
+     */
+    public synchronized AssessmentStatistics statistics(String group) {
+        int code = store.getDictionary(column).find(group);
+        if (code < 0 || code >= counts.length || counts[code] == 0) {
+            return null;
+        }
+        return statistics(code, group);
+    }
+
+    /**
+     * Get the statistics of a group that holds rows.
+     *
+     * @param code  The dictionary code of the group.
+     * @param group The name of the group.
+     * @return The statistics.
+     */
+    private AssessmentStatistics statistics(int code, String group) {
+        if (Double.isNaN(medians[code])) {
+            medians[code] = median(Arrays.copyOf(values[code], counts[code]));
+        }
+        return new AssessmentStatistics(group, counts[code], totals[code], mins[code], maxes[code], medians[code]);
+    }
+
+    /**
+     * Add the assessed value of a row to its group.
+     *
+     * @param code  The dictionary code of the group.
+     * @param value The assessed value.
+     */
+    private void add(int code, int value) {
+        int count = counts[code];
+        if (count == values[code].length) {
+            values[code] = Arrays.copyOf(values[code], Math.max(8, count + (count >> 1)));
+        }
+        values[code][count] = value;
+        counts[code] = count + 1;
+        totals[code] += value;
+        mins[code] = count == 0 ? value : Math.min(mins[code], value);
+        maxes[code] = count == 0 ? value : Math.max(maxes[code], value);
+        medians[code] = Double.NaN;
+    }
+
+    /**
+     * Make room for every code of the dictionary.
+     *
+     * @param codeCount The number of codes.
+     */
+    private void grow(int codeCount) {
+        int previous = counts.length;
+        if (codeCount <= previous) {
+            return;
+        }
+        counts = Arrays.copyOf(counts, codeCount);
+        totals = Arrays.copyOf(totals, codeCount);
+        mins = Arrays.copyOf(mins, codeCount);
+        maxes = Arrays.copyOf(maxes, codeCount);
+        values = Arrays.copyOf(values, codeCount);
+        medians = Arrays.copyOf(medians, codeCount);
+        for (int code = previous; code < codeCount; code++) {
+            values[code] = new int[0];
+            medians[code] = Double.NaN;
+        }
+    }
+
+    /**
+     * Find the median of values by quickselect, the mean of the two middle values when the count is even.
+     *
+     * @param values The values, they are reordered.
+     * @return The median.
+     */
+    static double median(int[] values) {
+        int middle = values.length / 2;
+        int upper = select(values, middle);
+        if (values.length % 2 == 1) {
+            return upper;
+        }
+        // after selecting, every value left of the middle is at most the upper middle value
+        int lower = values[0];
+        for (int i = 1; i < middle; i++) {
+            lower = Math.max(lower, values[i]);
+        }
+        return ((long) lower + upper) / 2.0;
+    }
+
+    /**
+     * Find the value that would be at a position if the values were sorted, in expected linear time.
+     * The values are partitioned around it, smaller positions hold values that are not larger.
+     *
+     * @param values The values, they are reordered.
+     * @param k      The position.
+     * @return The value at the position in sorted order.
+     */
+    private static int select(int[] values, int k) {
+        int low = 0;
+        int high = values.length - 1;
+        while (low < high) {
+            // median of three pivot keeps sorted and reverse sorted groups linear
+            int middle = (low + high) >>> 1;
+            int pivot = Math.max(Math.min(values[low], values[middle]),
+                    Math.min(Math.max(values[low], values[middle]), values[high]));
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = values[i];
+                    values[i++] = values[j];
+                    values[j--] = swap;
+                }
+            }
+            if (k <= j) {
+                high = j;
+            } else if (k >= i) {
+                low = i;
+            } else {
+                return values[k];
+            }
+        }
+        return values[k];
+    }
+}
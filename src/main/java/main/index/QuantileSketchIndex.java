@@ -0,0 +1,192 @@
+package main.index;
+
+import main.utility.IntIntHashMap;
+import main.utility.KllSketch;
+import main.utility.PropertyStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * QuantileSketchIndex keeps a KllSketch of the assessed values of every neighbourhood and assessment class
+ * of a PropertyStore, split by ward so a ward can be selected exactly. Each neighbourhood and ward pair holds one
+ * sketch for every assessment class found in its rows plus one sketch of all of its rows, a row is added once to
+ * each distinct class it has in any of its three assessment class columns.
+ * <p>
+ * A query merges the sketches of the cells it selects, which costs a pass over the cells instead of the rows.
+ * Rows appended to the store are added with update(), which only reads the new rows.
+ * <p>
+ * Author: Fahad Ali
+ */
+public class QuantileSketchIndex implements RowIndex {
+    private static final int ALL_CLASSES = 0; // sketch slot of every row, class codes use slot code + 1
+    private static final int[] CLASS_COLUMNS = {
+            PropertyStore.ASSESSMENT_CLASS1, PropertyStore.ASSESSMENT_CLASS2, PropertyStore.ASSESSMENT_CLASS3
+    };
+
+    private final PropertyStore store;
+    private int rowCount;
+    private final IntIntHashMap cellByPair = new IntIntHashMap(); // neighbourhood << 16 | ward to cell
+    private final List<KllSketch[]> cells = new ArrayList<>(); // sketch of every class slot of a cell
+    private int[] cellNeighborhoods = new int[16];
+    private int[] cellWards = new int[16];
+
+    /**
+     * Constructor for a QuantileSketchIndex over the current rows of a store.
+     *
+     * @param store The PropertyStore to index.
+     */
+    public QuantileSketchIndex(PropertyStore store) {
+        this.store = store;
+        update();
+    }
+
+    /**
+     * Check if the index was built over every row of a store.
+     *
+     * @param store The PropertyStore to check.
+     * @return True if the index is up to date for the store.
+     */
+    @Override
+    public synchronized boolean covers(PropertyStore store) {
+        return store == this.store && rowCount == store.size();
+    }
+
+    /**
+     * Check if the index was built over a store, even if rows were appended to it since.
+     *
+     * @param store The PropertyStore to check.
+     * @return True if update() can bring the index up to date for the store.
+     */
+    public boolean indexes(PropertyStore store) {
+        return store == this.store;
+    }
+
+    /**
+     * Add the rows appended to the store since the index was built or last updated.
+     */
+    public synchronized void update() {
+        int size = store.size();
+        int[] neighborhoods = store.codeColumn(PropertyStore.NEIGHBORHOOD);
+        int[] wards = store.codeColumn(PropertyStore.WARD);
+        int[] values = store.intColumn(PropertyStore.ASSESSED_VALUE);
+        int[][] classes = new int[CLASS_COLUMNS.length][];
+        for (int i = 0; i < CLASS_COLUMNS.length; i++) {
+            classes[i] = store.codeColumn(CLASS_COLUMNS[i]);
+        }
+
+        for (int row = rowCount; row < size; row++) {
+            KllSketch[] cell = cell(neighborhoods[row], wards[row]);
+            int value = values[row];
+            cell[ALL_CLASSES].update(value);
+            for (int i = 0; i < classes.length; i++) {
+                int code = classes[i][row];
+                if (isFirstOccurrence(classes, i, row, code)) {
+                    cell = sketch(cell, neighborhoods[row], wards[row], code + 1);
+                    cell[code + 1].update(value);
+                }
+            }
+        }
+        rowCount = size;
+    }
+
+    /**
+     * Merge the sketches of the selected neighbourhoods, wards and assessment classes into a new sketch.
+     * A row whose assessment classes hold two different selected codes is counted once for each of them.
+     *
+     * @param neighborhoodCodes the codes of the selected neighbourhoods, or null for every neighbourhood
+     * @param wardCodes         the codes of the selected wards, or null for every ward
+     * @param classCodes        the codes of the selected assessment classes, or null for every row
+     * @return the merged sketch, empty if no row is selected
+     */
+    public synchronized KllSketch merged(BitSet neighborhoodCodes, BitSet wardCodes, BitSet classCodes) {
+        KllSketch merged = new KllSketch();
+        for (int i = 0; i < cells.size(); i++) {
+            if ((neighborhoodCodes != null && !neighborhoodCodes.get(cellNeighborhoods[i]))
+                    || (wardCodes != null && !wardCodes.get(cellWards[i]))) {
+                continue;
+            }
+            KllSketch[] cell = cells.get(i);
+            if (classCodes == null) {
+                merged.merge(cell[ALL_CLASSES]);
+                continue;
+            }
+            for (int code = classCodes.nextSetBit(0); code >= 0 && code + 1 < cell.length;
+                 code = classCodes.nextSetBit(code + 1)) {
+                if (cell[code + 1] != null) {
+                    merged.merge(cell[code + 1]);
+                }
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Get the sketches of a neighbourhood and ward pair, creating the cell the first time the pair is seen.
+     *
+     * @param neighborhood the neighbourhood code
+     * @param ward         the ward code
+     * @return the sketch of every class slot of the cell
+     */
+    private KllSketch[] cell(int neighborhood, int ward) {
+        if (neighborhood > 0xFFFF || ward > 0xFFFF) {
+            throw new IllegalStateException("Too many neighbourhoods or wards to sketch");
+        }
+        int pair = neighborhood << 16 | ward;
+        int index = cellByPair.get(pair);
+        if (index >= 0) {
+            return cells.get(index);
+        }
+        index = cells.size();
+        if (index == cellNeighborhoods.length) {
+            cellNeighborhoods = Arrays.copyOf(cellNeighborhoods, index * 2);
+            cellWards = Arrays.copyOf(cellWards, index * 2);
+        }
+        cellNeighborhoods[index] = neighborhood;
+        cellWards[index] = ward;
+        KllSketch[] cell = {new KllSketch()};
+        cells.add(cell);
+        cellByPair.put(pair, index);
+        return cell;
+    }
+
+    /**
+     * Make sure a cell has a sketch in a class slot, growing the cell when needed.
+     *
+     * @param cell         the sketches of the cell
+     * @param neighborhood the neighbourhood code of the cell
+     * @param ward         the ward code of the cell
+     * @param slot         the class slot
+     * @return the sketches of the cell, a new array if it grew
+     */
+    private KllSketch[] sketch(KllSketch[] cell, int neighborhood, int ward, int slot) {
+        if (slot >= cell.length) {
+            cell = Arrays.copyOf(cell, slot + 1);
+            cells.set(cellByPair.get(neighborhood << 16 | ward), cell);
+        }
+        if (cell[slot] == null) {
+            cell[slot] = new KllSketch();
+        }
+        return cell;
+    }
+
+    /**
+     * Check if a code of a row is not also in an earlier class column of the same row.
+     *
+     * @param classes the class code columns
+     * @param column  the position of the column the code is from
+     * @param row     the row
+     * @param code    the code
+     * @return true if no earlier column of the row holds the code
+     */
+    private static boolean isFirstOccurrence(int[][] classes, int column, int row, int code) {
+        for (int i = 0; i < column; i++) {
+            if (classes[i][row] == code) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,19 @@
+package main.index;
+
+import main.utility.PropertyStore;
+
+/**
+ * The RowIndex interface is implemented by indexes over the rows of a PropertyStore.
+ * An index is built from the rows the store holds at the time, it answers for the store only while it covers it.
+ * <p>
+ * Author: Fahad Ali
+ */
+public interface RowIndex {
+    /**
+     * Check if the index was built over every row of a store, so its answers hold for that store.
+     *
+     * @param store The PropertyStore to check.
+     * @return True if the index is up to date for the store.
+     */
+    boolean covers(PropertyStore store);
+}
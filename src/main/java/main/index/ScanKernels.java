@@ -0,0 +1,105 @@
+package main.index;
+
+import java.util.Arrays;
+
+/**
+ * ScanKernels evaluates predicates over whole primitive columns and returns selection bitmaps,
+ * one bit per row packed 64 to a long like {@link java.util.BitSet#valueOf(long[])}.
+ * When the jdk.incubator.vector module is enabled (run with {@code --add-modules jdk.incubator.vector})
+ * the comparisons are done with the Vector API several lanes at a time, otherwise a scalar loop gives
+ * the same bitmaps.
+ * <p>
+ * Author: Fahad Ali
+ */
+public final class ScanKernels {
+    private static final boolean VECTORIZED = vectorApiAvailable();
+
+    /**
+     * Private constructor, this class only has static methods.
+     */
+    private ScanKernels() {
+    }
+
+    /**
+     * Check if the scans use the Vector API.
+     *
+     * @return True if the jdk.incubator.vector module is enabled.
+     */
+    public static boolean isVectorized() {
+        return VECTORIZED;
+    }
+
+    /**
+     * Select the rows whose value falls in a range.
+     *
+     * @param values The column.
+     * @param count  The number of rows, the values after them are ignored.
+     * @param min    The lowest value, inclusive.
+     * @param max    The highest value, inclusive.
+     * @return A selection bitmap with a bit set for every row in the range.
+     */
+    public static long[] selectRange(int[] values, int count, int min, int max) {
+        long[] words = new long[(count + 63) >>> 6];
+        if (min > max) {
+            return words;
+        }
+        int from = VECTORIZED ? VectorScanKernels.selectRange(values, count, min, max, words) : 0;
+        for (int i = from; i < count; i++) {
+            // both differences are non-negative only inside the range, so the sign bit decides without a branch
+            long outside = ((long) values[i] - min) | ((long) max - values[i]);
+            words[i >>> 6] |= ((outside >>> 63) ^ 1L) << i;
+        }
+        return words;
+    }
+
+    /**
+     * Get the rows selected by a bitmap.
+     *
+     * @param words The selection bitmap.
+     * @return The selected rows in ascending order.
+     */
+    public static int[] toRows(long[] words) {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        int[] rows = new int[count];
+        int position = 0;
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                rows[position++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Check if the Vector API can be used. The vector kernels are only loaded when the module is in the boot layer,
+     * so running without it never touches the incubator classes.
+     *
+     * @return True if the vector kernels work.
+     */
+    private static boolean vectorApiAvailable() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            // compare against the scalar loop once so a broken setup falls back instead of failing queries
+            int[] probe = new int[130];
+            Arrays.setAll(probe, i -> i % 7);
+            long[] words = new long[3];
+            int from = VectorScanKernels.selectRange(probe, probe.length, 2, 4, words);
+            for (int i = 0; i < from; i++) {
+                boolean selected = (words[i >>> 6] & (1L << i)) != 0;
+                if (selected != (probe[i] >= 2 && probe[i] <= 4)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (LinkageError | RuntimeException e) {
+            return false;
+        }
+    }
+}
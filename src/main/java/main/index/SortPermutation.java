@@ -0,0 +1,171 @@
+package main.index;
+
+import main.utility.PropertyAssessments;
+import main.utility.PropertyPage;
+import main.utility.PropertySortKey;
+import main.utility.PropertyStore;
+
+import java.util.BitSet;
+
+/**
+ * SortPermutation keeps the rows of a PropertyStore in the order of one table column, built once so a
+ * sorted page of any result over the store never sorts again. It holds the rank of every row and the rows
+ * in rank order, rows with equal values stay in row order.
+ * A page of every row is a slice of the permutation. A page of a large result in row order walks the
+ * permutation and keeps the rows of the result, stopping once the page is full. Any other result finds
+ * its page with a bounded heap over the ranks, which are plain ints whatever the column.
+ * <p>
+ * Author: Fahad Ali
+ */
+public class SortPermutation implements RowIndex {
+    private final PropertyStore store;
+    private final int rowCount;
+    private final int[] ranks;
+    private final int[] sortedRows;
+
+    /**
+     * Constructor for a SortPermutation over the current rows of a store.
+     *
+     * @param store   The PropertyStore to sort.
+     * @param sortKey The order to sort in, the permutation of a descending order is the one of its column
+     *                ascending, so only ascending keys need one.
+     */
+    public SortPermutation(PropertyStore store, PropertySortKey sortKey) {
+        this.store = store;
+        this.rowCount = store.size();
+        this.ranks = sortKey.getAscending().ranks(store);
+
+        // the ranks have no gaps, so a counting sort lists the rows in rank order and keeps row order in a rank
+        int[] start = new int[rowCount + 1];
+        for (int rank : ranks) {
+            start[rank + 1]++;
+        }
+        for (int rank = 0; rank < rowCount; rank++) {
+            start[rank + 1] += start[rank];
+        }
+        sortedRows = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            sortedRows[start[ranks[row]]++] = row;
+        }
+    }
+
+    /**
+     * Check if the permutation was built over every row of a store.
+     *
+     * @param store The PropertyStore to check.
+     * @return True if the permutation is up to date for the store.
+     */
+    @Override
+    public boolean covers(PropertyStore store) {
+        return this.store == store && rowCount == store.size();
+    }
+
+    /**
+     * Get the rank of a row, rows with equal values share a rank.
+     *
+     * @param row The row.
+     * @return The rank of the row.
+     */
+    public int rank(int row) {
+        return ranks[row];
+    }
+
+    /**
+     * Get one sorted page of properties of the store. Properties that tie keep their list order.
+     *
+     * @param properties The properties to sort, they must belong to the store of the permutation.
+     * @param offset     The position of the first property of the page in the sorted list.
+     * @param limit      The largest number of properties on the page.
+     * @param descending True to sort in descending order.
+     * @return The page, with the number of properties as its total count.
+     */
+    public PropertyPage page(PropertyAssessments properties, int offset, int limit, boolean descending) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Negative offset or limit");
+        }
+        int size = properties.size();
+        int from = Math.min(offset, size);
+        int to = (int) Math.min((long) from + limit, size);
+        if (!walks(properties, to)) {
+            return properties.getPage(offset, limit, descending ? row -> ~ranks[row] : row -> ranks[row]);
+        }
+
+        BitSet members = null;
+        if (size < rowCount) {
+            members = new BitSet(rowCount);
+            for (int i = 0; i < size; i++) {
+                members.set(properties.getRow(i));
+            }
+        }
+        int[] pageRows = new int[to - from];
+        int kept = 0;
+        if (descending) {
+            // ranks from the last, rows of one rank still in row order
+            int end = rowCount;
+            while (end > 0 && kept < to) {
+                int begin = end - 1;
+                while (begin > 0 && ranks[sortedRows[begin - 1]] == ranks[sortedRows[end - 1]]) {
+                    begin--;
+                }
+                for (int i = begin; i < end && kept < to; i++) {
+                    kept = keep(sortedRows[i], members, pageRows, from, kept);
+                }
+                end = begin;
+            }
+        } else if (members == null) {
+            System.arraycopy(sortedRows, from, pageRows, 0, to - from);
+        } else {
+            for (int i = 0; i < rowCount && kept < to; i++) {
+                kept = keep(sortedRows[i], members, pageRows, from, kept);
+            }
+        }
+        return new PropertyPage(new PropertyAssessments(store, pageRows, pageRows.length), size, from);
+    }
+
+    /**
+     * Decide if a page is cheaper to find by walking the permutation than with a heap.
+     * Walking needs the properties in row order, so ties keep their list order, and a result that holds
+     * a good share of the store, so the rows of the page come up early in the walk.
+     *
+     * @param properties The properties to sort.
+     * @param to         The position after the last property of the page.
+     * @return True to walk the permutation.
+     */
+    private boolean walks(PropertyAssessments properties, int to) {
+        int size = properties.size();
+        if (size == 0) {
+            return false;
+        }
+        long walked = Math.min(rowCount, (long) to * rowCount / size);
+        long heap = (long) size * (32 - Integer.numberOfLeadingZeros(to + 1));
+        if (walked > heap) {
+            return false;
+        }
+        for (int i = 1; i < size; i++) {
+            if (properties.getRow(i) <= properties.getRow(i - 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Keep a row of the walk if it belongs to the properties, placing it on the page once the offset is passed.
+     *
+     * @param row      The row reached by the walk.
+     * @param members  The rows of the properties, null if they are every row of the store.
+     * @param pageRows The rows of the page.
+     * @param from     The position of the first property of the page.
+     * @param kept     The number of properties kept so far.
+     * @return The number of properties kept with this row.
+     */
+    private static int keep(int row, BitSet members, int[] pageRows, int from, int kept) {
+        if (members != null && !members.get(row)) {
+            return kept;
+        }
+        if (kept >= from) {
+            pageRows[kept - from] = row;
+        }
+        return kept + 1;
+    }
+}
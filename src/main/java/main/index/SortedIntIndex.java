@@ -0,0 +1,133 @@
+package main.index;
+
+import main.utility.PropertyStore;
+
+import java.util.Arrays;
+
+/**
+ * SortedIntIndex keeps the rows of a PropertyStore sorted by one int column, rows with equal values stay in
+ * row order. A range of values is found with two binary searches and its rows are one contiguous slice
+ * of the sorted permutation, so a range query costs O(log n) plus the size of the answer.
+ * <p>
+ * Author: Fahad Ali
+ */
+public class SortedIntIndex implements RowIndex {
+    private final PropertyStore store;
+    private final int rowCount;
+    private final int[] sortedRows;
+    private final int[] sortedValues;
+
+    /**
+     * Constructor for a SortedIntIndex over the current rows of a store.
+     *
+     * @param store     The PropertyStore to index.
+     * @param intColumn The int column constant to sort by.
+     */
+    public SortedIntIndex(PropertyStore store, int intColumn) {
+        this.store = store;
+        this.rowCount = store.size();
+        int[] values = store.intColumn(intColumn);
+
+        // sort value and row packed in one long, the row in the low bits keeps equal values in row order
+        long[] keys = new long[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            keys[row] = ((long) values[row] << 32) | row;
+        }
+        Arrays.sort(keys);
+
+        sortedRows = new int[rowCount];
+        sortedValues = new int[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            sortedRows[i] = (int) keys[i];
+            sortedValues[i] = (int) (keys[i] >> 32);
+        }
+    }
+
+    /**
+     * Check if the index was built over every row of a store.
+     *
+     * @param store The PropertyStore to check.
+     * @return True if the index is up to date for the store.
+     */
+    @Override
+    public boolean covers(PropertyStore store) {
+        return this.store == store && rowCount == store.size();
+    }
+
+    /**
+     * Get the number of indexed rows.
+     *
+     * @return The number of rows.
+     */
+    public int size() {
+        return rowCount;
+    }
+
+    /**
+     * Find the first position in sorted order whose value is at least a bound.
+     *
+     * @param min The lower bound, inclusive.
+     * @return The position, or size() if every value is below the bound.
+     */
+    public int lowerBound(int min) {
+        int low = 0;
+        int high = rowCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedValues[mid] < min) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Find the first position in sorted order whose value is above a bound.
+     *
+     * @param max The upper bound, inclusive.
+     * @return The position, or size() if no value is above the bound.
+     */
+    public int upperBound(int max) {
+        if (max == Integer.MAX_VALUE) {
+            return rowCount;
+        }
+        return lowerBound(max + 1);
+    }
+
+    /**
+     * Count the rows whose value falls in a range.
+     *
+     * @param min The lowest value, inclusive.
+     * @param max The highest value, inclusive.
+     * @return The number of rows in the range.
+     */
+    public int countInRange(int min, int max) {
+        return min > max ? 0 : upperBound(max) - lowerBound(min);
+    }
+
+    /**
+     * Get the rows whose value falls in a range, sorted by value.
+     *
+     * @param min The lowest value, inclusive.
+     * @param max The highest value, inclusive.
+     * @return A new array of store rows.
+     */
+    public int[] rowsInRange(int min, int max) {
+        if (min > max) {
+            return new int[0];
+        }
+        return Arrays.copyOfRange(sortedRows, lowerBound(min), upperBound(max));
+    }
+
+    /**
+     * Get the row at a position of the sorted order.
+     *
+     * @param position The position, from 0 to size() - 1.
+     * @return The store row.
+     */
+    public int rowAt(int position) {
+        return sortedRows[position];
+    }
+}
@@ -0,0 +1,297 @@
+package main.index;
+
+import main.utility.PropertyStore;
+
+import java.util.Arrays;
+
+/**
+ * TrigramIndex answers substring searches over a text computed for every row of a PropertyStore.
+ * The text of each row is computed once when the index is built and kept in one shared char array.
+ * Every run of three characters (a trigram) lists the rows whose text holds it, a search intersects the lists
+ * of the trigrams of the query and then checks only the rows left over. Queries shorter than three characters
+ * have no trigrams and are answered by scanning the stored texts.
+ * <p>
+ * Trigrams of ASCII characters get an exact key, any other trigram is hashed into a shared range of keys.
+ * Hashed keys can only add candidates, which the check against the text then removes.
+ * <p>
+ * Author: Fahad Ali
+ */
+public class TrigramIndex implements RowIndex {
+    private static final int ASCII_KEYS = 1 << 21; // three 7 bit characters
+    private static final int HASHED_KEYS = 1 << 16;
+
+    private final PropertyStore store;
+    private final int rowCount;
+    private final char[] text;
+    private final int[] textStart; // text of a row is text[textStart[row]] up to text[textStart[row + 1]]
+    private final int[] keys; // sorted trigram keys that occur
+    private final int[] postingStart; // rows of keys[i] are postings[postingStart[i]] up to postings[postingStart[i + 1]]
+    private final int[] postings;
+
+    /**
+     * Computes the text of a row.
+     */
+    public interface RowText {
+        /**
+         * Get the text of a row.
+         *
+         * @param store The PropertyStore holding the row.
+         * @param row   The row.
+         * @return The text to index for the row.
+         */
+        String text(PropertyStore store, int row);
+    }
+
+    /**
+     * Constructor for a TrigramIndex over the current rows of a store.
+     *
+     * @param store   The PropertyStore to index.
+     * @param rowText Computes the text of each row, it is called once per row.
+     */
+    public TrigramIndex(PropertyStore store, RowText rowText) {
+        this.store = store;
+        this.rowCount = store.size();
+
+        // keep every row text in one array
+        textStart = new int[rowCount + 1];
+        char[] chars = new char[Math.max(16, rowCount * 16)];
+        int length = 0;
+        for (int row = 0; row < rowCount; row++) {
+            String value = rowText.text(store, row);
+            if (length + value.length() > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(length + value.length(), chars.length + (chars.length >> 1)));
+            }
+            value.getChars(0, value.length(), chars, length);
+            length += value.length();
+            textStart[row + 1] = length;
+        }
+        text = Arrays.copyOf(chars, length);
+
+        // count the rows of every trigram key, a row is counted once per key
+        int[] counts = new int[ASCII_KEYS + HASHED_KEYS];
+        int[] lastRow = new int[counts.length];
+        Arrays.fill(lastRow, -1);
+        for (int row = 0; row < rowCount; row++) {
+            for (int i = textStart[row]; i + 3 <= textStart[row + 1]; i++) {
+                int key = key(text, i);
+                if (lastRow[key] != row) {
+                    lastRow[key] = row;
+                    counts[key]++;
+                }
+            }
+        }
+
+        // keep only the keys that occur, with their lists laid out one after another
+        int keyCount = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                keyCount++;
+            }
+        }
+        keys = new int[keyCount];
+        postingStart = new int[keyCount + 1];
+        int[] slot = lastRow; // reused to find the list of a key while filling
+        int k = 0;
+        for (int key = 0; key < counts.length; key++) {
+            if (counts[key] > 0) {
+                keys[k] = key;
+                postingStart[k + 1] = postingStart[k] + counts[key];
+                slot[key] = k++;
+            }
+        }
+        postings = new int[postingStart[keyCount]];
+        int[] fill = Arrays.copyOf(postingStart, keyCount);
+        for (int row = 0; row < rowCount; row++) {
+            for (int i = textStart[row]; i + 3 <= textStart[row + 1]; i++) {
+                int list = slot[key(text, i)];
+                // rows are added in order, so a repeated trigram of the row is the last entry of its list
+                if (fill[list] == postingStart[list] || postings[fill[list] - 1] != row) {
+                    postings[fill[list]++] = row;
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if the index was built over every row of a store.
+     *
+     * @param store The PropertyStore to check.
+     * @return True if the index is up to date for the store.
+     */
+    @Override
+    public boolean covers(PropertyStore store) {
+        return this.store == store && rowCount == store.size();
+    }
+
+    /**
+     * Find the rows whose text contains a query. The query is compared as it is, it must be normalized
+     * the same way as the row texts.
+     *
+     * @param query The text to search for.
+     * @return The matching store rows in ascending order.
+     */
+    public int[] rowsContaining(String query) {
+        char[] pattern = query.toCharArray();
+        if (pattern.length < 3) {
+            return scan(pattern);
+        }
+
+        // find the list of every trigram of the query, any missing trigram means no row matches
+        int trigramCount = pattern.length - 2;
+        int[] lists = new int[trigramCount];
+        for (int i = 0; i < trigramCount; i++) {
+            int list = Arrays.binarySearch(keys, key(pattern, i));
+            if (list < 0) {
+                return new int[0];
+            }
+            lists[i] = list;
+        }
+
+        // intersect starting from the shortest list
+        int shortest = 0;
+        for (int i = 1; i < trigramCount; i++) {
+            if (listLength(lists[i]) < listLength(lists[shortest])) {
+                shortest = i;
+            }
+        }
+        int[] candidates = Arrays.copyOfRange(postings, postingStart[lists[shortest]], postingStart[lists[shortest] + 1]);
+        int count = candidates.length;
+        for (int i = 0; i < trigramCount && count > 0; i++) {
+            if (i != shortest) {
+                count = intersect(candidates, count, lists[i]);
+            }
+        }
+
+        // the trigrams can all occur without the query occurring, check the text of every candidate
+        int matches = 0;
+        for (int i = 0; i < count; i++) {
+            if (contains(candidates[i], pattern)) {
+                candidates[matches++] = candidates[i];
+            }
+        }
+        return Arrays.copyOf(candidates, matches);
+    }
+
+    /**
+     * Estimate how many rows contain a query from the length of the shortest list of its trigrams.
+     *
+     * @param query The text to search for, normalized like the row texts.
+     * @return An upper bound on the number of matching rows, the number of rows for queries under three characters.
+     */
+    public int estimate(String query) {
+        if (query.length() < 3) {
+            return rowCount;
+        }
+        char[] pattern = query.toCharArray();
+        int estimate = rowCount;
+        for (int i = 0; i + 3 <= pattern.length; i++) {
+            int list = Arrays.binarySearch(keys, key(pattern, i));
+            estimate = Math.min(estimate, list < 0 ? 0 : listLength(list));
+        }
+        return estimate;
+    }
+
+    /**
+     * Check if the stored text of a row contains a query.
+     *
+     * @param row     The store row.
+     * @param pattern The characters to search for, normalized like the row texts.
+     * @return True if the text of the row contains the query.
+     */
+    public boolean rowContains(int row, char[] pattern) {
+        return contains(row, pattern);
+    }
+
+    /**
+     * Keep the candidates that are also in the list of a trigram.
+     *
+     * @param candidates The candidate rows in ascending order, the kept rows are moved to the front.
+     * @param count      The number of candidates.
+     * @param list       The position of the trigram list.
+     * @return The number of candidates kept.
+     */
+    private int intersect(int[] candidates, int count, int list) {
+        int position = postingStart[list];
+        int end = postingStart[list + 1];
+        int kept = 0;
+        for (int i = 0; i < count && position < end; i++) {
+            int row = candidates[i];
+            while (position < end && postings[position] < row) {
+                position++;
+            }
+            if (position < end && postings[position] == row) {
+                candidates[kept++] = row;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Find the rows whose text contains a query by checking every row.
+     *
+     * @param pattern The text to search for.
+     * @return The matching store rows in ascending order.
+     */
+    private int[] scan(char[] pattern) {
+        int[] matches = new int[16];
+        int count = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (contains(row, pattern)) {
+                if (count == matches.length) {
+                    matches = Arrays.copyOf(matches, count * 2);
+                }
+                matches[count++] = row;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * Check if the stored text of a row contains a pattern.
+     *
+     * @param row     The store row.
+     * @param pattern The text to search for.
+     * @return True if the text contains the pattern.
+     */
+    private boolean contains(int row, char[] pattern) {
+        int last = textStart[row + 1] - pattern.length;
+        for (int start = textStart[row]; start <= last; start++) {
+            int i = 0;
+            while (i < pattern.length && text[start + i] == pattern[i]) {
+                i++;
+            }
+            if (i == pattern.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the number of rows in the list of a trigram.
+     *
+     * @param list The position of the trigram list.
+     * @return The length of the list.
+     */
+    private int listLength(int list) {
+        return postingStart[list + 1] - postingStart[list];
+    }
+
+    /**
+     * Get the key of the trigram starting at a position.
+     *
+     * @param chars    The characters.
+     * @param position The position of the first character of the trigram.
+     * @return The trigram key.
+     */
+    private static int key(char[] chars, int position) {
+        char a = chars[position];
+        char b = chars[position + 1];
+        char c = chars[position + 2];
+        if ((a | b | c) < 128) {
+            return (a << 14) | (b << 7) | c;
+        }
+        int hash = (a * 31 + b) * 31 + c;
+        return ASCII_KEYS + ((hash ^ (hash >>> 16)) & (HASHED_KEYS - 1));
+    }
+}
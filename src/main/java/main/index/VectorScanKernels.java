@@ -0,0 +1,65 @@
+package main.index;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * VectorScanKernels holds the Vector API versions of the ScanKernels loops. It must only be used through
+ * ScanKernels, which checks that the jdk.incubator.vector module is enabled before loading this class.
+ * <p>
+ * Author: Fahad Ali
+ */
+final class VectorScanKernels {
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final IntVector LANE_BITS = IntVector.fromArray(INTS, laneBits(), 0);
+
+    /**
+     * Private constructor, this class only has static methods.
+     */
+    private VectorScanKernels() {
+    }
+
+    /**
+     * Set the bits of the rows whose value falls in a range, a whole vector of rows at a time.
+     * The lane count is a power of two, so the bits of one vector never cross a word.
+     *
+     * @param values The column.
+     * @param count  The number of rows.
+     * @param min    The lowest value, inclusive.
+     * @param max    The highest value, inclusive.
+     * @param words  The selection bitmap the bits are set in.
+     * @return The first row that was not scanned, the caller scans the rest one row at a time.
+     */
+    static int selectRange(int[] values, int count, int min, int max, long[] words) {
+        int lanes = INTS.length();
+        if (lanes > Integer.SIZE) {
+            return 0; // the lane bits must fit in an int, wider vectors are left to the scalar loop
+        }
+        int bound = INTS.loopBound(count);
+        int i = 0;
+        for (; i < bound; i += lanes) {
+            IntVector vector = IntVector.fromArray(INTS, values, i);
+            VectorMask<Integer> inRange = vector.compare(VectorOperators.GE, min)
+                    .and(vector.compare(VectorOperators.LE, max));
+            // or together the bit of every selected lane, blend and reduce compile to a few vector instructions
+            long bits = IntVector.zero(INTS).blend(LANE_BITS, inRange).reduceLanes(VectorOperators.OR) & 0xFFFFFFFFL;
+            words[i >>> 6] |= bits << (i & 63);
+        }
+        return i;
+    }
+
+    /**
+     * Get the bit of every lane, 1 for lane 0, 2 for lane 1 and so on.
+     *
+     * @return The lane bits.
+     */
+    private static int[] laneBits() {
+        int[] bits = new int[INTS.length()];
+        for (int lane = 0; lane < bits.length; lane++) {
+            bits[lane] = 1 << lane;
+        }
+        return bits;
+    }
+}
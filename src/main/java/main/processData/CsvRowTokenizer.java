@@ -0,0 +1,408 @@
+package main.processData;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The CsvRowTokenizer class walks the rows of a CSV held in a ByteBuffer without copying it into Strings.
+ * Each call to nextRow records where the cells of the row start and end, numeric cells can then be parsed
+ * straight from the bytes. Quoted cells follow RFC-4180, so they may hold commas, line breaks and doubled quotes.
+ * <p>
+ * Author: Fahad Ali
+ */
+public class CsvRowTokenizer {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53; // larger mantissas are not exact as a double
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private final int maxCells;
+    private final int[] cellStart;
+    private final int[] cellEnd;
+    private final boolean[] cellEscaped;
+    private int cellCount;
+    private int position;
+    private byte[] scratch = new byte[64];
+
+    /**
+     * Constructor for the CsvRowTokenizer.
+     *
+     * @param buffer   the bytes of the CSV, read from index 0 up to the buffer limit
+     * @param maxCells the number of cells in a row, the last cell keeps anything past it like String.split does
+     */
+    public CsvRowTokenizer(ByteBuffer buffer, int maxCells) {
+        this.buffer = buffer;
+        this.limit = buffer.limit();
+        this.maxCells = maxCells;
+        this.cellStart = new int[maxCells];
+        this.cellEnd = new int[maxCells];
+        this.cellEscaped = new boolean[maxCells];
+    }
+
+    /**
+     * Move to the next row that holds any data, blank lines are skipped.
+     *
+     * @return true if a row was read, false at the end of the buffer
+     */
+    public boolean nextRow() {
+        while (position < limit) {
+            int lineStart = position;
+            cellCount = 0;
+            int cell = position;
+
+            while (true) {
+                if (isQuoted(cell)) {
+                    cell = readQuotedCell(cell);
+                } else {
+                    cell = readPlainCell(cell);
+                }
+                if (cell < limit && buffer.get(cell) == ',') {
+                    cell++; // more cells follow on this row
+                    continue;
+                }
+                break;
+            }
+
+            position = skipLineBreak(cell);
+            if (!(cellCount == 1 && cellStart[0] == cellEnd[0] && !isQuoted(lineStart))) {
+                return true;
+            }
+        }
+        cellCount = 0;
+        return false;
+    }
+
+    /**
+     * Get the number of cells in the current row.
+     *
+     * @return the cell count
+     */
+    public int cellCount() {
+        return cellCount;
+    }
+
+    /**
+     * Check if a cell of the current row is blank. Cells missing from a short row are blank.
+     *
+     * @param index the index of the cell
+     * @return true if the cell holds nothing but whitespace
+     */
+    public boolean isBlank(int index) {
+        if (index >= cellCount) {
+            return true;
+        }
+        for (int i = cellStart[index]; i < cellEnd[index]; i++) {
+            if ((buffer.get(i) & 0xFF) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse a cell of the current row as an integer. Blank or malformed cells give 0.
+     *
+     * @param index the index of the cell
+     * @return the parsed integer
+     */
+    public int getInt(int index) {
+        if (index >= cellCount) {
+            return 0;
+        }
+        int start = cellStart[index];
+        int end = cellEnd[index];
+        while (start < end && (buffer.get(start) & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return 0; // blank cell
+        }
+
+        boolean negative = false;
+        byte first = buffer.get(start);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            start++;
+            if (start == end) {
+                return 0;
+            }
+        }
+
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return 0;
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                return 0; // does not fit in an int
+            }
+        }
+        if (negative) {
+            value = -value;
+        }
+        return value > Integer.MAX_VALUE ? 0 : (int) value;
+    }
+
+    /**
+     * Parse a cell of the current row as a double. Blank or malformed cells give 0.0.
+     * Plain decimals with an exact mantissa are parsed from the bytes, anything else (exponents, long mantissas)
+     * falls back to Double.parseDouble.
+     *
+     * @param index the index of the cell
+     * @return the parsed double
+     */
+    public double getDouble(int index) {
+        if (index >= cellCount) {
+            return 0.0;
+        }
+        int start = cellStart[index];
+        int end = cellEnd[index];
+        while (start < end && (buffer.get(start) & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return 0.0; // blank cell
+        }
+
+        int i = start;
+        boolean negative = false;
+        if (buffer.get(i) == '-' || buffer.get(i) == '+') {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int fractionDigits = 0;
+        boolean seenPoint = false;
+        boolean seenDigit = false;
+        boolean plain = true;
+        for (; i < end && plain; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                seenDigit = true;
+                mantissa = mantissa * 10 + (b - '0');
+                if (seenPoint) {
+                    fractionDigits++;
+                }
+                plain = mantissa <= MAX_EXACT_MANTISSA && fractionDigits < POWERS_OF_TEN.length;
+            } else if (b == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                plain = false;
+            }
+        }
+        if (plain && seenDigit) {
+            double value = mantissa / POWERS_OF_TEN[fractionDigits];
+            return negative ? -value : value;
+        }
+        return parseDoubleSlow(start, end);
+    }
+
+    /**
+     * Get a cell of the current row as a String, with quotes removed and doubled quotes unescaped.
+     *
+     * @param index the index of the cell
+     * @return the cell text, or an empty string if the row has no such cell
+     */
+    public String getString(int index) {
+        if (index >= cellCount) {
+            return "";
+        }
+        int start = cellStart[index];
+        int length = cellEnd[index] - start;
+        if (length == 0) {
+            return "";
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(start, scratch, 0, length);
+
+        if (cellEscaped[index]) {
+            int write = 0;
+            for (int read = 0; read < length; read++) {
+                scratch[write++] = scratch[read];
+                if (scratch[read] == '"') {
+                    read++; // skip the second quote of a doubled quote
+                }
+            }
+            length = write;
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parse a double the slow way for inputs outside the plain decimal format.
+     *
+     * @param start index of the first byte
+     * @param end   index after the last byte
+     * @return the parsed double, or 0.0 if it is not a number
+     */
+    private double parseDoubleSlow(int start, int end) {
+        int length = end - start;
+        if (scratch.length < length) {
+            scratch = new byte[length];
+        }
+        buffer.get(start, scratch, 0, length);
+        try {
+            return Double.parseDouble(new String(scratch, 0, length, StandardCharsets.ISO_8859_1));
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+
+    /**
+     * Read an unquoted cell up to the next comma or line break.
+     * The last cell of a row takes the rest of the line.
+     *
+     * @param start index of the first byte of the cell
+     * @return index of the byte ending the cell
+     */
+    private int readPlainCell(int start) {
+        boolean last = cellCount == maxCells - 1;
+        int i = start;
+        while (i < limit) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r' && (i + 1 == limit || buffer.get(i + 1) == '\n') || b == ',' && !last) {
+                break;
+            }
+            i++;
+        }
+        addCell(start, i, false);
+        return i;
+    }
+
+    /**
+     * Read a quoted cell. Anything between the closing quote and the next comma or line break is ignored.
+     *
+     * @param quote index of the opening quote
+     * @return index of the byte ending the cell
+     */
+    private int readQuotedCell(int quote) {
+        int i = quote + 1;
+        boolean escaped = false;
+        while (i < limit) {
+            if (buffer.get(i) == '"') {
+                if (i + 1 < limit && buffer.get(i + 1) == '"') {
+                    escaped = true;
+                    i += 2;
+                    continue;
+                }
+                break;
+            }
+            i++;
+        }
+        addCell(quote + 1, Math.min(i, limit), escaped);
+
+        i++; // step over the closing quote
+        while (i < limit && buffer.get(i) != ',' && buffer.get(i) != '\n' && buffer.get(i) != '\r') {
+            i++;
+        }
+        return Math.min(i, limit);
+    }
+
+    /**
+     * Record the bounds of a cell, cells past the expected count are dropped.
+     *
+     * @param start   index of the first byte
+     * @param end     index after the last byte
+     * @param escaped true if the cell holds doubled quotes
+     */
+    private void addCell(int start, int end, boolean escaped) {
+        if (cellCount < maxCells) {
+            cellStart[cellCount] = start;
+            cellEnd[cellCount] = end;
+            cellEscaped[cellCount] = escaped;
+            cellCount++;
+        }
+    }
+
+    /**
+     * Step over the line break ending a row.
+     *
+     * @param index index of the byte that ended the row
+     * @return index of the start of the next row
+     */
+    private int skipLineBreak(int index) {
+        if (index < limit && buffer.get(index) == '\r') {
+            index++;
+        }
+        if (index < limit && buffer.get(index) == '\n') {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Check if the byte at an index opens a quoted cell.
+     *
+     * @param index the index to check
+     * @return true if it is a quote
+     */
+    private boolean isQuoted(int index) {
+        return index < limit && buffer.get(index) == '"';
+    }
+
+    /**
+     * Count the quotes in part of a buffer. A line break is outside of any quoted cell
+     * when the number of quotes before it is even.
+     *
+     * @param buffer the buffer to scan
+     * @param start  index of the first byte
+     * @param end    index after the last byte
+     * @return the number of quote bytes
+     */
+    public static long countQuotes(ByteBuffer buffer, int start, int end) {
+        long quotes = 0;
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == '"') {
+                quotes++;
+            }
+        }
+        return quotes;
+    }
+
+    /**
+     * Parse a String as an integer without throwing. Blank or malformed values give 0.
+     *
+     * @param value the string to be parsed
+     * @return the parsed integer
+     */
+    public static int parseInt(String value) {
+        return tokenize(value).getInt(0);
+    }
+
+    /**
+     * Parse a String as a double without throwing. Blank or malformed values give 0.0.
+     *
+     * @param value the string to be parsed
+     * @return the parsed double
+     */
+    public static double parseDouble(String value) {
+        return tokenize(value).getDouble(0);
+    }
+
+    /**
+     * Wrap a single value so it can be parsed like a cell.
+     *
+     * @param value the value
+     * @return a tokenizer positioned on a row holding the value as its only cell
+     */
+    private static CsvRowTokenizer tokenize(String value) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        CsvRowTokenizer tokenizer = new CsvRowTokenizer(ByteBuffer.wrap(bytes), 1);
+        tokenizer.addCell(0, bytes.length, false);
+        return tokenizer;
+    }
+}
@@ -0,0 +1,237 @@
+package main.processData;
+
+import main.utility.Constants;
+import main.utility.PropertyAssessments;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The ParallelCsvLoader class loads a property assessment CSV file by memory mapping it, splitting it into
+ * chunks that start on a row and parsing the chunks on several threads. Each chunk is parsed into its own
+ * PropertyAssessments which are merged back in file order, so the result is the same as reading the file
+ * line by line.
+ * <p>
+ * Author: Fahad Ali
+ */
+public class ParallelCsvLoader {
+    private static final int MIN_CHUNK_SIZE = 1 << 20; // files smaller than this are not worth splitting
+    private static final int CHUNKS_PER_THREAD = 4; // extra chunks so fast threads can pick up slack
+    private static final int SCAN_BUFFER_SIZE = 8192;
+
+    private final Path csvPath;
+    private final int threadCount;
+    private final ProcessData rowParser;
+
+    /**
+     * Constructor for the ParallelCsvLoader.
+     *
+     * @param csvPath     path of the CSV file to load
+     * @param threadCount number of threads used to parse the file, values below 1 are treated as 1
+     * @param rowParser   the ProcessData used to turn a row of cells into a property
+     */
+    public ParallelCsvLoader(Path csvPath, int threadCount, ProcessData rowParser) {
+        this.csvPath = csvPath;
+        this.threadCount = Math.max(1, threadCount);
+        this.rowParser = rowParser;
+    }
+
+    /**
+     * Load the CSV file into the target PropertyAssessments. The first line is skipped as it contains titles.
+     *
+     * @param target the PropertyAssessments every parsed property is added to
+     * @throws IOException if the file can't be opened or read
+     */
+    public void load(PropertyAssessments target) throws IOException {
+        try (FileChannel channel = FileChannel.open(csvPath, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long dataStart = nextRowStart(channel, 0, false, fileSize); // skip the titles
+            long[] rawStarts = rawChunkStarts(dataStart, fileSize);
+            int workers = Math.min(threadCount, Math.max(1, rawStarts.length - 1));
+
+            ExecutorService executor = workers > 1 ? Executors.newFixedThreadPool(workers) : null;
+            try {
+                long[] rowStarts = rowAlignedStarts(channel, rawStarts, executor);
+                List<Callable<PropertyAssessments>> parsers = new ArrayList<>();
+                for (int i = 0; i + 1 < rowStarts.length; i++) {
+                    long start = rowStarts[i];
+                    long end = rowStarts[i + 1];
+                    if (start < end) {
+                        parsers.add(() -> parseChunk(channel, start, end));
+                    }
+                }
+                for (PropertyAssessments partial : runAll(parsers, executor)) { // merge in file order
+                    target.addAll(partial);
+                }
+            } finally {
+                if (executor != null) {
+                    executor.shutdownNow();
+                }
+            }
+        }
+    }
+
+    /**
+     * Split the data section of the file into evenly sized chunks, ignoring where rows end.
+     *
+     * @param dataStart offset of the first data row
+     * @param fileSize  size of the file
+     * @return the start offset of every chunk followed by the file size
+     */
+    private long[] rawChunkStarts(long dataStart, long fileSize) {
+        long dataSize = fileSize - dataStart;
+        if (dataSize <= 0) {
+            return new long[]{fileSize};
+        }
+
+        long chunkCount = threadCount == 1 ? 1 : (long) threadCount * CHUNKS_PER_THREAD;
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, (dataSize + chunkCount - 1) / chunkCount);
+        chunkSize = Math.min(chunkSize, Integer.MAX_VALUE / 2); // leave room to grow a chunk up to the next row
+        int count = (int) ((dataSize + chunkSize - 1) / chunkSize);
+
+        long[] starts = new long[count + 1];
+        for (int i = 0; i < count; i++) {
+            starts[i] = dataStart + i * chunkSize;
+        }
+        starts[count] = fileSize;
+        return starts;
+    }
+
+    /**
+     * Move every chunk start forward to the beginning of a row. A line break only ends a row when it is not
+     * inside a quoted cell, so the quotes of each chunk are counted in parallel first to know whether a chunk
+     * starts inside a quoted cell.
+     *
+     * @param channel   the open file channel
+     * @param rawStarts chunk start offsets followed by the file size
+     * @param executor  the executor to count quotes on, or null to count on this thread
+     * @return the row aligned start offsets followed by the file size
+     * @throws IOException if the file can't be read
+     */
+    private long[] rowAlignedStarts(FileChannel channel, long[] rawStarts, ExecutorService executor)
+            throws IOException {
+        int count = rawStarts.length - 1;
+        long[] starts = rawStarts.clone();
+        if (count <= 1) {
+            return starts;
+        }
+
+        List<Callable<Long>> counters = new ArrayList<>();
+        for (int i = 0; i < count - 1; i++) { // quotes after the last chunk start are never needed
+            long start = rawStarts[i];
+            long end = rawStarts[i + 1];
+            counters.add(() -> {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                return CsvRowTokenizer.countQuotes(buffer, 0, buffer.limit());
+            });
+        }
+        List<Long> quoteCounts = runAll(counters, executor);
+
+        long quotes = 0;
+        for (int i = 1; i < count; i++) {
+            quotes += quoteCounts.get(i - 1);
+            starts[i] = Math.max(starts[i - 1], nextRowStart(channel, rawStarts[i], (quotes & 1) == 1, starts[count]));
+        }
+        return starts;
+    }
+
+    /**
+     * Find the offset right after the next line break that ends a row.
+     *
+     * @param channel  the open file channel
+     * @param position offset to start searching from
+     * @param inQuotes true if the position is inside a quoted cell
+     * @param fileSize size of the file
+     * @return offset of the next row, or the file size if there is none
+     * @throws IOException if the file can't be read
+     */
+    private static long nextRowStart(FileChannel channel, long position, boolean inQuotes, long fileSize)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        while (position < fileSize) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (b == '"') {
+                    inQuotes = !inQuotes;
+                } else if (b == '\n' && !inQuotes) {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return fileSize;
+    }
+
+    /**
+     * Run tasks on the executor, or on this thread when there is no executor, and collect their results in order.
+     *
+     * @param tasks    the tasks to run
+     * @param executor the executor, may be null
+     * @param <T>      the result type
+     * @return the results in the same order as the tasks
+     * @throws IOException if a task failed or the thread was interrupted
+     */
+    private <T> List<T> runAll(List<Callable<T>> tasks, ExecutorService executor) throws IOException {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            if (executor == null) {
+                for (Callable<T> task : tasks) {
+                    results.add(task.call());
+                }
+                return results;
+            }
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading " + csvPath, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to parse " + csvPath, e.getCause());
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to parse " + csvPath, e);
+        }
+    }
+
+    /**
+     * Map a chunk of the file and parse every line in it.
+     *
+     * @param channel the open file channel
+     * @param start   offset of the first byte of the chunk
+     * @param end     offset right after the last byte of the chunk
+     * @return a partial PropertyAssessments holding the properties of the chunk in file order
+     * @throws IOException if the chunk can't be mapped
+     */
+    private PropertyAssessments parseChunk(FileChannel channel, long start, long end) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        PropertyAssessments partial = new PropertyAssessments();
+        CsvRowTokenizer row = new CsvRowTokenizer(buffer, Constants.NUM_COLUMNS);
+
+        while (row.nextRow()) {
+            rowParser.addPropertyAssessment(row, partial);
+        }
+        return partial;
+    }
+}
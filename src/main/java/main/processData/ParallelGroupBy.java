@@ -0,0 +1,423 @@
+package main.processData;
+
+import main.utility.GroupAggregate;
+import main.utility.GroupDimension;
+import main.utility.IntIntHashMap;
+import main.utility.PropertyAssessments;
+import main.utility.PropertyStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The ParallelGroupBy class counts and totals the assessed values of a list of rows grouped by several dimensions.
+ * The key of a row packs the dictionary code or value band of every dimension into one int, like the digits
+ * of a number, so rows are grouped without building a String. Lists at or above a threshold are split into
+ * ranges aggregated on the common ForkJoinPool, each range into a partial aggregate of its own, and the partial
+ * aggregates are merged as the ranges join. A small key space is aggregated in flat arrays indexed by key,
+ * a larger one in an IntIntHashMap from key to slot.
+ * <p>
+ * Author: Fahad Ali
+ */
+class ParallelGroupBy {
+    private static final int DENSE_GROUPS = 1 << 12;
+    private static final int MIN_RANGE = 1 << 12;
+    private static final int RANGES_PER_THREAD = 4;
+
+    private final PropertyStore store;
+    private final GroupDimension[] dimensions;
+    private final int[][] codeColumns;
+    private final int[] values;
+    private final int bandWidth;
+    private final int bandBase;
+    private final int[] radixes;
+    private final int[] strides;
+    private final int groupSpace;
+
+    /**
+     * Constructor for a ParallelGroupBy over the rows of a store.
+     *
+     * @param store      the PropertyStore holding the rows
+     * @param rows       the rows to group
+     * @param count      the number of rows used from the array
+     * @param bandWidth  the width of an assessed value band
+     * @param dimensions the dimensions to group by
+     */
+    private ParallelGroupBy(PropertyStore store, int[] rows, int count, int bandWidth, GroupDimension[] dimensions) {
+        this.store = store;
+        this.dimensions = dimensions;
+        this.values = store.intColumn(PropertyStore.ASSESSED_VALUE);
+        this.bandWidth = bandWidth;
+        this.codeColumns = new int[dimensions.length][];
+        this.radixes = new int[dimensions.length];
+        this.strides = new int[dimensions.length];
+
+        int lowestBand = 0;
+        int highestBand = 0;
+        for (int i = 0; i < count; i++) {
+            int band = Math.floorDiv(values[rows[i]], Math.max(1, bandWidth));
+            lowestBand = i == 0 ? band : Math.min(lowestBand, band);
+            highestBand = i == 0 ? band : Math.max(highestBand, band);
+        }
+        this.bandBase = lowestBand;
+
+        long space = 1;
+        for (int d = dimensions.length - 1; d >= 0; d--) {
+            if (dimensions[d].isText()) {
+                codeColumns[d] = store.codeColumn(dimensions[d].getColumn());
+                radixes[d] = Math.max(1, store.getDictionary(dimensions[d].getColumn()).size());
+            } else {
+                radixes[d] = highestBand - lowestBand + 1;
+            }
+            strides[d] = (int) space;
+            space *= radixes[d];
+            if (space > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many possible groups, group by fewer dimensions"
+                        + " or wider value bands");
+            }
+        }
+        this.groupSpace = (int) space;
+    }
+
+    /**
+     * Group a list of rows and total the assessed value of every group.
+     *
+     * @param assessments the rows to group
+     * @param bandWidth   the width of an assessed value band, only used when grouping by VALUE_BAND
+     * @param rollup      true to add a subtotal after the groups of every shorter prefix of the dimensions,
+     *                    and a grand total at the end
+     * @param dimensions  the dimensions to group by, in the order their keys are listed
+     * @param threshold   the number of rows from which the rows are grouped in parallel
+     * @return the groups that hold properties, ordered by their keys: names ignoring case and bands by value
+     * @throws IllegalArgumentException if a value band is not positive or the dimensions have too many possible groups
+     */
+    static List<GroupAggregate> groupBy(PropertyAssessments assessments, int bandWidth, boolean rollup,
+                                        GroupDimension[] dimensions, int threshold) {
+        if (bandWidth <= 0 && Arrays.asList(dimensions).contains(GroupDimension.VALUE_BAND)) {
+            throw new IllegalArgumentException("Value band width must be positive: " + bandWidth);
+        }
+        int[] rows = assessments.getRows();
+        int count = rows.length;
+        ParallelGroupBy groupBy = new ParallelGroupBy(assessments.getStore(), rows, count, bandWidth, dimensions);
+
+        Partial groups;
+        if (ParallelRowFilter.runsInParallel(count, threshold)) {
+            int rangeSize = Math.max(MIN_RANGE, count / (ForkJoinPool.getCommonPoolParallelism() * RANGES_PER_THREAD));
+            groups = ForkJoinPool.commonPool().invoke(groupBy.new GroupTask(rows, 0, count, rangeSize));
+        } else {
+            groups = groupBy.aggregate(rows, 0, count);
+        }
+        return groupBy.results(groups, rollup);
+    }
+
+    /**
+     * Aggregate a range of rows on the calling thread.
+     *
+     * @param rows the rows to group
+     * @param from the first position to group
+     * @param to   the position after the last one to group
+     * @return the partial aggregate of the range
+     */
+    private Partial aggregate(int[] rows, int from, int to) {
+        Partial partial = new Partial(groupSpace);
+        for (int i = from; i < to; i++) {
+            int row = rows[i];
+            int key = 0;
+            for (int d = 0; d < dimensions.length; d++) {
+                int component = codeColumns[d] != null ? codeColumns[d][row]
+                        : Math.floorDiv(values[row], bandWidth) - bandBase;
+                key += component * strides[d];
+            }
+            partial.add(key, values[row]);
+        }
+        return partial;
+    }
+
+    /**
+     * Turn the merged aggregate into groups sorted by their keys, with the subtotals of a rollup.
+     *
+     * @param groups the merged aggregate
+     * @param rollup true to add subtotals and a grand total
+     * @return the groups
+     */
+    private List<GroupAggregate> results(Partial groups, boolean rollup) {
+        List<int[]> components = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        for (int slot = 0; slot < groups.size; slot++) {
+            if (groups.counts[slot] > 0) {
+                int[] group = new int[dimensions.length];
+                for (int d = 0; d < dimensions.length; d++) {
+                    group[d] = groups.keys[slot] / strides[d] % radixes[d];
+                }
+                components.add(group);
+                slots.add(slot);
+            }
+        }
+        Integer[] order = new Integer[components.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Comparator<int[]> byKeys = this::compare;
+        Arrays.sort(order, (a, b) -> byKeys.compare(components.get(a), components.get(b)));
+
+        List<GroupAggregate> results = new ArrayList<>();
+        Partial subtotals = new Partial(dimensions.length); // slot l adds up the groups sharing l leading keys
+        int[] previous = null;
+        for (int i : order) {
+            int[] group = components.get(i);
+            int slot = slots.get(i);
+            if (rollup && previous != null) {
+                int same = 0;
+                while (group[same] == previous[same]) {
+                    same++;
+                }
+                flushSubtotals(subtotals, previous, same + 1, results);
+            }
+            results.add(aggregate(group, dimensions.length, groups, slot));
+            if (rollup) {
+                for (int level = 0; level < dimensions.length; level++) {
+                    subtotals.merge(level, groups, slot);
+                }
+            }
+            previous = group;
+        }
+        if (rollup && previous != null) {
+            flushSubtotals(subtotals, previous, 0, results);
+        }
+        return results;
+    }
+
+    /**
+     * Add the subtotals of the prefixes that ended to the results, the longest prefix first.
+     *
+     * @param subtotals the subtotal of every prefix length
+     * @param group     the keys of the last group of the prefixes
+     * @param shortest  the shortest prefix length that ended
+     * @param results   the results to add to
+     */
+    private void flushSubtotals(Partial subtotals, int[] group, int shortest, List<GroupAggregate> results) {
+        for (int level = dimensions.length - 1; level >= shortest; level--) {
+            results.add(aggregate(group, level, subtotals, level));
+            subtotals.counts[level] = 0;
+            subtotals.totals[level] = 0;
+        }
+    }
+
+    /**
+     * Build the GroupAggregate of one slot of an aggregate.
+     *
+     * @param group     the keys of the group
+     * @param keyCount  the number of leading keys the group has, the others are null
+     * @param aggregate the aggregate holding the slot
+     * @param slot      the slot
+     * @return the GroupAggregate
+     */
+    private GroupAggregate aggregate(int[] group, int keyCount, Partial aggregate, int slot) {
+        String[] keys = new String[dimensions.length];
+        for (int d = 0; d < keyCount; d++) {
+            keys[d] = name(d, group[d]);
+        }
+        return new GroupAggregate(keys, aggregate.counts[slot], aggregate.totals[slot],
+                aggregate.mins[slot], aggregate.maxs[slot]);
+    }
+
+    /**
+     * Get the name of a key, the dictionary value of a text dimension or the range of a value band.
+     *
+     * @param dimension the position of the dimension
+     * @param component the key in the dimension
+     * @return the name
+     */
+    private String name(int dimension, int component) {
+        if (dimensions[dimension].isText()) {
+            return store.getDictionary(dimensions[dimension].getColumn()).decode(component);
+        }
+        long low = (long) (bandBase + component) * bandWidth;
+        return low + "-" + (low + bandWidth - 1);
+    }
+
+    /**
+     * Compare the keys of two groups, names ignoring case and value bands by value.
+     *
+     * @param a the keys of a group
+     * @param b the keys of another group
+     * @return the order of the groups
+     */
+    private int compare(int[] a, int[] b) {
+        for (int d = 0; d < dimensions.length; d++) {
+            int order;
+            if (dimensions[d].isText()) {
+                String first = name(d, a[d]);
+                String second = name(d, b[d]);
+                order = String.CASE_INSENSITIVE_ORDER.compare(first, second);
+                order = order != 0 ? order : first.compareTo(second);
+            } else {
+                order = Integer.compare(a[d], b[d]);
+            }
+            if (order != 0) {
+                return order;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The count, total, minimum and maximum assessed value of every group seen by one range of rows.
+     */
+    private static final class Partial {
+        private final IntIntHashMap slotsByKey;
+        private int[] keys;
+        private int[] counts;
+        private long[] totals;
+        private int[] mins;
+        private int[] maxs;
+        private int size;
+
+        /**
+         * Constructor for an empty Partial.
+         *
+         * @param groupSpace the number of possible keys, small spaces get a slot for every key up front
+         */
+        Partial(int groupSpace) {
+            boolean dense = groupSpace <= DENSE_GROUPS;
+            int capacity = dense ? groupSpace : 16;
+            slotsByKey = dense ? null : new IntIntHashMap();
+            keys = new int[capacity];
+            counts = new int[capacity];
+            totals = new long[capacity];
+            mins = new int[capacity];
+            maxs = new int[capacity];
+            if (dense) {
+                for (int key = 0; key < capacity; key++) {
+                    keys[key] = key;
+                }
+                size = capacity;
+            }
+        }
+
+        /**
+         * Add the assessed value of a row to its group.
+         *
+         * @param key   the key of the group
+         * @param value the assessed value
+         */
+        void add(int key, int value) {
+            int slot = slotsByKey == null ? key : slot(key);
+            if (counts[slot]++ == 0) {
+                mins[slot] = value;
+                maxs[slot] = value;
+            } else if (value < mins[slot]) {
+                mins[slot] = value;
+            } else if (value > maxs[slot]) {
+                maxs[slot] = value;
+            }
+            totals[slot] += value;
+        }
+
+        /**
+         * Merge every group of another partial aggregate into this one.
+         *
+         * @param other the other partial aggregate
+         */
+        void merge(Partial other) {
+            for (int slot = 0; slot < other.size; slot++) {
+                if (other.counts[slot] > 0) {
+                    merge(slotsByKey == null ? other.keys[slot] : slot(other.keys[slot]), other, slot);
+                }
+            }
+        }
+
+        /**
+         * Merge one group of another aggregate into a slot.
+         *
+         * @param slot      the slot to merge into
+         * @param other     the aggregate holding the group
+         * @param otherSlot the slot of the group
+         */
+        void merge(int slot, Partial other, int otherSlot) {
+            if (counts[slot] == 0) {
+                mins[slot] = other.mins[otherSlot];
+                maxs[slot] = other.maxs[otherSlot];
+            } else {
+                mins[slot] = Math.min(mins[slot], other.mins[otherSlot]);
+                maxs[slot] = Math.max(maxs[slot], other.maxs[otherSlot]);
+            }
+            counts[slot] += other.counts[otherSlot];
+            totals[slot] += other.totals[otherSlot];
+        }
+
+        /**
+         * Get the slot of a key, adding an empty one the first time the key is seen.
+         *
+         * @param key the key of a group
+         * @return the slot
+         */
+        private int slot(int key) {
+            int slot = slotsByKey.get(key);
+            if (slot < 0) {
+                if (size == keys.length) {
+                    int capacity = size * 2;
+                    keys = Arrays.copyOf(keys, capacity);
+                    counts = Arrays.copyOf(counts, capacity);
+                    totals = Arrays.copyOf(totals, capacity);
+                    mins = Arrays.copyOf(mins, capacity);
+                    maxs = Arrays.copyOf(maxs, capacity);
+                }
+                slot = size++;
+                keys[slot] = key;
+                slotsByKey.put(key, slot);
+            }
+            return slot;
+        }
+    }
+
+    /**
+     * Splits a range of rows in halves until it is small enough to aggregate, then merges the partial aggregates.
+     */
+    @SuppressWarnings("serial") // tasks only run inside a ForkJoinPool and are never serialized
+    private class GroupTask extends RecursiveTask<Partial> {
+        private final int[] rows;
+        private final int from;
+        private final int to;
+        private final int rangeSize;
+
+        /**
+         * Constructor for a GroupTask.
+         *
+         * @param rows      the rows to group
+         * @param from      the first position to group
+         * @param to        the position after the last one to group
+         * @param rangeSize the largest range aggregated without splitting
+         */
+        GroupTask(int[] rows, int from, int to, int rangeSize) {
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.rangeSize = rangeSize;
+        }
+
+        /**
+         * Aggregate the range, splitting it when it is too large.
+         *
+         * @return the partial aggregate of the range
+         */
+        @Override
+        protected Partial compute() {
+            if (to - from <= rangeSize) {
+                return aggregate(rows, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            GroupTask left = new GroupTask(rows, from, middle, rangeSize);
+            GroupTask right = new GroupTask(rows, middle, to, rangeSize);
+            left.fork();
+            Partial rightGroups = right.compute();
+            Partial leftGroups = left.join();
+            leftGroups.merge(rightGroups);
+            return leftGroups;
+        }
+    }
+}
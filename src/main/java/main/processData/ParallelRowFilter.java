@@ -0,0 +1,135 @@
+package main.processData;
+
+import main.utility.PropertyStore;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The ParallelRowFilter class tests a list of rows against a RowTest and keeps the rows that pass, in their order.
+ * Lists at or above a threshold are split into ranges tested on the common ForkJoinPool and the matches of
+ * every range are joined back in range order, so the result is the same as a sequential pass.
+ * Smaller lists are tested on the calling thread.
+ * <p>
+ * Author: Fahad Ali
+ */
+class ParallelRowFilter {
+    static final int DEFAULT_THRESHOLD = 1 << 16;
+    private static final int MIN_RANGE = 1 << 12;
+    private static final int RANGES_PER_THREAD = 4;
+
+    /**
+     * Private constructor, this class only has static methods.
+     */
+    private ParallelRowFilter() {
+    }
+
+    /**
+     * Keep the rows that pass a test.
+     *
+     * @param store     the PropertyStore holding the rows
+     * @param rows      the rows to test
+     * @param count     the number of rows used from the array
+     * @param test      the test every row must pass
+     * @param threshold the number of rows from which the rows are tested in parallel
+     * @return the rows that passed in their original order, in a new array of exactly their length
+     */
+    static int[] filter(PropertyStore store, int[] rows, int count, QueryPlan.RowTest test, int threshold) {
+        if (!runsInParallel(count, threshold)) {
+            return filterRange(store, rows, 0, count, test);
+        }
+        int rangeSize = Math.max(MIN_RANGE, count / (ForkJoinPool.getCommonPoolParallelism() * RANGES_PER_THREAD));
+        return ForkJoinPool.commonPool().invoke(new FilterTask(store, rows, 0, count, test, rangeSize));
+    }
+
+    /**
+     * Check if a number of rows would be tested in parallel.
+     *
+     * @param count     the number of rows
+     * @param threshold the number of rows from which the rows are tested in parallel
+     * @return true if the rows are split across the common ForkJoinPool
+     */
+    static boolean runsInParallel(int count, int threshold) {
+        return count >= threshold && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
+    /**
+     * Test a range of rows on the calling thread.
+     *
+     * @param store the PropertyStore holding the rows
+     * @param rows  the rows to test
+     * @param from  the first position to test
+     * @param to    the position after the last one to test
+     * @param test  the test every row must pass
+     * @return the rows that passed in their original order
+     */
+    private static int[] filterRange(PropertyStore store, int[] rows, int from, int to, QueryPlan.RowTest test) {
+        int[] matches = new int[Math.min(16, to - from)];
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            int row = rows[i];
+            if (test.test(store, row)) {
+                if (count == matches.length) {
+                    matches = Arrays.copyOf(matches, Math.max(16, count * 2));
+                }
+                matches[count++] = row;
+            }
+        }
+        return count == matches.length ? matches : Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * Splits a range of rows in halves until it is small enough to test, then joins the matches in order.
+     */
+    @SuppressWarnings("serial") // tasks only run inside a ForkJoinPool and are never serialized
+    private static class FilterTask extends RecursiveTask<int[]> {
+        private final PropertyStore store;
+        private final int[] rows;
+        private final int from;
+        private final int to;
+        private final QueryPlan.RowTest test;
+        private final int rangeSize;
+
+        /**
+         * Constructor for a FilterTask.
+         *
+         * @param store     the PropertyStore holding the rows
+         * @param rows      the rows to test
+         * @param from      the first position to test
+         * @param to        the position after the last one to test
+         * @param test      the test every row must pass
+         * @param rangeSize the largest range tested without splitting
+         */
+        FilterTask(PropertyStore store, int[] rows, int from, int to, QueryPlan.RowTest test, int rangeSize) {
+            this.store = store;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.test = test;
+            this.rangeSize = rangeSize;
+        }
+
+        /**
+         * Test the range, splitting it when it is too large.
+         *
+         * @return the rows of the range that passed in their original order
+         */
+        @Override
+        protected int[] compute() {
+            if (to - from <= rangeSize) {
+                return filterRange(store, rows, from, to, test);
+            }
+            int middle = (from + to) >>> 1;
+            FilterTask left = new FilterTask(store, rows, from, middle, test, rangeSize);
+            FilterTask right = new FilterTask(store, rows, middle, to, test, rangeSize);
+            left.fork();
+            int[] rightMatches = right.compute();
+            int[] leftMatches = left.join();
+
+            int[] matches = Arrays.copyOf(leftMatches, leftMatches.length + rightMatches.length);
+            System.arraycopy(rightMatches, 0, matches, leftMatches.length, rightMatches.length);
+            return matches;
+        }
+    }
+}
@@ -1,15 +1,32 @@
 package main.processData;
 
+import main.index.AccountNumberIndex;
+import main.index.BitmapIndex;
+import main.index.CompletionTrie;
+import main.index.FuzzyNameIndex;
+import main.index.GeoGridIndex;
+import main.index.GroupStatisticsIndex;
+import main.index.QuantileSketchIndex;
+import main.index.RowIndex;
+import main.index.ScanKernels;
+import main.index.SortPermutation;
+import main.index.SortedIntIndex;
+import main.index.TrigramIndex;
 import main.utility.PropertyAssessment;
 import main.utility.PropertyAssessments;
 import main.utility.*;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * The ProcessData class is responsible for processing a CSV file containing property assessment data.
@@ -19,8 +36,55 @@ import java.util.stream.Collectors;
  * Author: Fahad Ali
  */
 public class ProcessData {
+    // {store column, CSV cell} pairs used to fill a PropertyStore row
+    private static final int[][] INT_CELLS = {
+            {PropertyStore.ACCOUNT_NUM, Constants.ACCOUNT_NUM_INDEX},
+            {PropertyStore.SUITE, Constants.SUITE_INDEX},
+            {PropertyStore.HOUSE_NUM, Constants.HOUSE_NUM_INDEX},
+            {PropertyStore.NEIGHBORHOOD_ID, Constants.NEIGHBORHOOD_ID_INDEX},
+            {PropertyStore.ASSESSED_VALUE, Constants.ASSESSED_VALUE_INDEX}
+    };
+    private static final int[][] DOUBLE_CELLS = {
+            {PropertyStore.ASSESSMENT_CLASS1_PERCENT, Constants.ASSESSMENT_CLASS1_PERCENT_INDEX},
+            {PropertyStore.ASSESSMENT_CLASS2_PERCENT, Constants.ASSESSMENT_CLASS2_PERCENT_INDEX},
+            {PropertyStore.ASSESSMENT_CLASS3_PERCENT, Constants.ASSESSMENT_CLASS3_PERCENT_INDEX}
+    };
+    private static final int[][] COORDINATE_CELLS = { // blank coordinates are stored as NaN
+            {PropertyStore.LATITUDE, Constants.LATITUDE_INDEX},
+            {PropertyStore.LONGITUDE, Constants.LONGITUDE_INDEX}
+    };
+    private static final int[][] TEXT_CELLS = {
+            {PropertyStore.STREET_NAME, Constants.STREET_NAME_INDEX},
+            {PropertyStore.GARAGE, Constants.GARAGE_INDEX},
+            {PropertyStore.NEIGHBORHOOD, Constants.NEIGHBORHOOD_NAME_INDEX},
+            {PropertyStore.WARD, Constants.WARD_INDEX},
+            {PropertyStore.ASSESSMENT_CLASS1, Constants.ASSESSMENT_CLASS1_INDEX},
+            {PropertyStore.ASSESSMENT_CLASS2, Constants.ASSESSMENT_CLASS2_INDEX},
+            {PropertyStore.ASSESSMENT_CLASS3, Constants.ASSESSMENT_CLASS3_INDEX}
+    };
+    // ranges holding more than 1 / SCAN_FRACTION of the rows are scanned instead of sorted out of the index
+    private static final int SCAN_FRACTION = 16;
+    // edits allowed per word when a search that found nothing is corrected
+    public static final int TYPO_DISTANCE = 2;
+
     private final String csvFileName;
     private final PropertyAssessments propertyAssessments;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private boolean useSnapshot = true;
+    private int parallelThreshold = ParallelRowFilter.DEFAULT_THRESHOLD;
+    private BitmapIndex neighborhoodIndex;
+    private BitmapIndex assessmentClassIndex;
+    private SortedIntIndex assessedValueIndex;
+    private TrigramIndex addressIndex;
+    private AccountNumberIndex accountIndex;
+    private GeoGridIndex locationIndex;
+    private final EnumMap<PropertyGroup, GroupStatisticsIndex> statisticsIndexes = new EnumMap<>(PropertyGroup.class);
+    private QuantileSketchIndex quantileIndex;
+    private final FuzzyNameIndex[] nameIndexes = new FuzzyNameIndex[PropertyStore.TEXT_COLUMNS];
+    private final EnumMap<CompletionField, CompletionTrie> completionTries = new EnumMap<>(CompletionField.class);
+    private PropertyAssessments completedAssessments;
+    private long completedVersion;
+    private final EnumMap<PropertySortKey, SortPermutation> sortPermutations = new EnumMap<>(PropertySortKey.class);
 
     /**
      * Constructor for the ProcessFile class
@@ -29,7 +93,7 @@ public class ProcessData {
      */
     public ProcessData(String csvFileName) {
         this.csvFileName = csvFileName;
-        this.propertyAssessments = new PropertyAssessments(new ArrayList<>()); // create a PropertyAssessments object
+        this.propertyAssessments = new PropertyAssessments(); // create a PropertyAssessments object
     }
 
     /**
@@ -38,91 +102,218 @@ public class ProcessData {
      */
     public ProcessData() {
         this.csvFileName = null;
-        this.propertyAssessments = new PropertyAssessments(new ArrayList<>());
+        this.propertyAssessments = new PropertyAssessments();
+    }
+
+    /**
+     * Constructor for the ProcessFile class with a set number of threads used to parse the file.
+     *
+     * @param csvFileName a CSV file with the proper formatting
+     * @param threadCount the number of threads used by processFile
+     */
+    public ProcessData(String csvFileName, int threadCount) {
+        this(csvFileName);
+        setThreadCount(threadCount);
+    }
+
+    /**
+     * Set the number of threads used to parse the CSV file. Defaults to the number of available processors.
+     *
+     * @param threadCount the number of threads, values below 1 are treated as 1
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    /**
+     * Set the number of rows from which filters test rows in parallel on the common ForkJoinPool.
+     * Smaller lists are tested on the calling thread, the results are in the same order either way.
+     *
+     * @param parallelThreshold the number of rows, values below 1 are treated as 1
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = Math.max(1, parallelThreshold);
+    }
+
+    /**
+     * Set whether processFile may load from and save to a binary snapshot next to the CSV file. Defaults to true.
+     *
+     * @param useSnapshot true to use the snapshot
+     */
+    public void setUseSnapshot(boolean useSnapshot) {
+        this.useSnapshot = useSnapshot;
     }
 
     /**
      * Process the CSV file, parsing each line and creating PropertyAssessment objects.
      * Skips the first line in the CSV as it contains titles.
+     * The file is memory mapped and parsed in chunks on multiple threads, the properties keep their file order.
+     * When an up-to-date snapshot of the CSV exists it is loaded instead, otherwise one is written after parsing.
+     * Only the account number, neighborhood, assessment class and assessed value indexes are built once the
+     * properties are loaded, the other indexes are built the first time a search needs them.
      */
     public void processFile() {
         try {
             assert csvFileName != null;
-            try (BufferedReader fileReader = new BufferedReader(new FileReader(csvFileName))) {
-                fileReader.readLine(); // Skip the first line in CSV as they are titles
-                String line;
-
-                while ((line = fileReader.readLine()) != null) { // read until end of file
-                    String[] cell = line.split(",", Constants.NUM_COLUMNS);
-                    PropertyAssessment property = getPropertyAssessment(cell);
-                    addAssessment(property); // add parsed property to PropertyAssessments object
+            Path csvPath = Path.of(csvFileName);
+            if (!useSnapshot || !PropertySnapshot.read(csvPath, propertyAssessments)) {
+                new ParallelCsvLoader(csvPath, threadCount, this).load(propertyAssessments);
+                if (useSnapshot) {
+                    saveSnapshot(csvPath);
                 }
             }
         } catch (IOException e) {
             handleFileOpenError(); // handle error
         }
+        buildIndexes();
+    }
+
+    /**
+     * Build the indexes used to filter the loaded properties by account number, neighborhood, assessment class
+     * and assessed value. The address and location indexes, the group statistics, the fuzzy name indexes and
+     * the completions are built when they are first used, so loading stays fast.
+     * The four indexes are independent and are built in parallel on the common ForkJoinPool.
+     */
+    private void buildIndexes() {
+        PropertyStore store = propertyAssessments.getStore();
+        ForkJoinTask<?>[] builds = {
+                ForkJoinTask.adapt(() -> neighborhoodIndex = new BitmapIndex(store, PropertyStore.NEIGHBORHOOD)),
+                ForkJoinTask.adapt(() -> assessmentClassIndex = new BitmapIndex(store, PropertyStore.ASSESSMENT_CLASS1,
+                        PropertyStore.ASSESSMENT_CLASS2, PropertyStore.ASSESSMENT_CLASS3)),
+                ForkJoinTask.adapt(() -> assessedValueIndex = new SortedIntIndex(store, PropertyStore.ASSESSED_VALUE)),
+                ForkJoinTask.adapt(() -> accountIndex = new AccountNumberIndex(store))
+        };
+        if (threadCount > 1) {
+            ForkJoinTask.invokeAll(builds);
+        } else {
+            for (ForkJoinTask<?> build : builds) {
+                build.invoke();
+            }
+        }
     }
 
     /**
-     * Parses a CSV row and creates a PropertyAssessment object.
+     * Get the address trigram index of the loaded properties, built the first time an address is searched
+     * and again once properties were added.
      *
-     * @param cell an array of strings representing the CSV row
-     * @return a PropertyAssessment object
+     * @return the up to date index
      */
-    public PropertyAssessment getPropertyAssessment(String[] cell) {
-        // this method creates a single property object by properly parsing and creating "sub" objects
-        int accountNum = parseInt(cell[Constants.ACCOUNT_NUM_INDEX]);
-        int suite = parseInt(cell[Constants.SUITE_INDEX]);
-        int houseNum = parseInt(cell[Constants.HOUSE_NUM_INDEX]);
-        int neighborhoodID = parseInt(cell[Constants.NEIGHBORHOOD_ID_INDEX]);
-        int assessedValue = parseInt(cell[Constants.ASSESSED_VALUE_INDEX]);
-        double assessmentClass1Percent = parseDouble(cell[Constants.ASSESSMENT_CLASS1_PERCENT_INDEX]);
-        double assessmentClass2Percent = parseDouble(cell[Constants.ASSESSMENT_CLASS2_PERCENT_INDEX]);
-        double assessmentClass3Percent = parseDouble(cell[Constants.ASSESSMENT_CLASS3_PERCENT_INDEX]);
+    private synchronized TrigramIndex addressIndex() {
+        PropertyStore store = propertyAssessments.getStore();
+        if (addressIndex == null || !addressIndex.covers(store)) {
+            addressIndex = new TrigramIndex(store, ProcessData::normalizedAddress);
+        }
+        return addressIndex;
+    }
 
-        BuildingInformation buildingInfo = new BuildingInformation(accountNum, suite, houseNum,
-                cell[Constants.STREET_NAME_INDEX], cell[Constants.GARAGE_INDEX]);
+    /**
+     * Get the address trigram index if it was already built over every row of a store, without building it.
+     *
+     * @param store the PropertyStore of the rows to test
+     * @return the index, or null if it does not cover the store
+     */
+    private synchronized TrigramIndex coveringAddressIndex(PropertyStore store) {
+        return addressIndex != null && addressIndex.covers(store) ? addressIndex : null;
+    }
 
-        NeighborhoodInfo neighborhoodInfo = new NeighborhoodInfo(neighborhoodID,
-                cell[Constants.NEIGHBORHOOD_NAME_INDEX], cell[Constants.WARD_INDEX], assessedValue);
+    /**
+     * Get the location grid index of the loaded properties, built the first time an area or comparable
+     * properties are searched and again once properties were added.
+     *
+     * @return the up to date index
+     */
+    private synchronized GeoGridIndex locationIndex() {
+        PropertyStore store = propertyAssessments.getStore();
+        if (locationIndex == null || !locationIndex.covers(store)) {
+            locationIndex = new GeoGridIndex(store);
+        }
+        return locationIndex;
+    }
 
-        Location location = new Location(cell[Constants.LATITUDE_INDEX], cell[Constants.LONGITUDE_INDEX]);
+    /**
+     * Save a snapshot of the parsed CSV, failing to do so only costs the next load its speed up.
+     *
+     * @param csvPath the CSV file that was parsed
+     */
+    private void saveSnapshot(Path csvPath) {
+        try {
+            PropertySnapshot.write(csvPath, propertyAssessments);
+        } catch (IOException e) {
+            System.err.println("Error: Can't write snapshot for " + csvFileName);
+        }
+    }
 
-        AssessmentClass assessmentClass = new AssessmentClass(assessmentClass1Percent, assessmentClass2Percent,
-                assessmentClass3Percent, cell[Constants.ASSESSMENT_CLASS1_INDEX],
-                cell[Constants.ASSESSMENT_CLASS2_INDEX], cell[Constants.ASSESSMENT_CLASS3_INDEX]);
+    /**
+     * Parses a CSV row and adds it as a property to the PropertyAssessments.
+     *
+     * @param cell   an array of strings representing the CSV row
+     * @param target the PropertyAssessments the property is added to
+     * @return a PropertyAssessment object
+     */
+    public PropertyAssessment addPropertyAssessment(String[] cell, PropertyAssessments target) {
+        // this method creates a single property row by properly parsing every cell into its column
+        PropertyStore store = target.getStore();
+        int row = store.newRow();
+        for (int[] column : INT_CELLS) {
+            store.setInt(column[0], row, parseInt(cell[column[1]]));
+        }
+        for (int[] column : DOUBLE_CELLS) {
+            store.setDouble(column[0], row, parseDouble(cell[column[1]]));
+        }
+        for (int[] column : COORDINATE_CELLS) {
+            String value = cell[column[1]];
+            store.setDouble(column[0], row, value == null || value.isBlank() ? Double.NaN : parseDouble(value));
+        }
+        for (int[] column : TEXT_CELLS) {
+            store.setText(column[0], row, cell[column[1]]);
+        }
+        target.addRow(row);
+        return new PropertyAssessment(store, row);
+    }
 
-        return new PropertyAssessment(buildingInfo, neighborhoodInfo, location, assessmentClass);
+    /**
+     * Adds the current row of a CsvRowTokenizer as a property to the PropertyAssessments.
+     * Numeric cells are parsed straight from the file bytes.
+     *
+     * @param cells  a CsvRowTokenizer positioned on a CSV row
+     * @param target the PropertyAssessments the property is added to
+     */
+    public void addPropertyAssessment(CsvRowTokenizer cells, PropertyAssessments target) {
+        PropertyStore store = target.getStore();
+        int row = store.newRow();
+        for (int[] column : INT_CELLS) {
+            store.setInt(column[0], row, cells.getInt(column[1]));
+        }
+        for (int[] column : DOUBLE_CELLS) {
+            store.setDouble(column[0], row, cells.getDouble(column[1]));
+        }
+        for (int[] column : COORDINATE_CELLS) {
+            store.setDouble(column[0], row, cells.isBlank(column[1]) ? Double.NaN : cells.getDouble(column[1]));
+        }
+        for (int[] column : TEXT_CELLS) {
+            store.setText(column[0], row, cells.getString(column[1]));
+        }
+        target.addRow(row);
     }
 
     /**
-     * Parse a string into an integer and handle errors.
+     * Parse a string into an integer, blank or malformed values give 0.
      *
      * @param value a string to be parsed
      * @return the parsed integer
      */
     private static int parseInt(String value) {
-        // this method turns the string into an int and handles errors
-        try {
-            return Integer.parseInt(value.trim());
-        } catch (NumberFormatException e) {
-            return 0;
-        }
+        return CsvRowTokenizer.parseInt(value);
     }
 
     /**
-     * Parse a string into a double and handle errors.
+     * Parse a string into a double, blank or malformed values give 0.0.
      *
      * @param value a string to be parsed
      * @return the parsed double
      */
     private static double parseDouble(String value) {
-        // this method turns the string into a double and handles errors
-        try {
-            return Double.parseDouble(value.trim());
-        } catch (NumberFormatException e) {
-            return 0.0;
-        }
+        return CsvRowTokenizer.parseDouble(value);
     }
 
     /**
@@ -134,68 +325,133 @@ public class ProcessData {
     }
 
     /**
-     * Add a PropertyAssessment object to the PropertyAssessments list of PropertyAssessment objects.
+     * Check if the account number of a property finds the provided account number digits.
+     * The digits are compared with integer arithmetic, no string is built for the property.
      *
-     * @param property the PropertyAssessment to be added
+     * @param store       the PropertyStore holding the property
+     * @param row         the row of the property to check
+     * @param query       the value of the account number digits to compare with
+     * @param queryDigits the number of digits to compare with, or -1 if the input is not a number
+     * @return true if the account number contains the digits. Else, false
      */
-    private void addAssessment(PropertyAssessment property) {
-        // this method will hash and add a property object to the PropertyAssessments instance
-        propertyAssessments.hashProperty(property);
-        propertyAssessments.addList(property);
+    private boolean findAccountNum(PropertyStore store, int row, long query, int queryDigits) {
+        return AccountNumberIndex.contains(store.getAccountNum(row), query, queryDigits);
     }
 
     /**
-     * Check if the account number of a PropertyAssessment finds the provided account number.
+     * Build the test a neighborhood name must pass to match the provided neighborhood, ignoring case.
      *
-     * @param property   the PropertyAssessment to check
-     * @param accountNum the account number to compare with
-     * @return true if the account number matches or if the provided account number is null. Else, false
+     * @param neighborhood the neighborhood to compare with
+     * @return a test on neighborhood names, or null if the provided neighborhood is null
      */
-    private boolean findAccountNum(PropertyAssessment property, String accountNum) {
-        return accountNum == null || String.valueOf(property.getBuildingInfo().getAccountNum()).contains(accountNum);
+    private static Predicate<String> neighborhoodTest(String neighborhood) {
+        if (neighborhood == null) {
+            return null;
+        }
+        String query = neighborhood.toLowerCase();
+        return name -> name.toLowerCase().contains(query);
     }
 
     /**
-     * Check if the neighborhood of a PropertyAssessment finds the provided neighborhood.
+     * Build the test an assessment class must pass to match the provided assessment class, ignoring case.
      *
-     * @param property     the PropertyAssessment to check
-     * @param neighborhood the neighborhood to compare with
-     * @return true if the neighborhood matches or if the provided neighborhood is null. Else, false
+     * @param assessmentClass the assessment class to compare with
+     * @return a test on assessment classes, or null if the provided assessment class is null
      */
-    private boolean findNeighborhood(PropertyAssessment property, String neighborhood) {
-        return neighborhood == null || property.getNeighborhoodInfo().getNeighborhood().toLowerCase()
-                .contains(neighborhood.toLowerCase());
+    private static Predicate<String> assessmentClassTest(String assessmentClass) {
+        return assessmentClass == null ? null : assessmentClass::equalsIgnoreCase;
     }
 
     /**
-     * Check if the assessment class of a PropertyAssessment finds the provided assessment class.
+     * Get the dictionary codes of a text column whose values pass a test.
      *
-     * @param property        the PropertyAssessment to check
-     * @param assessmentClass the assessment class to compare with
-     * @return true if the assessment class matches or if the provided assessment class is null.
-     * Else, false
+     * @param store  the PropertyStore the codes belong to
+     * @param column the text column constant
+     * @param test   the test on column values, may be null
+     * @return a bitmap of matching codes, or null if the test is null
+     */
+    private static BitSet matchingCodes(PropertyStore store, int column, Predicate<String> test) {
+        return test == null ? null : BitmapIndex.codesMatching(store.getDictionary(column), test);
+    }
+
+    /**
+     * Check if the neighborhood of a property is one of the matching neighborhoods.
+     *
+     * @param store             the PropertyStore holding the property
+     * @param row               the row of the property to check
+     * @param neighborhoodCodes the codes of the matching neighborhoods
+     * @return true if the neighborhood matches or if there are no codes to match. Else, false
+     */
+    private boolean findNeighborhood(PropertyStore store, int row, BitSet neighborhoodCodes) {
+        return neighborhoodCodes == null || neighborhoodCodes.get(store.getCode(PropertyStore.NEIGHBORHOOD, row));
+    }
+
+    /**
+     * Check if any assessment class of a property is one of the matching assessment classes.
+     *
+     * @param store      the PropertyStore holding the property
+     * @param row        the row of the property to check
+     * @param classCodes the codes of the matching assessment classes
+     * @return true if an assessment class matches or if there are no codes to match. Else, false
      */
-    private boolean findAssessmentClass(PropertyAssessment property, String assessmentClass) {
-        return assessmentClass == null ||
-                property.getAssessmentClass().getAssessmentClass1().equalsIgnoreCase(assessmentClass) ||
-                property.getAssessmentClass().getAssessmentClass2().equalsIgnoreCase(assessmentClass) ||
-                property.getAssessmentClass().getAssessmentClass3().equalsIgnoreCase(assessmentClass);
+    private boolean findAssessmentClass(PropertyStore store, int row, BitSet classCodes) {
+        return classCodes == null ||
+                classCodes.get(store.getCode(PropertyStore.ASSESSMENT_CLASS1, row)) ||
+                classCodes.get(store.getCode(PropertyStore.ASSESSMENT_CLASS2, row)) ||
+                classCodes.get(store.getCode(PropertyStore.ASSESSMENT_CLASS3, row));
     }
 
     /**
-     * Check if the address of a PropertyAssessment finds the provided address.
+     * Check if the address of a property finds the provided address.
      *
-     * @param property the PropertyAssessment to check
-     * @param address  the address to compare with
+     * @param store        the PropertyStore holding the property
+     * @param row          the row of the property to check
+     * @param addressQuery the address to compare with, normalized with normalizeAddressQuery
      * @return true if the address matches or if the provided address is null. Else, false
      */
-    private boolean findAddress(PropertyAssessment property, String address) {
-        String concatenatedAddress = (((property.getBuildingInfo().getSuite() + " " +
-                property.getBuildingInfo().getHouseNum()).toUpperCase() + " " +
-                property.getBuildingInfo().getStreetName()).toUpperCase().trim().replace(" ", ""));
+    private boolean findAddress(PropertyStore store, int row, String addressQuery) {
+        return addressQuery == null || normalizedAddress(store, row).contains(addressQuery);
+    }
+
+    /**
+     * Build the test an address must pass to contain an address search. Rows of a store the address index
+     * already covers are compared against the text the index keeps, so no address string is built per row.
+     *
+     * @param store        the PropertyStore holding the rows to test
+     * @param addressQuery the address to compare with, normalized with normalizeAddressQuery, or null for any
+     * @return the test
+     */
+    private QueryPlan.RowTest addressTest(PropertyStore store, String addressQuery) {
+        TrigramIndex index = coveringAddressIndex(store);
+        if (index == null || addressQuery == null) {
+            return (s, row) -> findAddress(s, row, addressQuery);
+        }
+        char[] pattern = addressQuery.toCharArray();
+        return (s, row) -> index.rowContains(row, pattern);
+    }
+
+    /**
+     * Get the address of a property in the form addresses are searched in: suite, house number and street name
+     * upper-cased with every space removed.
+     *
+     * @param store the PropertyStore holding the property
+     * @param row   the row of the property
+     * @return the normalized address
+     */
+    private static String normalizedAddress(PropertyStore store, int row) {
+        return (((store.getInt(PropertyStore.SUITE, row) + " " +
+                store.getInt(PropertyStore.HOUSE_NUM, row)).toUpperCase() + " " +
+                store.getText(PropertyStore.STREET_NAME, row)).toUpperCase().trim().replace(" ", ""));
+    }
 
-        return address == null ||
-                concatenatedAddress.contains(address.toUpperCase().replace(" ", ""));
+    /**
+     * Normalize an address search the same way as the addresses it is compared with.
+     *
+     * @param address the address to search for
+     * @return the normalized address, or null if the provided address is null
+     */
+    private static String normalizeAddressQuery(String address) {
+        return address == null ? null : address.toUpperCase().replace(" ", "");
     }
 
     /**
@@ -212,46 +468,417 @@ public class ProcessData {
      */
     public PropertyAssessments filters(String accountNum, String neighborhood, String assessmentClass, String address,
                                        int minAssessedValue, int maxAssessedValue, PropertyAssessments customPropertyAssessments) {
+        return filters(accountNum, neighborhood, assessmentClass, address, minAssessedValue, maxAssessedValue, null,
+                customPropertyAssessments);
+    }
+
+    /**
+     * Apply multiple filters to the property assessments based on specified criteria and a location area.
+     *
+     * @param accountNum                the account number to filter
+     * @param neighborhood              the neighborhood to filter
+     * @param assessmentClass           the assessment class to filter
+     * @param address                   the address to filter
+     * @param minAssessedValue          the minimum assessed value to filter
+     * @param maxAssessedValue          the maximum assessed value to filter
+     * @param area                      the area the properties must be located in, or null for anywhere
+     * @param customPropertyAssessments a custom PropertyAssessments object to filter
+     * @return a filtered PropertyAssessments object
+     */
+    public PropertyAssessments filters(String accountNum, String neighborhood, String assessmentClass, String address,
+                                       int minAssessedValue, int maxAssessedValue, GeoArea area,
+                                       PropertyAssessments customPropertyAssessments) {
+        return planFilters(accountNum, neighborhood, assessmentClass, address,
+                minAssessedValue, maxAssessedValue, area, customPropertyAssessments).execute();
+    }
+
+    /**
+     * Apply multiple filters like filters() and describe the plan that ran, with the rows every step touched.
+     *
+     * @param accountNum                the account number to filter
+     * @param neighborhood              the neighborhood to filter
+     * @param assessmentClass           the assessment class to filter
+     * @param address                   the address to filter
+     * @param minAssessedValue          the minimum assessed value to filter
+     * @param maxAssessedValue          the maximum assessed value to filter
+     * @param customPropertyAssessments a custom PropertyAssessments object to filter
+     * @return a description of the plan, one line per step
+     */
+    public String explainFilters(String accountNum, String neighborhood, String assessmentClass, String address,
+                                 int minAssessedValue, int maxAssessedValue, PropertyAssessments customPropertyAssessments) {
+        return explainFilters(accountNum, neighborhood, assessmentClass, address, minAssessedValue, maxAssessedValue,
+                null, customPropertyAssessments);
+    }
+
+    /**
+     * Apply multiple filters and a location area like filters() and describe the plan that ran.
+     *
+     * @param accountNum                the account number to filter
+     * @param neighborhood              the neighborhood to filter
+     * @param assessmentClass           the assessment class to filter
+     * @param address                   the address to filter
+     * @param minAssessedValue          the minimum assessed value to filter
+     * @param maxAssessedValue          the maximum assessed value to filter
+     * @param area                      the area the properties must be located in, or null for anywhere
+     * @param customPropertyAssessments a custom PropertyAssessments object to filter
+     * @return a description of the plan, one line per step
+     */
+    public String explainFilters(String accountNum, String neighborhood, String assessmentClass, String address,
+                                 int minAssessedValue, int maxAssessedValue, GeoArea area,
+                                 PropertyAssessments customPropertyAssessments) {
+        QueryPlan plan = planFilters(accountNum, neighborhood, assessmentClass, address,
+                minAssessedValue, maxAssessedValue, area, customPropertyAssessments);
+        plan.execute();
+        return plan.explain();
+    }
+
+    /**
+     * Build the plan for multiple filters. Every provided filter becomes a step, with its index when the
+     * loaded properties are filtered, so the plan can start from the most selective one.
+     *
+     * @param accountNum                the account number to filter
+     * @param neighborhood              the neighborhood to filter
+     * @param assessmentClass           the assessment class to filter
+     * @param address                   the address to filter
+     * @param minAssessedValue          the minimum assessed value to filter
+     * @param maxAssessedValue          the maximum assessed value to filter
+     * @param area                      the area the properties must be located in, or null for anywhere
+     * @param customPropertyAssessments a custom PropertyAssessments object to filter
+     * @return the plan, not yet run
+     */
+    private QueryPlan planFilters(String accountNum, String neighborhood, String assessmentClass, String address,
+                                  int minAssessedValue, int maxAssessedValue, GeoArea area,
+                                  PropertyAssessments customPropertyAssessments) {
+        PropertyAssessments assessments = (customPropertyAssessments != null) ? customPropertyAssessments : propertyAssessments;
+        PropertyStore store = assessments.getStore();
+        boolean indexed = isIndexed(assessments, neighborhoodIndex) && isIndexed(assessments, assessmentClassIndex)
+                && isIndexed(assessments, assessedValueIndex) && isIndexed(assessments, accountIndex);
+        QueryPlan plan = new QueryPlan(assessments, indexed, parallelThreshold);
+
+        if (accountNum != null) {
+            // parse the digits once, every row is then compared as a number
+            int queryDigits = AccountNumberIndex.digitCount(accountNum);
+            long query = queryDigits > 0 ? Long.parseLong(accountNum) : 0;
+            QueryPlan.RowTest test = (s, row) -> findAccountNum(s, row, query, queryDigits);
+            String description = "account number contains \"" + accountNum + "\"";
+            plan.add(indexed
+                    ? new QueryPlan.Step(description, () -> accountIndex.estimate(accountNum),
+                    () -> accountIndex.rowsContaining(accountNum), test)
+                    : new QueryPlan.Step(description, test));
+        }
+
+        // match the neighborhood and assessment class against the dictionaries once, not every row
+        Predicate<String> neighborhoodTest = neighborhoodTest(neighborhood);
+        if (neighborhoodTest != null) {
+            BitSet codes = matchingCodes(store, PropertyStore.NEIGHBORHOOD, neighborhoodTest);
+            QueryPlan.RowTest test = (s, row) -> findNeighborhood(s, row, codes);
+            String description = "neighborhood contains \"" + neighborhood + "\"";
+            plan.add(indexed
+                    ? new QueryPlan.Step(description, () -> neighborhoodIndex.countMatching(neighborhoodTest),
+                    () -> BitmapIndex.toRows(neighborhoodIndex.rowsMatching(neighborhoodTest)), test)
+                    : new QueryPlan.Step(description, test));
+        }
+
+        Predicate<String> classTest = assessmentClassTest(assessmentClass);
+        if (classTest != null) {
+            BitSet codes = matchingCodes(store, PropertyStore.ASSESSMENT_CLASS1, classTest);
+            QueryPlan.RowTest test = (s, row) -> findAssessmentClass(s, row, codes);
+            String description = "assessment class is \"" + assessmentClass + "\"";
+            plan.add(indexed
+                    ? new QueryPlan.Step(description, () -> assessmentClassIndex.countMatching(classTest),
+                    () -> BitmapIndex.toRows(assessmentClassIndex.rowsMatching(classTest)), test)
+                    : new QueryPlan.Step(description, test));
+        }
+
+        String addressQuery = normalizeAddressQuery(address);
+        if (addressQuery != null) {
+            String description = "address contains \"" + addressQuery + "\"";
+            if (indexed) {
+                TrigramIndex index = addressIndex();
+                plan.add(new QueryPlan.Step(description, () -> index.estimate(addressQuery),
+                        () -> index.rowsContaining(addressQuery), addressTest(store, addressQuery)));
+            } else {
+                plan.add(new QueryPlan.Step(description, addressTest(store, addressQuery)));
+            }
+        }
+
+        QueryPlan.RowTest rangeTest = (s, row) -> findAssessedRange(s, row, minAssessedValue, maxAssessedValue);
+        String rangeDescription = "assessed value from " + minAssessedValue + " to " + maxAssessedValue;
+        plan.add(indexed
+                ? new QueryPlan.Step(rangeDescription,
+                () -> assessedValueIndex.countInRange(minAssessedValue, maxAssessedValue),
+                () -> assessedValueRows(minAssessedValue, maxAssessedValue), rangeTest)
+                : new QueryPlan.Step(rangeDescription, rangeTest));
+
+        if (area != null) {
+            QueryPlan.RowTest test = (s, row) -> findArea(s, row, area);
+            plan.add(indexed
+                    ? new QueryPlan.Step("location " + area, () -> estimateInArea(area), () -> rowsInArea(area), test)
+                    : new QueryPlan.Step("location " + area, test));
+        }
+        return plan;
+    }
+
+    /**
+     * Apply a compiled filter expression to the property assessments.
+     *
+     * @param filter                    the filter, it can be reused for any PropertyAssessments
+     * @param customPropertyAssessments a custom PropertyAssessments object to filter (optional)
+     * @return a filtered PropertyAssessments object
+     */
+    public PropertyAssessments filter(PropertyFilter filter, PropertyAssessments customPropertyAssessments) {
+        return planFilter(filter, customPropertyAssessments).execute();
+    }
+
+    /**
+     * Apply a compiled filter expression like filter() and describe the plan that ran.
+     *
+     * @param filter                    the filter
+     * @param customPropertyAssessments a custom PropertyAssessments object to filter (optional)
+     * @return a description of the plan, one line per step
+     */
+    public String explainFilter(PropertyFilter filter, PropertyAssessments customPropertyAssessments) {
+        QueryPlan plan = planFilter(filter, customPropertyAssessments);
+        plan.execute();
+        return plan.explain();
+    }
 
+    /**
+     * Build the plan for a filter expression. Every part of a top level AND becomes a step bound to the store.
+     * When the loaded properties are filtered, assessed value ranges use the sorted index, account numbers LIKE
+     * '%digits%' use the account number index and equal, IN and LIKE comparisons of the neighborhood and
+     * assessment class use the bitmap indexes.
+     *
+     * @param filter                    the filter
+     * @param customPropertyAssessments a custom PropertyAssessments object to filter (optional)
+     * @return the plan, not yet run
+     */
+    private QueryPlan planFilter(PropertyFilter filter, PropertyAssessments customPropertyAssessments) {
         PropertyAssessments assessments = (customPropertyAssessments != null) ? customPropertyAssessments : propertyAssessments;
+        PropertyStore store = assessments.getStore();
+        boolean indexed = isIndexed(assessments, neighborhoodIndex) && isIndexed(assessments, assessmentClassIndex)
+                && isIndexed(assessments, assessedValueIndex) && isIndexed(assessments, accountIndex);
+        QueryPlan plan = new QueryPlan(assessments, indexed, parallelThreshold);
 
-        List<PropertyAssessment> filteredList = assessments.getPropertyAssessmentList()
-                .stream()
-                .filter(propertyAssessment ->
-                        findAccountNum(propertyAssessment, accountNum) &&
-                                findNeighborhood(propertyAssessment, neighborhood) &&
-                                findAssessmentClass(propertyAssessment, assessmentClass) &&
-                                findAddress(propertyAssessment, address) &&
-                                findAssessedRange(propertyAssessment, minAssessedValue, maxAssessedValue))
-                .collect(Collectors.toList());
+        for (PropertyFilter part : filter.conjuncts()) {
+            String description = part.toString();
+            QueryPlan.RowTest test = part.bind(store);
+            if (indexed && part instanceof PropertyFilter.Comparison) {
+                PropertyFilter.Comparison comparison = (PropertyFilter.Comparison) part;
+                PropertyFilter.Field field = comparison.getField();
+                int[] range = comparison.numberRange();
+                if (field == PropertyFilter.Field.VALUE && range != null) {
+                    plan.add(new QueryPlan.Step(description, () -> assessedValueIndex.countInRange(range[0], range[1]),
+                            () -> assessedValueRows(range[0], range[1]), test));
+                    continue;
+                }
+                String digits = comparison.containedDigits();
+                if (field == PropertyFilter.Field.ACCOUNT && digits != null && !comparison.isNegated()) {
+                    plan.add(new QueryPlan.Step(description, () -> accountIndex.estimate(digits),
+                            () -> accountIndex.rowsContaining(digits), test));
+                    continue;
+                }
+                BitmapIndex index = field == PropertyFilter.Field.NEIGHBOURHOOD ? neighborhoodIndex
+                        : field == PropertyFilter.Field.CLASS ? assessmentClassIndex : null;
+                if (index != null && !comparison.isNegated()) {
+                    Predicate<String> nameTest = comparison.textTest();
+                    plan.add(new QueryPlan.Step(description, () -> index.countMatching(nameTest),
+                            () -> BitmapIndex.toRows(index.rowsMatching(nameTest)), test));
+                    continue;
+                }
+            }
+            plan.add(new QueryPlan.Step(description, test));
+        }
+        return plan;
+    }
 
-        return new PropertyAssessments((ArrayList<PropertyAssessment>) filteredList);
+    /**
+     * List the loaded rows whose assessed value falls in a range, in row order.
+     * Narrow ranges are read from the sorted index and sorted back into row order, wide ranges are selected
+     * with a scan over the assessed value column, which gives the rows in order without sorting.
+     *
+     * @param minAssessedValue the minimum assessed value, inclusive
+     * @param maxAssessedValue the maximum assessed value, inclusive
+     * @return the rows in ascending order
+     */
+    private int[] assessedValueRows(int minAssessedValue, int maxAssessedValue) {
+        PropertyStore store = propertyAssessments.getStore();
+        if (assessedValueIndex.countInRange(minAssessedValue, maxAssessedValue) > store.size() / SCAN_FRACTION) {
+            return ScanKernels.toRows(ScanKernels.selectRange(store.intColumn(PropertyStore.ASSESSED_VALUE),
+                    store.size(), minAssessedValue, maxAssessedValue));
+        }
+        int[] rows = assessedValueIndex.rowsInRange(minAssessedValue, maxAssessedValue);
+        Arrays.sort(rows);
+        return rows;
     }
 
     /**
-     * Check if the assessed value of a PropertyAssessment falls in the range.
+     * Check if the assessed value of a property falls in the range.
      *
-     * @param property    the PropertyAssessment to check
+     * @param store       the PropertyStore holding the property
+     * @param row         the row of the property to check
      * @param minAssessed the minimum assessed value
      * @param maxAssessed the maximum assessed value
      * @return true if the assessed value is within the range. Else, false
      */
-    private boolean findAssessedRange(PropertyAssessment property, int minAssessed, int maxAssessed) {
-        int assessedValue = property.getNeighborhoodInfo().getAssessedValue();
+    private boolean findAssessedRange(PropertyStore store, int row, int minAssessed, int maxAssessed) {
+        int assessedValue = store.getAssessedValue(row);
         return assessedValue >= minAssessed && assessedValue <= maxAssessed;
     }
 
+    /**
+     * Estimate the number of loaded rows located in an area from the cells of the location index it overlaps.
+     *
+     * @param area the area
+     * @return an upper bound of the number of rows
+     */
+    private int estimateInArea(GeoArea area) {
+        GeoGridIndex index = locationIndex();
+        return area.isCircle()
+                ? index.estimateWithin(area.getCenterLatitude(), area.getCenterLongitude(), area.getRadius())
+                : index.estimateInBox(area.getSouth(), area.getWest(), area.getNorth(), area.getEast());
+    }
+
+    /**
+     * List the loaded rows located in an area, the candidates of the location index are checked exactly.
+     *
+     * @param area the area
+     * @return the rows in ascending order
+     */
+    private int[] rowsInArea(GeoArea area) {
+        GeoGridIndex index = locationIndex();
+        return area.isCircle()
+                ? index.rowsWithin(area.getCenterLatitude(), area.getCenterLongitude(), area.getRadius())
+                : index.rowsInBox(area.getSouth(), area.getWest(), area.getNorth(), area.getEast());
+    }
+
+    /**
+     * Check if the location of a property is inside an area.
+     *
+     * @param store the PropertyStore holding the property
+     * @param row   the row of the property to check
+     * @param area  the area
+     * @return true if the property is located in the area. Else, false
+     */
+    private boolean findArea(PropertyStore store, int row, GeoArea area) {
+        return area.contains(store.getDouble(PropertyStore.LATITUDE, row), store.getDouble(PropertyStore.LONGITUDE, row));
+    }
+
     /**
      * Retrieve a PropertyAssessment by account number.
      *
      * @param accountNumberInput the account number input
-     * @return a PropertyAssessment object
+     * @return a PropertyAssessment object, or null if no property has the account number
      */
     public PropertyAssessment handleAccountNumber(String accountNumberInput) {
         int accountNumber = Integer.parseInt(accountNumberInput);
         return propertyAssessments.getPropertyByAccountNum(accountNumber);
     }
 
+    /**
+     * Find the property assessments whose account number starts with a prefix, so a partial account number
+     * can be completed. The loaded properties are answered from the account number index.
+     *
+     * @param prefix                    the digits the account number starts with
+     * @param customPropertyAssessments a custom PropertyAssessments object to search (optional)
+     * @return a PropertyAssessments object with the matching properties in list order,
+     * empty if the prefix is not a number
+     */
+    public PropertyAssessments findByAccountPrefix(String prefix, PropertyAssessments customPropertyAssessments) {
+        PropertyAssessments assessments = (customPropertyAssessments != null) ? customPropertyAssessments : propertyAssessments;
+        String digits = prefix.trim();
+        if (isIndexed(assessments, accountIndex)) {
+            int[] rows = accountIndex.rowsWithPrefix(digits);
+            Arrays.sort(rows);
+            return new PropertyAssessments(assessments.getStore(), rows, rows.length);
+        }
+        int prefixDigits = AccountNumberIndex.digitCount(digits);
+        if (prefixDigits <= 0) {
+            return new PropertyAssessments(assessments.getStore(), new int[0], 0);
+        }
+        long value = Long.parseLong(digits);
+        return filterRows(assessments,
+                (store, row) -> AccountNumberIndex.startsWith(store.getAccountNum(row), value, prefixDigits));
+    }
+
+    /**
+     * Retrieve the property assessments of many account numbers in one pass over the account index.
+     * Inputs that are not numbers or don't match a property are skipped.
+     *
+     * @param accountNumberInputs       the account number inputs
+     * @param customPropertyAssessments a custom PropertyAssessments object to search (optional)
+     * @return a PropertyAssessments object with the found properties in input order
+     */
+    public PropertyAssessments handleAccountNumbers(List<String> accountNumberInputs,
+                                                    PropertyAssessments customPropertyAssessments) {
+        PropertyAssessments assessments = (customPropertyAssessments != null) ? customPropertyAssessments : propertyAssessments;
+
+        int[] accountNumbers = new int[accountNumberInputs.size()];
+        int count = 0;
+        for (String input : accountNumberInputs) {
+            int accountNumber = parseInt(input.trim());
+            if (accountNumber > 0) { // blank or malformed inputs parse to 0
+                accountNumbers[count++] = accountNumber;
+            }
+        }
+        return assessments.getPropertiesByAccountNums(Arrays.copyOf(accountNumbers, count));
+    }
+
+    /**
+     * Find the comparable properties of the loaded property with an account number.
+     *
+     * @param accountNumber  the account number of the property to compare with
+     * @param k              the largest number of comparable properties
+     * @param radius         the largest distance from the property in meters
+     * @param valueTolerance the largest difference of assessed value as a fraction of the property's value
+     * @return the comparable properties, nearest first
+     */
+    public PropertyAssessments findComparables(int accountNumber, int k, double radius, double valueTolerance) {
+        return findComparables(accountNumber, k, radius, valueTolerance, propertyAssessments);
+    }
+
+    /**
+     * Find the comparable properties of a property: the nearest properties within a radius that have the same
+     * first assessment class and an assessed value within a tolerance of its own. The loaded properties are
+     * searched ring by ring in the location index, any other list is measured property by property.
+     *
+     * @param accountNumber             the account number of the property to compare with
+     * @param k                         the largest number of comparable properties
+     * @param radius                    the largest distance from the property in meters
+     * @param valueTolerance            the largest difference of assessed value as a fraction of the property's value
+     * @param customPropertyAssessments a custom PropertyAssessments object to search (optional)
+     * @return the comparable properties, nearest first, empty if the property is missing or has no location
+     */
+    public PropertyAssessments findComparables(int accountNumber, int k, double radius, double valueTolerance,
+                                               PropertyAssessments customPropertyAssessments) {
+        PropertyAssessments assessments = (customPropertyAssessments != null) ? customPropertyAssessments : propertyAssessments;
+        PropertyStore store = assessments.getStore();
+        int subject = assessments.getRowByAccountNum(accountNumber);
+        for (int i = 0; subject < 0 && i < assessments.size(); i++) { // lists built by filters don't hash their rows
+            if (store.getAccountNum(assessments.getRow(i)) == accountNumber) {
+                subject = assessments.getRow(i);
+            }
+        }
+        if (subject < 0) {
+            return new PropertyAssessments(store, new int[0], 0);
+        }
+        double lat = store.getDouble(PropertyStore.LATITUDE, subject);
+        double lon = store.getDouble(PropertyStore.LONGITUDE, subject);
+        int value = store.getAssessedValue(subject);
+        double tolerance = Math.abs(value) * valueTolerance;
+        int assessmentClass = store.getCode(PropertyStore.ASSESSMENT_CLASS1, subject);
+        int[] classes = store.codeColumn(PropertyStore.ASSESSMENT_CLASS1);
+        int[] values = store.intColumn(PropertyStore.ASSESSED_VALUE);
+        int subjectRow = subject;
+        IntPredicate comparable = row -> row != subjectRow && classes[row] == assessmentClass
+                && Math.abs((long) values[row] - value) <= tolerance;
+
+        int[] rows = Double.isNaN(lat) || Double.isNaN(lon) ? new int[0]
+                : isLoaded(assessments) ? locationIndex().nearest(lat, lon, k, radius, comparable)
+                : GeoGridIndex.nearest(store, assessments.getRows(), lat, lon, k, radius, comparable);
+        return new PropertyAssessments(store, rows, rows.length);
+    }
+
     /**
      * Filter property assessments by neighborhood.
      *
@@ -262,13 +889,15 @@ public class ProcessData {
     public PropertyAssessments filterByNeighborhood(String neighborhood, PropertyAssessments customPropertyAssessments) {
         PropertyAssessments assessments = (customPropertyAssessments != null) ? customPropertyAssessments : propertyAssessments;
 
-        List<PropertyAssessment> filteredList = assessments.getPropertyAssessmentList()
-                .stream()
-                .filter(propertyAssessment ->
-                        findNeighborhood(propertyAssessment, neighborhood))
-                .collect(Collectors.toList()); // use stream to filter by neighborhood and ignore case
+        Predicate<String> test = neighborhoodTest(neighborhood);
+        if (test != null && isIndexed(assessments, neighborhoodIndex)) {
+            int[] rows = BitmapIndex.toRows(neighborhoodIndex.rowsMatching(test));
+            return new PropertyAssessments(assessments.getStore(), rows, rows.length);
+        }
 
-        return new PropertyAssessments((ArrayList<PropertyAssessment>) filteredList);
+        // filter by neighborhood and ignore case
+        BitSet codes = matchingCodes(assessments.getStore(), PropertyStore.NEIGHBORHOOD, test);
+        return filterRows(assessments, (store, row) -> findNeighborhood(store, row, codes));
     }
 
     /**
@@ -281,13 +910,15 @@ public class ProcessData {
     public PropertyAssessments filterByAssessment(String assessmentClass, PropertyAssessments customPropertyAssessments) {
         PropertyAssessments assessments = (customPropertyAssessments != null) ? customPropertyAssessments : propertyAssessments;
 
-        List<PropertyAssessment> filteredList = assessments.getPropertyAssessmentList()
-                .stream()
-                .filter(propertyAssessment ->
-                        findAssessmentClass(propertyAssessment, assessmentClass))
-                .collect(Collectors.toList()); // use stream to filter by assessment classes and ignore case
+        Predicate<String> test = assessmentClassTest(assessmentClass);
+        if (test != null && isIndexed(assessments, assessmentClassIndex)) {
+            int[] rows = BitmapIndex.toRows(assessmentClassIndex.rowsMatching(test));
+            return new PropertyAssessments(assessments.getStore(), rows, rows.length);
+        }
 
-        return new PropertyAssessments((ArrayList<PropertyAssessment>) filteredList);
+        // filter by assessment classes and ignore case
+        BitSet codes = matchingCodes(assessments.getStore(), PropertyStore.ASSESSMENT_CLASS1, test);
+        return filterRows(assessments, (store, row) -> findAssessmentClass(store, row, codes));
     }
 
     /**
@@ -299,22 +930,500 @@ public class ProcessData {
      */
     public PropertyAssessments filterByAddress(String address, PropertyAssessments customPropertyAssessments) {
         PropertyAssessments assessments = (customPropertyAssessments != null) ? customPropertyAssessments : propertyAssessments;
+        String addressQuery = normalizeAddressQuery(address);
+        if (addressQuery != null && isLoaded(assessments)) {
+            int[] rows = addressIndex().rowsContaining(addressQuery);
+            return new PropertyAssessments(assessments.getStore(), rows, rows.length);
+        }
+
+        return filterRows(assessments, addressTest(assessments.getStore(), addressQuery));
+    }
+
+    /**
+     * Filter property assessments by an assessed value range.
+     * The loaded properties are answered from the sorted assessed value index with two binary searches.
+     *
+     * @param minAssessedValue          the minimum assessed value, inclusive
+     * @param maxAssessedValue          the maximum assessed value, inclusive
+     * @param customPropertyAssessments a custom PropertyAssessments object to filter (optional)
+     * @return a filtered PropertyAssessments object sorted by assessed value
+     */
+    public PropertyAssessments filterByAssessedValue(int minAssessedValue, int maxAssessedValue,
+                                                     PropertyAssessments customPropertyAssessments) {
+        PropertyAssessments assessments = (customPropertyAssessments != null) ? customPropertyAssessments : propertyAssessments;
+        if (isIndexed(assessments, assessedValueIndex)) {
+            int[] rows = assessedValueIndex.rowsInRange(minAssessedValue, maxAssessedValue);
+            return new PropertyAssessments(assessments.getStore(), rows, rows.length);
+        }
+
+        PropertyAssessments filtered = filterRows(assessments, (store, row) ->
+                findAssessedRange(store, row, minAssessedValue, maxAssessedValue));
+        PropertyStore store = filtered.getStore();
+        long[] keys = new long[filtered.size()]; // assessed value and row packed so a plain sort orders them
+        for (int i = 0; i < keys.length; i++) {
+            int row = filtered.getRow(i);
+            keys[i] = ((long) store.getAssessedValue(row) << 32) | row;
+        }
+        Arrays.sort(keys);
+        int[] rows = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            rows[i] = (int) keys[i];
+        }
+        return new PropertyAssessments(store, rows, rows.length);
+    }
+
+    /**
+     * Filter property assessments by the area they are located in, a circle around a point or a rectangle.
+     * The loaded properties are answered from the location index, which only measures the rows of the grid
+     * cells the area overlaps.
+     *
+     * @param area                      the area
+     * @param customPropertyAssessments a custom PropertyAssessments object to filter (optional)
+     * @return a filtered PropertyAssessments object
+     */
+    public PropertyAssessments filterByArea(GeoArea area, PropertyAssessments customPropertyAssessments) {
+        PropertyAssessments assessments = (customPropertyAssessments != null) ? customPropertyAssessments : propertyAssessments;
+        if (isLoaded(assessments)) {
+            int[] rows = rowsInArea(area);
+            return new PropertyAssessments(assessments.getStore(), rows, rows.length);
+        }
+        return filterRows(assessments, (store, row) -> findArea(store, row, area));
+    }
+
+    /**
+     * Check if an index can answer a filter over a PropertyAssessments. Indexes hold store rows,
+     * so they are only used for the loaded properties, which list every row of their store in order.
+     *
+     * @param assessments the PropertyAssessments to filter
+     * @param index       the index, may be null if the file was not processed
+     * @return true if the index covers the PropertyAssessments
+     */
+    private boolean isIndexed(PropertyAssessments assessments, RowIndex index) {
+        return index != null && isLoaded(assessments) && index.covers(assessments.getStore());
+    }
+
+    /**
+     * Check if a PropertyAssessments is the loaded properties, the list every index is built over.
+     *
+     * @param assessments the PropertyAssessments to filter
+     * @return true if it lists every row of the loaded store in order
+     */
+    private boolean isLoaded(PropertyAssessments assessments) {
+        return assessments == propertyAssessments && assessments.size() == assessments.getStore().size();
+    }
+
+    /**
+     * Keep the rows of a PropertyAssessments that pass a test, in their current order.
+     * Lists at or above the parallel threshold are tested in parallel.
+     *
+     * @param assessments the PropertyAssessments to filter
+     * @param test        the test every row must pass
+     * @return a filtered PropertyAssessments over the same store
+     */
+    private PropertyAssessments filterRows(PropertyAssessments assessments, QueryPlan.RowTest test) {
+        int[] matches = ParallelRowFilter.filter(assessments.getStore(), assessments.getRows(), assessments.size(),
+                test, parallelThreshold);
+        return new PropertyAssessments(assessments.getStore(), matches, matches.length);
+    }
+
+    /**
+     * Get the assessed value statistics of every group of the loaded properties.
+     *
+     * @param group the column the properties are grouped by
+     * @return the statistics of every group, ordered by group name
+     */
+    public List<AssessmentStatistics> getStatistics(PropertyGroup group) {
+        return getStatistics(group, propertyAssessments);
+    }
+
+    /**
+     * Get the assessed value statistics of every group of the properties in the store of a PropertyAssessments.
+     * Rows appended to the store since the last call are added to the statistics kept for it.
+     *
+     * @param group       the column the properties are grouped by
+     * @param assessments a PropertyAssessments that lists every row of its store, like the ones the DAOs hold
+     * @return the statistics of every group, ordered by group name
+     */
+    public List<AssessmentStatistics> getStatistics(PropertyGroup group, PropertyAssessments assessments) {
+        return statisticsIndex(group, assessments).statistics();
+    }
 
-        List<PropertyAssessment> filteredList = assessments.getPropertyAssessmentList()
-                .stream()
-                .filter(propertyAssessment ->
-                        findAddress(propertyAssessment, address))
-                .collect(Collectors.toList());
+    /**
+     * Add the rows appended to the store of a PropertyAssessments to the statistics and quantile sketches
+     * of every group, only the new rows are read. Statistics kept for another store are rebuilt.
+     *
+     * @param assessments a PropertyAssessments that lists every row of its store
+     */
+    public void updateStatistics(PropertyAssessments assessments) {
+        for (PropertyGroup group : PropertyGroup.values()) {
+            statisticsIndex(group, assessments);
+        }
+        quantileIndex(assessments);
+    }
+
+    /**
+     * Count and total the assessed values of the loaded properties grouped by any combination of dimensions.
+     *
+     * @param filter         a filter the properties must pass first, or null for every property
+     * @param valueBandWidth the width of the assessed value bands, only used when grouping by VALUE_BAND
+     * @param rollup         true to add a subtotal after the groups of every shorter prefix of the dimensions,
+     *                       and a grand total at the end
+     * @param dimensions     the dimensions to group by, in the order their keys are listed
+     * @return the groups that hold properties, ordered by their keys
+     */
+    public List<GroupAggregate> groupBy(PropertyFilter filter, int valueBandWidth, boolean rollup,
+                                        GroupDimension... dimensions) {
+        return groupBy(filter, propertyAssessments, valueBandWidth, rollup, dimensions);
+    }
+
+    /**
+     * Count and total the assessed values of properties grouped by any combination of dimensions.
+     * Every group is keyed by the dictionary codes of its names in one int, and lists at or above the parallel
+     * threshold are aggregated in ranges across threads whose partial groups are merged at the end.
+     *
+     * @param filter         a filter the properties must pass first, or null for every property
+     * @param assessments    the properties to group
+     * @param valueBandWidth the width of the assessed value bands, only used when grouping by VALUE_BAND
+     * @param rollup         true to add a subtotal after the groups of every shorter prefix of the dimensions,
+     *                       and a grand total at the end
+     * @param dimensions     the dimensions to group by, in the order their keys are listed
+     * @return the groups that hold properties, ordered by their keys
+     * @throws IllegalArgumentException if a value band is not positive or the dimensions have too many possible groups
+     */
+    public List<GroupAggregate> groupBy(PropertyFilter filter, PropertyAssessments assessments, int valueBandWidth,
+                                        boolean rollup, GroupDimension... dimensions) {
+        PropertyAssessments grouped = filter != null ? filter(filter, assessments) : assessments;
+        return ParallelGroupBy.groupBy(grouped, valueBandWidth, rollup, dimensions, parallelThreshold);
+    }
+
+    /**
+     * Get approximate assessed value percentiles of the loaded properties in a neighborhood, ward and
+     * assessment class, merged from the quantile sketches of the matching groups.
+     *
+     * @param neighborhood    the neighborhood to match like filters do, or null for every neighborhood
+     * @param ward            the ward to match ignoring case, or null for every ward
+     * @param assessmentClass the assessment class to match like filters do, or null for every class
+     * @param percentiles     the percentiles, each between 0 and 100
+     * @return the approximate assessed value at each percentile, or null if no property matches
+     */
+    public int[] assessedValuePercentiles(String neighborhood, String ward, String assessmentClass,
+                                          double... percentiles) {
+        return assessedValuePercentiles(neighborhood, ward, assessmentClass, propertyAssessments, percentiles);
+    }
 
-        return new PropertyAssessments(new ArrayList<>(filteredList));
+    /**
+     * Get approximate assessed value percentiles of the properties in the store of a PropertyAssessments
+     * in a neighborhood, ward and assessment class.
+     *
+     * @param neighborhood    the neighborhood to match like filters do, or null for every neighborhood
+     * @param ward            the ward to match ignoring case, or null for every ward
+     * @param assessmentClass the assessment class to match like filters do, or null for every class
+     * @param assessments     a PropertyAssessments that lists every row of its store, like the ones the DAOs hold
+     * @param percentiles     the percentiles, each between 0 and 100
+     * @return the approximate assessed value at each percentile, or null if no property matches
+     */
+    public int[] assessedValuePercentiles(String neighborhood, String ward, String assessmentClass,
+                                          PropertyAssessments assessments, double... percentiles) {
+        PropertyStore store = assessments.getStore();
+        KllSketch sketch = quantileIndex(assessments).merged(
+                matchingCodes(store, PropertyStore.NEIGHBORHOOD, neighborhoodTest(neighborhood)),
+                matchingCodes(store, PropertyStore.WARD, ward == null ? null : ward.trim()::equalsIgnoreCase),
+                matchingCodes(store, PropertyStore.ASSESSMENT_CLASS1, assessmentClassTest(assessmentClass)));
+        if (sketch.isEmpty()) {
+            return null;
+        }
+        double[] ranks = new double[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            ranks[i] = percentiles[i] / 100;
+        }
+        return sketch.quantiles(ranks);
+    }
+
+    /**
+     * Get the quantile sketch index brought up to date with the store of a PropertyAssessments.
+     *
+     * @param assessments the PropertyAssessments whose store is indexed
+     * @return the up to date index
+     */
+    private synchronized QuantileSketchIndex quantileIndex(PropertyAssessments assessments) {
+        PropertyStore store = assessments.getStore();
+        if (quantileIndex == null || !quantileIndex.indexes(store)) {
+            quantileIndex = new QuantileSketchIndex(store);
+        } else {
+            quantileIndex.update();
+        }
+        return quantileIndex;
+    }
+
+    /**
+     * Get the statistics index of a group brought up to date with the store of a PropertyAssessments.
+     *
+     * @param group       the column the properties are grouped by
+     * @param assessments the PropertyAssessments whose store is indexed
+     * @return the up to date index
+     */
+    private synchronized GroupStatisticsIndex statisticsIndex(PropertyGroup group, PropertyAssessments assessments) {
+        PropertyStore store = assessments.getStore();
+        GroupStatisticsIndex index = statisticsIndexes.get(group);
+        if (index == null || !index.indexes(store)) {
+            index = new GroupStatisticsIndex(store, group.getColumn());
+            statisticsIndexes.put(group, index);
+        } else {
+            index.update();
+        }
+        return index;
+    }
+
+    /**
+     * Find the neighborhoods a possibly misspelled neighborhood search was meant to match.
+     *
+     * @param neighborhood the neighborhood search
+     * @param maxDistance  the largest edit distance allowed for each word
+     * @return the matching neighborhood names, closest first
+     */
+    public List<String> suggestNeighborhoods(String neighborhood, int maxDistance) {
+        return nameIndex(PropertyStore.NEIGHBORHOOD).candidates(neighborhood, maxDistance);
+    }
+
+    /**
+     * Find the street names a possibly misspelled street search was meant to match.
+     *
+     * @param streetName  the street search
+     * @param maxDistance the largest edit distance allowed for each word
+     * @return the matching street names, closest first
+     */
+    public List<String> suggestStreetNames(String streetName, int maxDistance) {
+        return nameIndex(PropertyStore.STREET_NAME).candidates(streetName, maxDistance);
+    }
+
+    /**
+     * Correct the misspelled words of a neighborhood search to the closest words of the known neighborhoods,
+     * so the corrected search can be run through the usual filters.
+     *
+     * @param neighborhood the neighborhood search, may be null
+     * @return the corrected search, or null if there is nothing to correct
+     */
+    public String correctNeighborhood(String neighborhood) {
+        return neighborhood == null ? null
+                : nameIndex(PropertyStore.NEIGHBORHOOD).correct(neighborhood, TYPO_DISTANCE);
+    }
+
+    /**
+     * Correct the misspelled words of an address search to the closest words of the known street names,
+     * numbers are kept as they are.
+     *
+     * @param address the address search, may be null
+     * @return the corrected search, or null if there is nothing to correct
+     */
+    public String correctAddress(String address) {
+        return address == null ? null : nameIndex(PropertyStore.STREET_NAME).correct(address, TYPO_DISTANCE);
+    }
+
+    /**
+     * Get the fuzzy name index of a text column of the loaded properties, rebuilt when new names were added.
+     *
+     * @param column the text column constant
+     * @return the up to date index
+     */
+    private synchronized FuzzyNameIndex nameIndex(int column) {
+        StringDictionary dictionary = propertyAssessments.getStore().getDictionary(column);
+        if (nameIndexes[column] == null || !nameIndexes[column].covers(dictionary)) {
+            nameIndexes[column] = new FuzzyNameIndex(dictionary);
+        }
+        return nameIndexes[column];
+    }
+
+    /**
+     * Complete a typed prefix of a search field from the loaded properties.
+     *
+     * @param field  the search field
+     * @param prefix the typed prefix, case is ignored
+     * @param limit  the largest number of completions
+     * @return the completions held by the most properties first
+     */
+    public List<String> complete(CompletionField field, String prefix, int limit) {
+        return complete(field, prefix, limit, propertyAssessments);
+    }
+
+    /**
+     * Complete a typed prefix of a search field from the properties of a PropertyAssessments.
+     * The completions are rebuilt when the properties change.
+     *
+     * @param field       the search field
+     * @param prefix      the typed prefix, case is ignored
+     * @param limit       the largest number of completions
+     * @param assessments the properties to complete from
+     * @return the completions held by the most properties first
+     */
+    public List<String> complete(CompletionField field, String prefix, int limit, PropertyAssessments assessments) {
+        return completionTrie(field, assessments).complete(prefix, limit);
+    }
+
+    /**
+     * Get the completion trie of a search field, built over a PropertyAssessments the first time it is needed.
+     * Every trie is dropped when another list or a new version of the list is completed.
+     *
+     * @param field       the search field
+     * @param assessments the properties to complete from
+     * @return the up to date trie
+     */
+    private synchronized CompletionTrie completionTrie(CompletionField field, PropertyAssessments assessments) {
+        if (assessments != completedAssessments || assessments.getVersion() != completedVersion) {
+            completionTries.clear();
+            completedAssessments = assessments;
+            completedVersion = assessments.getVersion();
+        }
+        CompletionTrie trie = completionTries.get(field);
+        if (trie == null) {
+            trie = buildCompletionTrie(field, assessments);
+            completionTries.put(field, trie);
+        }
+        return trie;
+    }
+
+    /**
+     * Build the completion trie of a search field. Names are weighted by the number of properties holding them,
+     * every account number has the same weight so they complete in order.
+     *
+     * @param field       the search field
+     * @param assessments the properties to complete from
+     * @return the trie
+     */
+    private static CompletionTrie buildCompletionTrie(CompletionField field, PropertyAssessments assessments) {
+        PropertyStore store = assessments.getStore();
+        if (field == CompletionField.ACCOUNT_NUMBER) {
+            int[] accountNumbers = new int[assessments.size()];
+            for (int i = 0; i < accountNumbers.length; i++) {
+                accountNumbers[i] = store.getAccountNum(assessments.getRow(i));
+            }
+            return CompletionTrie.ofNumbers(accountNumbers);
+        }
+
+        int column = field == CompletionField.NEIGHBOURHOOD ? PropertyStore.NEIGHBORHOOD : PropertyStore.STREET_NAME;
+        StringDictionary dictionary = store.getDictionary(column);
+        int[] counts = new int[dictionary.size()];
+        int[] codes = store.codeColumn(column);
+        for (int i = 0; i < assessments.size(); i++) {
+            counts[codes[assessments.getRow(i)]]++;
+        }
+        // only names held by a property of the list are completed
+        String[] names = new String[counts.length];
+        int nameCount = 0;
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                names[nameCount] = dictionary.decode(code);
+                counts[nameCount++] = counts[code];
+            }
+        }
+        return CompletionTrie.of(Arrays.copyOf(names, nameCount), Arrays.copyOf(counts, nameCount));
+    }
+
+    /**
+     * Get the version of the loaded properties, it changes whenever properties are loaded.
+     *
+     * @return the data version
+     */
+    public long getDataVersion() {
+        return propertyAssessments.getVersion();
+    }
+
+    /**
+     * Stream every loaded PropertyAssessment in list order. Each PropertyAssessment is created when the stream
+     * reaches it, so consuming the stream doesn't hold a list of properties.
+     *
+     * @return a Stream of PropertyAssessment objects
+     */
+    public Stream<PropertyAssessment> stream() {
+        return streamRows(propertyAssessments, null);
+    }
+
+    /**
+     * Stream the loaded property assessments that match multiple filters, in list order.
+     * Rows are tested as the stream reaches them, nothing is collected up front.
+     *
+     * @param accountNum       the account number to filter
+     * @param neighborhood     the neighborhood to filter
+     * @param assessmentClass  the assessment class to filter
+     * @param address          the address to filter
+     * @param minAssessedValue the minimum assessed value to filter
+     * @param maxAssessedValue the maximum assessed value to filter
+     * @return a Stream of the matching PropertyAssessment objects
+     */
+    public Stream<PropertyAssessment> streamFilters(String accountNum, String neighborhood, String assessmentClass,
+                                                    String address, int minAssessedValue, int maxAssessedValue) {
+        QueryPlan plan = planFilters(accountNum, neighborhood, assessmentClass, address,
+                minAssessedValue, maxAssessedValue, null, null);
+        return streamRows(propertyAssessments, plan::test);
+    }
+
+    /**
+     * Stream the rows of a PropertyAssessments that pass a test.
+     *
+     * @param assessments the PropertyAssessments to stream
+     * @param test        the test every row must pass, null keeps every row
+     * @return a Stream of PropertyAssessment objects
+     */
+    private static Stream<PropertyAssessment> streamRows(PropertyAssessments assessments, QueryPlan.RowTest test) {
+        PropertyStore store = assessments.getStore();
+        IntStream rows = IntStream.range(0, assessments.size()).map(assessments::getRow);
+        if (test != null) {
+            rows = rows.filter(row -> test.test(store, row));
+        }
+        return rows.mapToObj(row -> new PropertyAssessment(store, row));
+    }
+
+    /**
+     * Get one page of all PropertyAssessments.
+     *
+     * @param offset  the position of the first property of the page
+     * @param limit   the largest number of properties on the page
+     * @param sortKey the order of the properties
+     * @return the page, with the number of loaded properties as its total count
+     */
+    public PropertyPage getPage(int offset, int limit, PropertySortKey sortKey) {
+        return getPage(propertyAssessments, offset, limit, sortKey);
+    }
+
+    /**
+     * Get one page of a PropertyAssessments, such as a filtered result. Results over the loaded properties are
+     * sorted with the permutation of the sort column, so sorting by another column does not sort them again.
+     *
+     * @param assessments the properties to page
+     * @param offset      the position of the first property of the page
+     * @param limit       the largest number of properties on the page
+     * @param sortKey     the order of the properties
+     * @return the page, with the number of properties as its total count
+     */
+    public PropertyPage getPage(PropertyAssessments assessments, int offset, int limit, PropertySortKey sortKey) {
+        if (sortKey == PropertySortKey.UNSORTED || assessments.getStore() != propertyAssessments.getStore()) {
+            return assessments.getPage(offset, limit, sortKey);
+        }
+        return sortPermutation(sortKey.getAscending()).page(assessments, offset, limit, sortKey.isDescending());
+    }
+
+    /**
+     * Get the sort permutation of a column of the loaded properties, built the first time the column is sorted
+     * and again once properties were added.
+     *
+     * @param sortKey the ascending order of the column
+     * @return the up to date permutation
+     */
+    private synchronized SortPermutation sortPermutation(PropertySortKey sortKey) {
+        PropertyStore store = propertyAssessments.getStore();
+        SortPermutation permutation = sortPermutations.get(sortKey);
+        if (permutation == null || !permutation.covers(store)) {
+            permutation = new SortPermutation(store, sortKey);
+            sortPermutations.put(sortKey, permutation);
+        }
+        return permutation;
     }
 
     /**
      * Get a list of all PropertyAssessments.
      *
-     * @return an ArrayList of PropertyAssessment objects
+     * @return a List of PropertyAssessment objects
      */
-    public ArrayList<PropertyAssessment> getAllList() {
+    public List<PropertyAssessment> getAllList() {
         return propertyAssessments.getPropertyAssessmentList();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,1033 @@
+package main.processData;
+
+import main.index.AccountNumberIndex;
+import main.index.BitmapIndex;
+import main.utility.PropertyStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * The PropertyFilter class is a filter expression parsed once into a tree of comparisons, for example
+ * {@code ward = 'Ward 6' AND value BETWEEN 500000 AND 900000 AND class IN ('COMMERCIAL', 'RESIDENTIAL')}.
+ * <p>
+ * A comparison is a field followed by one of {@code = != <> < <= > >=} and a value, {@code [NOT] BETWEEN a AND b},
+ * {@code [NOT] IN (a, b, ...)} or {@code [NOT] LIKE 'pattern'}, where % matches any text and _ one character.
+ * Comparisons are combined with AND, OR, NOT and parentheses, AND binds tighter than OR. Keywords and field names
+ * ignore case. The fields are account, suite, house, street, garage, neighbourhood_id, neighbourhood, ward,
+ * value and class, with their API column names as aliases. Number fields take numbers, the others take quoted
+ * text and are compared ignoring case. A class comparison holds if any of the three assessment classes passes.
+ * <p>
+ * The tree holds no store, so one filter can run against any number of datasets. Each run binds it to a
+ * PropertyStore, matching text once against the dictionaries instead of every row.
+ * The filter can also be translated into a SoQL condition for the online data.
+ * <p>
+ * Author: Fahad Ali
+ */
+public abstract class PropertyFilter {
+
+    /**
+     * The fields a filter can compare.
+     */
+    enum Field {
+        ACCOUNT(PropertyStore.ACCOUNT_NUM, false, true, new String[]{"account_number"}, "account", "account_number"),
+        SUITE(PropertyStore.SUITE, false, true, new String[]{"suite"}, "suite"),
+        HOUSE(PropertyStore.HOUSE_NUM, false, true, new String[]{"house_number"}, "house", "house_number"),
+        STREET(PropertyStore.STREET_NAME, true, true, new String[]{"street_name"}, "street", "street_name"),
+        GARAGE(PropertyStore.GARAGE, true, true, new String[]{"garage"}, "garage"),
+        NEIGHBOURHOOD_ID(PropertyStore.NEIGHBORHOOD_ID, false, false, new String[]{"neighbourhood_id"},
+                "neighbourhood_id", "neighborhood_id"),
+        NEIGHBOURHOOD(PropertyStore.NEIGHBORHOOD, true, true, new String[]{"neighbourhood"},
+                "neighbourhood", "neighborhood"),
+        WARD(PropertyStore.WARD, true, true, new String[]{"ward"}, "ward"),
+        VALUE(PropertyStore.ASSESSED_VALUE, false, false, new String[]{"assessed_value"}, "value", "assessed_value"),
+        CLASS(PropertyStore.ASSESSMENT_CLASS1, true, true,
+                new String[]{"mill_class_1", "mill_class_2", "mill_class_3"}, "class", "assessment_class");
+
+        private final int column;
+        private final boolean text;
+        private final boolean apiText;
+        private final String[] apiColumns;
+        private final String[] names;
+
+        /**
+         * Constructor for a Field.
+         *
+         * @param column     the int or text column constant of the store
+         * @param text       true if the store holds the field as text
+         * @param apiText    true if the online data holds the field as text, so only equality translates for numbers
+         * @param apiColumns the columns of the online data
+         * @param names      the names of the field in an expression
+         */
+        Field(int column, boolean text, boolean apiText, String[] apiColumns, String... names) {
+            this.column = column;
+            this.text = text;
+            this.apiText = apiText;
+            this.apiColumns = apiColumns;
+            this.names = names;
+        }
+
+        /**
+         * Find a field by its name in an expression.
+         *
+         * @param name the name, case is ignored
+         * @return the field, or null if no field has the name
+         */
+        static Field named(String name) {
+            for (Field field : values()) {
+                for (String fieldName : field.names) {
+                    if (fieldName.equalsIgnoreCase(name)) {
+                        return field;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Get the store columns of the field, the three assessment classes for CLASS.
+         *
+         * @return the column constants
+         */
+        int[] columns() {
+            return this == CLASS ? new int[]{PropertyStore.ASSESSMENT_CLASS1, PropertyStore.ASSESSMENT_CLASS2,
+                    PropertyStore.ASSESSMENT_CLASS3} : new int[]{column};
+        }
+    }
+
+    /**
+     * The ways a field is compared. Not equal is an EQUAL comparison that is negated.
+     */
+    enum Operator {
+        EQUAL("="), LESS("<"), LESS_OR_EQUAL("<="), GREATER(">"), GREATER_OR_EQUAL(">="),
+        BETWEEN("BETWEEN"), IN("IN"), LIKE("LIKE");
+
+        private final String symbol;
+
+        /**
+         * Constructor for an Operator.
+         *
+         * @param symbol the operator in an expression
+         */
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+    }
+
+    /**
+     * Parse a filter expression.
+     *
+     * @param expression the expression
+     * @return the compiled filter
+     * @throws IllegalArgumentException if the expression is malformed, with the position of the problem
+     */
+    public static PropertyFilter parse(String expression) {
+        if (expression == null) {
+            throw new IllegalArgumentException("Missing filter expression");
+        }
+        return new Parser(expression).parse();
+    }
+
+    /**
+     * Translate the filter into a SoQL condition for the online data. Parts that can't be translated without
+     * losing properties are left out, so the condition may match more properties than the filter, but never fewer.
+     * Negations are never translated, since SoQL drops properties with a blank column from them.
+     *
+     * @return the SoQL condition, not URL encoded, or null if no part of the filter could be translated
+     */
+    public abstract String toSoql();
+
+    /**
+     * Get the filter as an expression, with the field names, keywords and quoting made uniform.
+     * Two filters that print the same select the same properties.
+     *
+     * @return the expression
+     */
+    @Override
+    public abstract String toString();
+
+    /**
+     * Bind the filter to a store, matching its text against the dictionaries of the store.
+     * The test holds for the rows the store has now and for rows added later with known text.
+     *
+     * @param store the PropertyStore the rows belong to
+     * @return the test every kept row passes
+     */
+    abstract QueryPlan.RowTest bind(PropertyStore store);
+
+    /**
+     * Split the filter into parts that must all hold, so each can become a step of a QueryPlan.
+     *
+     * @return the parts of a top level AND, or the filter itself
+     */
+    List<PropertyFilter> conjuncts() {
+        return Collections.singletonList(this);
+    }
+
+    /**
+     * Filters that hold if all of their parts hold.
+     */
+    static final class And extends PropertyFilter {
+        private final List<PropertyFilter> parts;
+
+        /**
+         * Constructor for an And.
+         *
+         * @param parts the filters that must all hold
+         */
+        And(List<PropertyFilter> parts) {
+            this.parts = parts;
+        }
+
+        /**
+         * Translate the parts that can be translated, leaving the others out only widens the condition.
+         *
+         * @return the SoQL condition, or null if no part could be translated
+         */
+        @Override
+        public String toSoql() {
+            List<String> conditions = new ArrayList<>();
+            for (PropertyFilter part : parts) {
+                String condition = part.toSoql();
+                if (condition != null) {
+                    conditions.add(part instanceof Or ? "(" + condition + ")" : condition);
+                }
+            }
+            return conditions.isEmpty() ? null : String.join(" AND ", conditions);
+        }
+
+        /**
+         * Get the parts joined with AND, parts joined with OR are put in parentheses.
+         *
+         * @return the expression
+         */
+        @Override
+        public String toString() {
+            StringBuilder expression = new StringBuilder();
+            for (PropertyFilter part : parts) {
+                if (expression.length() > 0) {
+                    expression.append(" AND ");
+                }
+                expression.append(part instanceof Or ? "(" + part + ")" : part.toString());
+            }
+            return expression.toString();
+        }
+
+        /**
+         * Bind every part and keep a row if all of them pass.
+         *
+         * @param store the PropertyStore the rows belong to
+         * @return the test every kept row passes
+         */
+        @Override
+        QueryPlan.RowTest bind(PropertyStore store) {
+            QueryPlan.RowTest[] tests = bindAll(parts, store);
+            return (s, row) -> {
+                for (QueryPlan.RowTest test : tests) {
+                    if (!test.test(s, row)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+
+        /**
+         * Get the parts, which must all hold.
+         *
+         * @return the parts
+         */
+        @Override
+        List<PropertyFilter> conjuncts() {
+            return parts;
+        }
+    }
+
+    /**
+     * Filters that hold if any of their parts holds.
+     */
+    static final class Or extends PropertyFilter {
+        private final List<PropertyFilter> parts;
+
+        /**
+         * Constructor for an Or.
+         *
+         * @param parts the filters of which one must hold
+         */
+        Or(List<PropertyFilter> parts) {
+            this.parts = parts;
+        }
+
+        /**
+         * Translate the parts, leaving one out would lose the properties only it keeps.
+         *
+         * @return the SoQL condition, or null if a part could not be translated
+         */
+        @Override
+        public String toSoql() {
+            List<String> conditions = new ArrayList<>();
+            for (PropertyFilter part : parts) {
+                String condition = part.toSoql();
+                if (condition == null) {
+                    return null;
+                }
+                conditions.add(condition);
+            }
+            return String.join(" OR ", conditions);
+        }
+
+        /**
+         * Get the parts joined with OR.
+         *
+         * @return the expression
+         */
+        @Override
+        public String toString() {
+            StringBuilder expression = new StringBuilder();
+            for (PropertyFilter part : parts) {
+                if (expression.length() > 0) {
+                    expression.append(" OR ");
+                }
+                expression.append(part);
+            }
+            return expression.toString();
+        }
+
+        /**
+         * Bind every part and keep a row if any of them passes.
+         *
+         * @param store the PropertyStore the rows belong to
+         * @return the test every kept row passes
+         */
+        @Override
+        QueryPlan.RowTest bind(PropertyStore store) {
+            QueryPlan.RowTest[] tests = bindAll(parts, store);
+            return (s, row) -> {
+                for (QueryPlan.RowTest test : tests) {
+                    if (test.test(s, row)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+    }
+
+    /**
+     * Filters that hold if their part does not.
+     */
+    static final class Not extends PropertyFilter {
+        private final PropertyFilter part;
+
+        /**
+         * Constructor for a Not.
+         *
+         * @param part the filter that must not hold
+         */
+        Not(PropertyFilter part) {
+            this.part = part;
+        }
+
+        /**
+         * Negations are not translated, SoQL drops the properties with a blank column from them.
+         *
+         * @return null
+         */
+        @Override
+        public String toSoql() {
+            return null;
+        }
+
+        /**
+         * Get NOT followed by the part, in parentheses unless it is a single comparison.
+         *
+         * @return the expression
+         */
+        @Override
+        public String toString() {
+            return "NOT " + (part instanceof Comparison ? part.toString() : "(" + part + ")");
+        }
+
+        /**
+         * Bind the part and keep a row if it fails.
+         *
+         * @param store the PropertyStore the rows belong to
+         * @return the test every kept row passes
+         */
+        @Override
+        QueryPlan.RowTest bind(PropertyStore store) {
+            QueryPlan.RowTest test = part.bind(store);
+            return (s, row) -> !test.test(s, row);
+        }
+    }
+
+    /**
+     * A comparison of one field with values.
+     */
+    static final class Comparison extends PropertyFilter {
+        private final Field field;
+        private final Operator operator;
+        private final boolean negated;
+        private final String[] texts;
+        private final int[] numbers;
+
+        /**
+         * Constructor for a Comparison.
+         *
+         * @param field    the field compared
+         * @param operator the way it is compared
+         * @param negated  true for !=, NOT BETWEEN, NOT IN and NOT LIKE
+         * @param texts    the values of a text field or the pattern of LIKE, null otherwise
+         * @param numbers  the values of a number field, null otherwise
+         */
+        Comparison(Field field, Operator operator, boolean negated, String[] texts, int[] numbers) {
+            this.field = field;
+            this.operator = operator;
+            this.negated = negated;
+            this.texts = texts;
+            this.numbers = numbers;
+        }
+
+        /**
+         * Translate the comparison when SoQL selects at least the same properties. Text is compared in upper case,
+         * since the online data is mostly upper case and the filter ignores case. Values kept as text online
+         * only translate for equality and patterns, their order as text is not their order here.
+         * Comparisons a blank value passes are not translated, blank columns are null online and never match,
+         * blank numbers are 0 here.
+         *
+         * @return the SoQL condition, or null if the comparison is not translated
+         */
+        @Override
+        public String toSoql() {
+            boolean matches = operator == Operator.EQUAL || operator == Operator.IN || operator == Operator.LIKE;
+            if (negated || (field.apiText && !matches) || (!field.apiText && operator == Operator.LIKE)
+                    || (field.text ? textTest().test("") : field.apiText && numberTest().test(0))) {
+                return null;
+            }
+            List<String> conditions = new ArrayList<>();
+            for (String column : field.apiColumns) {
+                String operand = field.text ? "upper(" + column + ")" : column;
+                conditions.add(operand + " " + soqlComparison());
+            }
+            return conditions.size() == 1 ? conditions.get(0) : "(" + String.join(" OR ", conditions) + ")";
+        }
+
+        /**
+         * Get the field, the operator and the values as an expression.
+         *
+         * @return the expression
+         */
+        @Override
+        public String toString() {
+            String name = field.names[0];
+            if (operator == Operator.EQUAL) {
+                return name + (negated ? " != " : " = ") + value(0);
+            }
+            String not = negated ? "NOT " : "";
+            switch (operator) {
+                case BETWEEN:
+                    return name + " " + not + "BETWEEN " + value(0) + " AND " + value(1);
+                case IN:
+                    StringBuilder values = new StringBuilder();
+                    for (int i = 0; i < valueCount(); i++) {
+                        values.append(i == 0 ? "" : ", ").append(value(i));
+                    }
+                    return name + " " + not + "IN (" + values + ")";
+                case LIKE:
+                    return name + " " + not + "LIKE " + quote(texts[0]);
+                default:
+                    return name + " " + operator.symbol + " " + value(0);
+            }
+        }
+
+        /**
+         * Bind the comparison. Text fields are matched against the dictionary once, so a row only looks up
+         * its code in a bitmap.
+         *
+         * @param store the PropertyStore the rows belong to
+         * @return the test every kept row passes
+         */
+        @Override
+        QueryPlan.RowTest bind(PropertyStore store) {
+            boolean keep = !negated;
+            if (field.text) {
+                int[] columns = field.columns();
+                BitSet codes = BitmapIndex.codesMatching(store.getDictionary(field.column), textTest());
+                return (s, row) -> {
+                    for (int column : columns) {
+                        if (codes.get(s.getCode(column, row))) {
+                            return keep;
+                        }
+                    }
+                    return !keep;
+                };
+            }
+            int column = field.column;
+            IntPredicate test = numberTest();
+            return (s, row) -> test.test(s.getInt(column, row)) == keep;
+        }
+
+        /**
+         * Get the test a name must pass for the comparison to hold, used to match dictionaries and bitmap indexes.
+         *
+         * @return the test, ignoring negation
+         */
+        Predicate<String> textTest() {
+            switch (operator) {
+                case EQUAL:
+                    return texts[0]::equalsIgnoreCase;
+                case IN:
+                    return name -> {
+                        for (String text : texts) {
+                            if (text.equalsIgnoreCase(name)) {
+                                return true;
+                            }
+                        }
+                        return false;
+                    };
+                case LIKE:
+                    Pattern pattern = likePattern(texts[0]);
+                    return name -> pattern.matcher(name).matches();
+                case BETWEEN:
+                    return name -> String.CASE_INSENSITIVE_ORDER.compare(name, texts[0]) >= 0
+                            && String.CASE_INSENSITIVE_ORDER.compare(name, texts[1]) <= 0;
+                default:
+                    return name -> compares(String.CASE_INSENSITIVE_ORDER.compare(name, texts[0]));
+            }
+        }
+
+        /**
+         * Get the test a number must pass for the comparison to hold.
+         *
+         * @return the test, ignoring negation
+         */
+        private IntPredicate numberTest() {
+            switch (operator) {
+                case EQUAL:
+                    int equal = numbers[0];
+                    return value -> value == equal;
+                case IN:
+                    int[] sorted = numbers.clone();
+                    Arrays.sort(sorted);
+                    return value -> Arrays.binarySearch(sorted, value) >= 0;
+                case LIKE:
+                    String digits = containedDigits();
+                    if (digits != null) {
+                        // compared with arithmetic like an account number search, no string is built per row
+                        long query = Long.parseLong(digits);
+                        return value -> AccountNumberIndex.contains(value, query, digits.length());
+                    }
+                    Pattern pattern = likePattern(texts[0]);
+                    return value -> pattern.matcher(String.valueOf(value)).matches();
+                case BETWEEN:
+                    int min = numbers[0];
+                    int max = numbers[1];
+                    return value -> value >= min && value <= max;
+                default:
+                    int bound = numbers[0];
+                    return value -> compares(Integer.compare(value, bound));
+            }
+        }
+
+        /**
+         * Get the range of a number field the comparison keeps, so a sorted index can list its rows.
+         *
+         * @return the inclusive {min, max}, or null if the comparison is negated, keeps no range or is empty
+         */
+        int[] numberRange() {
+            if (negated || field.text) {
+                return null;
+            }
+            long min = Integer.MIN_VALUE;
+            long max = Integer.MAX_VALUE;
+            switch (operator) {
+                case EQUAL:
+                    min = max = numbers[0];
+                    break;
+                case LESS:
+                    max = numbers[0] - 1L;
+                    break;
+                case LESS_OR_EQUAL:
+                    max = numbers[0];
+                    break;
+                case GREATER:
+                    min = numbers[0] + 1L;
+                    break;
+                case GREATER_OR_EQUAL:
+                    min = numbers[0];
+                    break;
+                case BETWEEN:
+                    min = numbers[0];
+                    max = numbers[1];
+                    break;
+                default:
+                    return null;
+            }
+            return min > max || min < Integer.MIN_VALUE || max > Integer.MAX_VALUE
+                    ? null : new int[]{(int) min, (int) max};
+        }
+
+        /**
+         * Get the digits a number must contain for a LIKE '%digits%' comparison, so an account number index
+         * or integer arithmetic can answer it.
+         *
+         * @return the digits, or null if the comparison is not a LIKE of that form
+         */
+        String containedDigits() {
+            if (operator != Operator.LIKE || field.text) {
+                return null;
+            }
+            String pattern = texts[0];
+            if (pattern.length() < 3 || !pattern.startsWith("%") || !pattern.endsWith("%")) {
+                return null;
+            }
+            String digits = pattern.substring(1, pattern.length() - 1);
+            return AccountNumberIndex.digitCount(digits) > 0 ? digits : null;
+        }
+
+        /**
+         * Get the field compared.
+         *
+         * @return the field
+         */
+        Field getField() {
+            return field;
+        }
+
+        /**
+         * Check if the comparison is negated.
+         *
+         * @return true for !=, NOT BETWEEN, NOT IN and NOT LIKE
+         */
+        boolean isNegated() {
+            return negated;
+        }
+
+        /**
+         * Check if the result of comparing a value with the bound satisfies the operator.
+         *
+         * @param order the sign of the comparison of the value with the bound
+         * @return true if the value passes
+         */
+        private boolean compares(int order) {
+            switch (operator) {
+                case LESS:
+                    return order < 0;
+                case LESS_OR_EQUAL:
+                    return order <= 0;
+                case GREATER:
+                    return order > 0;
+                case GREATER_OR_EQUAL:
+                    return order >= 0;
+                default:
+                    return order == 0;
+            }
+        }
+
+        /**
+         * Get the operator and values of a SoQL comparison, text upper-cased to match upper(column).
+         *
+         * @return the SoQL operator and values
+         */
+        private String soqlComparison() {
+            switch (operator) {
+                case BETWEEN:
+                    return "between " + soqlValue(0) + " and " + soqlValue(1);
+                case IN:
+                    StringBuilder values = new StringBuilder();
+                    for (int i = 0; i < valueCount(); i++) {
+                        values.append(i == 0 ? "" : ", ").append(soqlValue(i));
+                    }
+                    return "in(" + values + ")";
+                case LIKE:
+                    return "like " + quote(texts[0].toUpperCase(Locale.ROOT));
+                default:
+                    return operator.symbol + " " + soqlValue(0);
+            }
+        }
+
+        /**
+         * Get a value for SoQL. Text is upper-cased and numbers kept as text online are quoted.
+         *
+         * @param index the position of the value
+         * @return the SoQL literal
+         */
+        private String soqlValue(int index) {
+            if (field.text) {
+                return quote(texts[index].toUpperCase(Locale.ROOT));
+            }
+            return field.apiText ? quote(String.valueOf(numbers[index])) : String.valueOf(numbers[index]);
+        }
+
+        /**
+         * Get the number of values compared with.
+         *
+         * @return the number of values
+         */
+        private int valueCount() {
+            return field.text ? texts.length : numbers.length;
+        }
+
+        /**
+         * Get a value as it is written in an expression.
+         *
+         * @param index the position of the value
+         * @return the quoted text or the number
+         */
+        private String value(int index) {
+            return field.text ? quote(texts[index]) : String.valueOf(numbers[index]);
+        }
+    }
+
+    /**
+     * Bind a list of filters.
+     *
+     * @param filters the filters
+     * @param store   the PropertyStore the rows belong to
+     * @return the test of every filter in order
+     */
+    private static QueryPlan.RowTest[] bindAll(List<PropertyFilter> filters, PropertyStore store) {
+        QueryPlan.RowTest[] tests = new QueryPlan.RowTest[filters.size()];
+        for (int i = 0; i < tests.length; i++) {
+            tests[i] = filters.get(i).bind(store);
+        }
+        return tests;
+    }
+
+    /**
+     * Quote text the way an expression and SoQL both write it, doubling single quotes.
+     *
+     * @param text the text
+     * @return the quoted text
+     */
+    private static String quote(String text) {
+        return "'" + text.replace("'", "''") + "'";
+    }
+
+    /**
+     * Turn a LIKE pattern into a regular expression that ignores case, % matches any text and _ one character.
+     *
+     * @param like the LIKE pattern
+     * @return the compiled pattern
+     */
+    private static Pattern likePattern(String like) {
+        StringBuilder regex = new StringBuilder();
+        int literalStart = 0;
+        for (int i = 0; i < like.length(); i++) {
+            char c = like.charAt(i);
+            if (c == '%' || c == '_') {
+                if (i > literalStart) {
+                    regex.append(Pattern.quote(like.substring(literalStart, i)));
+                }
+                regex.append(c == '%' ? ".*" : ".");
+                literalStart = i + 1;
+            }
+        }
+        if (literalStart < like.length()) {
+            regex.append(Pattern.quote(like.substring(literalStart)));
+        }
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL);
+    }
+
+    /**
+     * Recursive descent parser of filter expressions, reading tokens straight from the text.
+     */
+    private static final class Parser {
+        private final String expression;
+        private int position;
+
+        /**
+         * Constructor for a Parser.
+         *
+         * @param expression the expression to parse
+         */
+        Parser(String expression) {
+            this.expression = expression;
+        }
+
+        /**
+         * Parse the whole expression.
+         *
+         * @return the filter
+         */
+        PropertyFilter parse() {
+            PropertyFilter filter = or();
+            skipSpaces();
+            if (position < expression.length()) {
+                throw error("Unexpected \"" + expression.charAt(position) + "\"");
+            }
+            return filter;
+        }
+
+        /**
+         * Parse filters joined with OR.
+         *
+         * @return the filter
+         */
+        private PropertyFilter or() {
+            List<PropertyFilter> parts = new ArrayList<>();
+            parts.add(and());
+            while (keyword("OR")) {
+                parts.add(and());
+            }
+            return parts.size() == 1 ? parts.get(0) : new Or(parts);
+        }
+
+        /**
+         * Parse filters joined with AND.
+         *
+         * @return the filter
+         */
+        private PropertyFilter and() {
+            List<PropertyFilter> parts = new ArrayList<>();
+            parts.add(not());
+            while (keyword("AND")) {
+                parts.add(not());
+            }
+            return parts.size() == 1 ? parts.get(0) : new And(parts);
+        }
+
+        /**
+         * Parse a filter that may be negated.
+         *
+         * @return the filter
+         */
+        private PropertyFilter not() {
+            if (keyword("NOT")) {
+                return new Not(not());
+            }
+            if (symbol("(")) {
+                PropertyFilter filter = or();
+                expect(")");
+                return filter;
+            }
+            return comparison();
+        }
+
+        /**
+         * Parse a comparison of a field.
+         *
+         * @return the comparison
+         */
+        private PropertyFilter comparison() {
+            int start = skipSpaces();
+            String name = word();
+            Field field = Field.named(name);
+            if (field == null) {
+                position = start;
+                throw error(name.isEmpty() ? "Expected a field" : "Unknown field \"" + name + "\"");
+            }
+
+            boolean negated = keyword("NOT");
+            if (keyword("BETWEEN")) {
+                Object low = value(field);
+                if (!keyword("AND")) {
+                    throw error("Expected AND");
+                }
+                return comparison(field, Operator.BETWEEN, negated, List.of(low, value(field)));
+            }
+            if (keyword("IN")) {
+                expect("(");
+                List<Object> values = new ArrayList<>();
+                do {
+                    values.add(value(field));
+                } while (symbol(","));
+                expect(")");
+                return comparison(field, Operator.IN, negated, values);
+            }
+            if (keyword("LIKE")) {
+                skipSpaces();
+                if (position >= expression.length() || expression.charAt(position) != '\'') {
+                    throw error("Expected a quoted pattern");
+                }
+                return new Comparison(field, Operator.LIKE, negated, new String[]{text()}, null);
+            }
+            if (negated) {
+                throw error("Expected BETWEEN, IN or LIKE");
+            }
+
+            Operator operator;
+            if (symbol("!=") || symbol("<>")) {
+                operator = Operator.EQUAL;
+                negated = true;
+            } else if (symbol("<=")) {
+                operator = Operator.LESS_OR_EQUAL;
+            } else if (symbol(">=")) {
+                operator = Operator.GREATER_OR_EQUAL;
+            } else if (symbol("<")) {
+                operator = Operator.LESS;
+            } else if (symbol(">")) {
+                operator = Operator.GREATER;
+            } else if (symbol("=")) {
+                operator = Operator.EQUAL;
+            } else {
+                throw error("Expected a comparison after \"" + name + "\"");
+            }
+            return comparison(field, operator, negated, List.of(value(field)));
+        }
+
+        /**
+         * Build a comparison from parsed values.
+         *
+         * @param field    the field compared
+         * @param operator the way it is compared
+         * @param negated  true if the comparison is negated
+         * @param values   the values, Strings for text fields and Integers for number fields
+         * @return the comparison
+         */
+        private static Comparison comparison(Field field, Operator operator, boolean negated, List<Object> values) {
+            if (field.text) {
+                return new Comparison(field, operator, negated, values.toArray(new String[0]), null);
+            }
+            int[] numbers = new int[values.size()];
+            for (int i = 0; i < numbers.length; i++) {
+                numbers[i] = (Integer) values.get(i);
+            }
+            return new Comparison(field, operator, negated, null, numbers);
+        }
+
+        /**
+         * Parse a value of a field, quoted text for text fields and a whole number for number fields.
+         *
+         * @param field the field the value is compared with
+         * @return a String or an Integer
+         */
+        private Object value(Field field) {
+            skipSpaces();
+            boolean quoted = position < expression.length() && expression.charAt(position) == '\'';
+            if (field.text) {
+                if (!quoted) {
+                    throw error("Expected quoted text for " + field.names[0]);
+                }
+                return text();
+            }
+            if (quoted) {
+                throw error("Expected a number for " + field.names[0]);
+            }
+            int start = position;
+            if (position < expression.length() && expression.charAt(position) == '-') {
+                position++;
+            }
+            while (position < expression.length() && Character.isDigit(expression.charAt(position))) {
+                position++;
+            }
+            try {
+                return Integer.parseInt(expression.substring(start, position));
+            } catch (NumberFormatException e) {
+                position = start;
+                throw error("Expected a number for " + field.names[0]);
+            }
+        }
+
+        /**
+         * Read quoted text, two single quotes stand for one.
+         *
+         * @return the text without quotes
+         */
+        private String text() {
+            int start = position;
+            StringBuilder text = new StringBuilder();
+            position++;
+            while (true) {
+                if (position >= expression.length()) {
+                    position = start;
+                    throw error("Unclosed quote");
+                }
+                char c = expression.charAt(position++);
+                if (c == '\'') {
+                    if (position < expression.length() && expression.charAt(position) == '\'') {
+                        position++;
+                    } else {
+                        return text.toString();
+                    }
+                }
+                text.append(c);
+            }
+        }
+
+        /**
+         * Read a word of letters, digits and underscores.
+         *
+         * @return the word, empty if there is none
+         */
+        private String word() {
+            skipSpaces();
+            int start = position;
+            while (position < expression.length()
+                    && (Character.isLetterOrDigit(expression.charAt(position)) || expression.charAt(position) == '_')) {
+                position++;
+            }
+            return expression.substring(start, position);
+        }
+
+        /**
+         * Read a keyword if it comes next.
+         *
+         * @param keyword the keyword in upper case
+         * @return true if the keyword was read
+         */
+        private boolean keyword(String keyword) {
+            int start = skipSpaces();
+            if (word().equalsIgnoreCase(keyword)) {
+                return true;
+            }
+            position = start;
+            return false;
+        }
+
+        /**
+         * Read a symbol if it comes next.
+         *
+         * @param symbol the symbol
+         * @return true if the symbol was read
+         */
+        private boolean symbol(String symbol) {
+            skipSpaces();
+            if (expression.startsWith(symbol, position)) {
+                position += symbol.length();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Read a symbol that must come next.
+         *
+         * @param symbol the symbol
+         */
+        private void expect(String symbol) {
+            if (!symbol(symbol)) {
+                throw error("Expected \"" + symbol + "\"");
+            }
+        }
+
+        /**
+         * Skip white space.
+         *
+         * @return the position of the next character
+         */
+        private int skipSpaces() {
+            while (position < expression.length() && Character.isWhitespace(expression.charAt(position))) {
+                position++;
+            }
+            return position;
+        }
+
+        /**
+         * Describe a problem with the expression at the current position.
+         *
+         * @param message the problem
+         * @return the exception to throw
+         */
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + position + " of filter: " + expression);
+        }
+    }
+}
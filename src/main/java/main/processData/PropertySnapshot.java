@@ -0,0 +1,215 @@
+package main.processData;
+
+import main.utility.PropertyAssessments;
+import main.utility.PropertyStore;
+import main.utility.StringDictionary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * The PropertySnapshot class saves loaded property assessments to a binary file next to the CSV they came from,
+ * so later loads can map the snapshot instead of parsing the CSV text again.
+ * <p>
+ * The snapshot is a header followed by a column oriented payload, laid out like a PropertyStore. Numbers are
+ * stored as fixed width primitive columns and text is stored once per dictionary that the text columns index into.
+ * The header holds a version, the size and modification time of the CSV and a CRC32 of the payload,
+ * a snapshot that doesn't match its CSV or fails the checksum is ignored.
+ * <p>
+ * Author: Fahad Ali
+ */
+public class PropertySnapshot {
+    private static final int MAGIC = 0x5041534E; // "PASN"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 8 + 8;
+    private static final String EXTENSION = ".snap";
+
+    /**
+     * Private constructor, this class only has static methods.
+     */
+    private PropertySnapshot() {
+    }
+
+    /**
+     * Get the snapshot path that belongs to a CSV file.
+     *
+     * @param csvPath the CSV file
+     * @return the path of its snapshot
+     */
+    public static Path snapshotPath(Path csvPath) {
+        return csvPath.resolveSibling(csvPath.getFileName() + EXTENSION);
+    }
+
+    /**
+     * Load the snapshot of a CSV file into the target PropertyAssessments if it is valid and up to date.
+     *
+     * @param csvPath the CSV file the snapshot was made from
+     * @param target  the PropertyAssessments every property is added to
+     * @return true if the snapshot was loaded, false if it is missing, stale or damaged
+     */
+    public static boolean read(Path csvPath, PropertyAssessments target) {
+        Path snapshotPath = snapshotPath(csvPath);
+        if (!Files.isRegularFile(snapshotPath) || !Files.isRegularFile(csvPath)) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return false;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getLong() != Files.size(csvPath)
+                    || buffer.getLong() != Files.getLastModifiedTime(csvPath).toMillis()) {
+                return false; // other format or the CSV changed since the snapshot was made
+            }
+            int rowCount = buffer.getInt();
+            long payloadSize = buffer.getLong();
+            long checksum = buffer.getLong();
+            if (rowCount < 0 || payloadSize != channel.size() - HEADER_SIZE) {
+                return false;
+            }
+
+            ByteBuffer payload = buffer.slice();
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if (crc.getValue() != checksum) {
+                return false;
+            }
+
+            StringDictionary[] dictionaries = new StringDictionary[PropertyStore.DICTIONARIES];
+            byte[] bytes = new byte[64];
+            for (int d = 0; d < dictionaries.length; d++) {
+                dictionaries[d] = new StringDictionary();
+                int count = payload.getInt();
+                for (int i = 0; i < count; i++) {
+                    int length = payload.getInt();
+                    if (bytes.length < length) {
+                        bytes = new byte[Math.max(length, bytes.length * 2)];
+                    }
+                    payload.get(bytes, 0, length);
+                    dictionaries[d].encode(new String(bytes, 0, length, StandardCharsets.UTF_8));
+                }
+            }
+
+            int[][] ints = new int[PropertyStore.INT_COLUMNS][rowCount];
+            for (int[] column : ints) {
+                payload.asIntBuffer().get(column);
+                payload.position(payload.position() + rowCount * Integer.BYTES);
+            }
+            double[][] doubles = new double[PropertyStore.DOUBLE_COLUMNS][rowCount];
+            for (double[] column : doubles) {
+                payload.asDoubleBuffer().get(column);
+                payload.position(payload.position() + rowCount * Double.BYTES);
+            }
+            int[][] codes = new int[PropertyStore.TEXT_COLUMNS][rowCount];
+            for (int[] column : codes) {
+                payload.asIntBuffer().get(column);
+                payload.position(payload.position() + rowCount * Integer.BYTES);
+            }
+
+            PropertyStore store = new PropertyStore(rowCount, ints, doubles, codes, dictionaries);
+            for (int column = 0; column < PropertyStore.TEXT_COLUMNS; column++) {
+                int dictionarySize = store.getDictionary(column).size();
+                for (int code : codes[column]) {
+                    if (code < 0 || code >= dictionarySize) {
+                        return false;
+                    }
+                }
+            }
+
+            PropertyAssessments loaded = new PropertyAssessments(store, new int[Math.max(rowCount, 16)], 0);
+            for (int row = 0; row < rowCount; row++) {
+                loaded.addRow(row);
+            }
+            target.addAll(loaded); // only handed over once fully read
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false; // a damaged snapshot is treated like a missing one
+        }
+    }
+
+    /**
+     * Write a snapshot of the store holding the properties next to the CSV file they were loaded from.
+     * The snapshot is written to a temporary file first and then moved in place.
+     *
+     * @param csvPath the CSV file the properties were loaded from
+     * @param source  the loaded properties, their store rows must be in file order
+     * @throws IOException if the snapshot can't be written
+     */
+    public static void write(Path csvPath, PropertyAssessments source) throws IOException {
+        PropertyStore store = source.getStore();
+        int rowCount = store.size();
+
+        byte[][][] dictionaries = new byte[PropertyStore.DICTIONARIES][][];
+        long dictionaryBytes = 0;
+        for (int d = 0; d < dictionaries.length; d++) {
+            StringDictionary dictionary = store.dictionary(d);
+            dictionaries[d] = new byte[dictionary.size()][];
+            dictionaryBytes += Integer.BYTES;
+            for (int code = 0; code < dictionary.size(); code++) {
+                dictionaries[d][code] = dictionary.decode(code).getBytes(StandardCharsets.UTF_8);
+                dictionaryBytes += Integer.BYTES + dictionaries[d][code].length;
+            }
+        }
+
+        long payloadSize = dictionaryBytes + (long) rowCount * (PropertyStore.INT_COLUMNS * Integer.BYTES
+                + PropertyStore.DOUBLE_COLUMNS * Double.BYTES + PropertyStore.TEXT_COLUMNS * Integer.BYTES);
+        if (HEADER_SIZE + payloadSize > Integer.MAX_VALUE) {
+            throw new IOException("Too many properties for a snapshot: " + rowCount);
+        }
+
+        Path snapshotPath = snapshotPath(csvPath);
+        Path tempPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) (HEADER_SIZE + payloadSize));
+            buffer.position(HEADER_SIZE);
+
+            for (byte[][] dictionary : dictionaries) {
+                buffer.putInt(dictionary.length);
+                for (byte[] bytes : dictionary) {
+                    buffer.putInt(bytes.length);
+                    buffer.put(bytes);
+                }
+            }
+            for (int column = 0; column < PropertyStore.INT_COLUMNS; column++) {
+                buffer.asIntBuffer().put(store.intColumn(column), 0, rowCount);
+                buffer.position(buffer.position() + rowCount * Integer.BYTES);
+            }
+            for (int column = 0; column < PropertyStore.DOUBLE_COLUMNS; column++) {
+                buffer.asDoubleBuffer().put(store.doubleColumn(column), 0, rowCount);
+                buffer.position(buffer.position() + rowCount * Double.BYTES);
+            }
+            for (int column = 0; column < PropertyStore.TEXT_COLUMNS; column++) {
+                buffer.asIntBuffer().put(store.codeColumn(column), 0, rowCount);
+                buffer.position(buffer.position() + rowCount * Integer.BYTES);
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(HEADER_SIZE, (int) payloadSize));
+            buffer.position(0);
+            buffer.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(Files.size(csvPath))
+                    .putLong(Files.getLastModifiedTime(csvPath).toMillis())
+                    .putInt(rowCount)
+                    .putLong(payloadSize)
+                    .putLong(crc.getValue());
+
+            buffer.position(0);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,247 @@
+package main.processData;
+
+import main.utility.PropertyAssessments;
+import main.utility.PropertyStore;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * The QueryPlan class decides how the filters of one search are run. Every filter is a step that can always
+ * test a single row, and may also have an index that estimates how many rows it keeps and lists them.
+ * The plan starts from the indexed step with the smallest estimate, intersects the rows of further indexed steps
+ * while their estimate is below the number of rows left, and tests the remaining steps on the rows that survive.
+ * Without a useful index every row is tested. Large lists of rows are tested in parallel.
+ * After running, explain() describes the plan and the rows
+ * each part touched.
+ * <p>
+ * Author: Fahad Ali
+ */
+class QueryPlan {
+    private final PropertyAssessments assessments;
+    private final boolean indexed;
+    private final int parallelThreshold;
+    private final List<Step> steps = new ArrayList<>();
+    private final List<String> log = new ArrayList<>();
+
+    /**
+     * A test on one row of a PropertyStore.
+     */
+    interface RowTest {
+        /**
+         * Test a row.
+         *
+         * @param store the PropertyStore holding the row
+         * @param row   the row to test
+         * @return true if the row passes
+         */
+        boolean test(PropertyStore store, int row);
+    }
+
+    /**
+     * One filter of a search.
+     */
+    static class Step {
+        private final String description;
+        private final IntSupplier estimate;
+        private final Supplier<int[]> rows;
+        private final RowTest test;
+        private int estimated = -1;
+
+        /**
+         * Constructor for a step without an index.
+         *
+         * @param description what the step keeps, shown by explain
+         * @param test        the test every row must pass
+         */
+        Step(String description, RowTest test) {
+            this(description, null, null, test);
+        }
+
+        /**
+         * Constructor for a step with an index.
+         *
+         * @param description what the step keeps, shown by explain
+         * @param estimate    estimates the number of rows the index lists, may be null if there is no index
+         * @param rows        lists the rows kept by the step in ascending order in a new array,
+         *                    may be null if there is no index
+         * @param test        the test every row must pass
+         */
+        Step(String description, IntSupplier estimate, Supplier<int[]> rows, RowTest test) {
+            this.description = description;
+            this.estimate = estimate;
+            this.rows = rows;
+            this.test = test;
+        }
+
+        /**
+         * Get the estimated number of rows the step keeps, computed once.
+         *
+         * @return the estimate, or Integer.MAX_VALUE if the step has no index
+         */
+        private int estimate() {
+            if (estimated < 0) {
+                estimated = estimate == null ? Integer.MAX_VALUE : estimate.getAsInt();
+            }
+            return estimated;
+        }
+    }
+
+    /**
+     * Constructor for a QueryPlan.
+     *
+     * @param assessments the PropertyAssessments to filter
+     * @param indexed     true if the indexes of the steps cover the PropertyAssessments,
+     *                    which then lists every row of its store in order
+     * @param parallelThreshold the number of rows from which row tests run in parallel
+     */
+    QueryPlan(PropertyAssessments assessments, boolean indexed, int parallelThreshold) {
+        this.assessments = assessments;
+        this.indexed = indexed;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Add a filter to the search.
+     *
+     * @param step the step to add
+     */
+    void add(Step step) {
+        steps.add(step);
+    }
+
+    /**
+     * Run the plan.
+     *
+     * @return a PropertyAssessments with the rows that pass every step, in list order
+     */
+    PropertyAssessments execute() {
+        log.clear();
+        PropertyStore store = assessments.getStore();
+        List<Step> remaining = new ArrayList<>(steps);
+        int[] candidates = null;
+        int count = assessments.size();
+
+        if (indexed) {
+            remaining.sort(Comparator.comparingInt(Step::estimate));
+            for (int i = 0; i < remaining.size(); i++) {
+                Step step = remaining.get(i);
+                if (step.rows == null || step.estimate() >= count) {
+                    continue; // testing the rows left is cheaper than listing the rows of this index
+                }
+                int[] rows = step.rows.get();
+                if (candidates == null) {
+                    candidates = rows;
+                    count = rows.length;
+                    log.add("index " + step.description + ": estimated " + step.estimated
+                            + ", touched " + rows.length + ", kept " + count);
+                } else {
+                    int before = count;
+                    count = intersect(candidates, count, rows);
+                    log.add("intersect " + step.description + ": estimated " + step.estimated
+                            + ", touched " + (before + rows.length) + ", kept " + count);
+                }
+                remaining.remove(i--);
+            }
+        }
+
+        if (candidates != null && remaining.isEmpty()) {
+            return new PropertyAssessments(store, candidates, count);
+        }
+        int[] rows = candidates == null ? assessments.getRows() : candidates;
+        boolean parallel = ParallelRowFilter.runsInParallel(count, parallelThreshold);
+        int[] matches = ParallelRowFilter.filter(store, rows, count,
+                (s, row) -> passes(remaining, s, row), parallelThreshold);
+        log.add((candidates == null ? "scan " : "filter ") + describe(remaining)
+                + (parallel ? " in parallel" : "") + ": touched " + count + ", kept " + matches.length);
+        return new PropertyAssessments(store, matches, matches.length);
+    }
+
+    /**
+     * Test a single row against every step without running the plan, used to filter rows one at a time.
+     *
+     * @param store the PropertyStore holding the row
+     * @param row   the row
+     * @return true if the row passes every step
+     */
+    boolean test(PropertyStore store, int row) {
+        return passes(steps, store, row);
+    }
+
+    /**
+     * Describe the plan that last ran, one line per part with the rows it touched and kept.
+     *
+     * @return the description of the plan
+     */
+    String explain() {
+        StringBuilder explain = new StringBuilder("plan over " + assessments.size() + " rows"
+                + (indexed ? "" : ", no indexes"));
+        for (int i = 0; i < log.size(); i++) {
+            explain.append(System.lineSeparator()).append(i + 1).append(". ").append(log.get(i));
+        }
+        return explain.toString();
+    }
+
+    /**
+     * Check if a row passes every step.
+     *
+     * @param steps the steps to test
+     * @param store the PropertyStore holding the row
+     * @param row   the row
+     * @return true if every test passes
+     */
+    private static boolean passes(List<Step> steps, PropertyStore store, int row) {
+        for (Step step : steps) {
+            if (!step.test.test(store, row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Join the descriptions of steps for explain.
+     *
+     * @param steps the steps
+     * @return the descriptions, or "every row" if there are no steps
+     */
+    private static String describe(List<Step> steps) {
+        if (steps.isEmpty()) {
+            return "every row";
+        }
+        StringBuilder description = new StringBuilder();
+        for (Step step : steps) {
+            if (description.length() > 0) {
+                description.append(", ");
+            }
+            description.append(step.description);
+        }
+        return description.toString();
+    }
+
+    /**
+     * Keep the candidates that are also in another ascending list of rows.
+     *
+     * @param candidates the candidate rows in ascending order, the kept rows are moved to the front
+     * @param count      the number of candidates
+     * @param rows       the other rows in ascending order
+     * @return the number of candidates kept
+     */
+    private static int intersect(int[] candidates, int count, int[] rows) {
+        int kept = 0;
+        int position = 0;
+        for (int i = 0; i < count && position < rows.length; i++) {
+            int row = candidates[i];
+            while (position < rows.length && rows[position] < row) {
+                position++;
+            }
+            if (position < rows.length && rows[position] == row) {
+                candidates[kept++] = row;
+            }
+        }
+        return kept;
+    }
+}
@@ -0,0 +1,111 @@
+package main.utility;
+
+/**
+ * The AssessmentStatistics class holds the assessed value statistics of one group of properties,
+ * like a neighbourhood or a ward.
+ * <p>
+ * Author: Fahad Ali
+ */
+public class AssessmentStatistics {
+    private final String group;
+    private final int count;
+    private final long total;
+    private final int min;
+    private final int max;
+    private final double median;
+
+    /**
+     * Constructor for AssessmentStatistics.
+     *
+     * @param group  The name of the group.
+     * @param count  The number of properties in the group.
+     * @param total  The total assessed value.
+     * @param min    The lowest assessed value.
+     * @param max    The highest assessed value.
+     * @param median The median assessed value.
+     */
+    public AssessmentStatistics(String group, int count, long total, int min, int max, double median) {
+        this.group = group;
+        this.count = count;
+        this.total = total;
+        this.min = min;
+        this.max = max;
+        this.median = median;
+    }
+
+    /**
+     * Get the name of the group.
+     *
+     * @return The group name.
+     */
+    public String getGroup() {
+        return group;
+    }
+
+    /**
+     * Get the number of properties in the group.
+     *
+     * @return The count.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the total assessed value of the group.
+     *
+     * @return The total.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Get the mean assessed value of the group.
+     *
+     * @return The mean, or 0 for an empty group.
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    /**
+     * Get the median assessed value of the group, the mean of the two middle values when the count is even.
+     *
+     * @return The median.
+     */
+    public double getMedian() {
+        return median;
+    }
+
+    /**
+     * Get the lowest assessed value of the group.
+     *
+     * @return The minimum.
+     */
+    public int getMin() {
+        return min;
+    }
+
+    /**
+     * Get the highest assessed value of the group.
+     *
+     * @return The maximum.
+     */
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * Returns a string representation of the statistics.
+     *
+     * @return The group and its statistics.
+     */
+    @Override
+    public String toString() {
+        return group + ": n = " + count + ", mean = $" + String.format("%,.0f", getMean())
+                + ", median = $" + String.format("%,.0f", median)
+                + ", min = $" + String.format("%,d", min) + ", max = $" + String.format("%,d", max)
+                + ", total = $" + String.format("%,d", total);
+    }
+}
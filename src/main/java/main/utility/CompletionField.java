@@ -0,0 +1,12 @@
+package main.utility;
+
+/**
+ * The CompletionField enum lists the search fields that can be completed from a typed prefix.
+ * <p>
+ * Author: Fahad Ali
+ */
+public enum CompletionField {
+    ACCOUNT_NUMBER,
+    NEIGHBOURHOOD,
+    STREET_NAME
+}
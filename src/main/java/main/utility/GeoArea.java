@@ -0,0 +1,208 @@
+package main.utility;
+
+import java.util.Objects;
+
+/**
+ * The GeoArea class describes the area a location filter keeps, either a circle of some meters around a point
+ * or a rectangle of latitudes and longitudes. Circles are measured with the haversine distance, bounds
+ * are inclusive and properties without a location are never inside an area.
+ * <p>
+ * Author: Fahad Ali
+ */
+public class GeoArea {
+    private final boolean circle;
+    private final double centerLatitude;
+    private final double centerLongitude;
+    private final double south;
+    private final double west;
+    private final double north;
+    private final double east;
+    private final double radius;
+
+    /**
+     * Constructor for a GeoArea, use circle() or box() to create one.
+     *
+     * @param circle          True for a circle, false for a rectangle.
+     * @param centerLatitude  The latitude of the center.
+     * @param centerLongitude The longitude of the center.
+     * @param south           The lowest latitude of a rectangle, NaN for a circle.
+     * @param west            The lowest longitude of a rectangle, NaN for a circle.
+     * @param north           The highest latitude of a rectangle, NaN for a circle.
+     * @param east            The highest longitude of a rectangle, NaN for a circle.
+     * @param radius          The radius of a circle in meters, 0 for a rectangle.
+     */
+    private GeoArea(boolean circle, double centerLatitude, double centerLongitude,
+                    double south, double west, double north, double east, double radius) {
+        this.circle = circle;
+        this.centerLatitude = centerLatitude;
+        this.centerLongitude = centerLongitude;
+        this.south = south;
+        this.west = west;
+        this.north = north;
+        this.east = east;
+        this.radius = radius;
+    }
+
+    /**
+     * Create the area within a distance of a point.
+     *
+     * @param lat    The latitude of the point in degrees.
+     * @param lon    The longitude of the point in degrees.
+     * @param radius The distance in meters.
+     * @return The circle.
+     * @throws IllegalArgumentException If a coordinate is not a number or the radius is negative.
+     */
+    public static GeoArea circle(double lat, double lon, double radius) {
+        if (Double.isNaN(lat) || Double.isNaN(lon) || !(radius >= 0)) {
+            throw new IllegalArgumentException("Invalid circle: (" + lat + ", " + lon + ") radius " + radius);
+        }
+        return new GeoArea(true, lat, lon, Double.NaN, Double.NaN, Double.NaN, Double.NaN, radius);
+    }
+
+    /**
+     * Create the area inside a rectangle of latitudes and longitudes.
+     *
+     * @param south The lowest latitude in degrees.
+     * @param west  The lowest longitude in degrees.
+     * @param north The highest latitude in degrees.
+     * @param east  The highest longitude in degrees.
+     * @return The rectangle.
+     * @throws IllegalArgumentException If a bound is not a number or is above its opposite.
+     */
+    public static GeoArea box(double south, double west, double north, double east) {
+        if (!(south <= north) || !(west <= east)) {
+            throw new IllegalArgumentException("Invalid box: (" + south + ", " + west + ") to ("
+                    + north + ", " + east + ")");
+        }
+        return new GeoArea(false, (south + north) / 2, (west + east) / 2, south, west, north, east, 0);
+    }
+
+    /**
+     * Check if the area is a circle.
+     *
+     * @return True for a circle, false for a rectangle.
+     */
+    public boolean isCircle() {
+        return circle;
+    }
+
+    /**
+     * Get the latitude of the center of a circle, or the middle latitude of a rectangle.
+     *
+     * @return The latitude in degrees.
+     */
+    public double getCenterLatitude() {
+        return centerLatitude;
+    }
+
+    /**
+     * Get the longitude of the center of a circle, or the middle longitude of a rectangle.
+     *
+     * @return The longitude in degrees.
+     */
+    public double getCenterLongitude() {
+        return centerLongitude;
+    }
+
+    /**
+     * Get the lowest latitude of a rectangle.
+     *
+     * @return The latitude in degrees, NaN for a circle.
+     */
+    public double getSouth() {
+        return south;
+    }
+
+    /**
+     * Get the lowest longitude of a rectangle.
+     *
+     * @return The longitude in degrees, NaN for a circle.
+     */
+    public double getWest() {
+        return west;
+    }
+
+    /**
+     * Get the highest latitude of a rectangle.
+     *
+     * @return The latitude in degrees, NaN for a circle.
+     */
+    public double getNorth() {
+        return north;
+    }
+
+    /**
+     * Get the highest longitude of a rectangle.
+     *
+     * @return The longitude in degrees, NaN for a circle.
+     */
+    public double getEast() {
+        return east;
+    }
+
+    /**
+     * Get the radius of a circle.
+     *
+     * @return The radius in meters, 0 for a rectangle.
+     */
+    public double getRadius() {
+        return radius;
+    }
+
+    /**
+     * Check if a location is inside the area.
+     *
+     * @param lat The latitude in degrees, NaN if unknown.
+     * @param lon The longitude in degrees, NaN if unknown.
+     * @return True if the location is inside, false if it is outside or unknown.
+     */
+    public boolean contains(double lat, double lon) {
+        if (circle) {
+            return Location.distance(centerLatitude, centerLongitude, lat, lon) <= radius;
+        }
+        return lat >= south && lat <= north && lon >= west && lon <= east;
+    }
+
+    /**
+     * Compare with another GeoArea.
+     *
+     * @param o The other object.
+     * @return True if both are the same shape with the same bounds.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GeoArea)) {
+            return false;
+        }
+        GeoArea other = (GeoArea) o;
+        return circle == other.circle && Double.compare(centerLatitude, other.centerLatitude) == 0
+                && Double.compare(centerLongitude, other.centerLongitude) == 0
+                && Double.compare(south, other.south) == 0 && Double.compare(west, other.west) == 0
+                && Double.compare(north, other.north) == 0 && Double.compare(east, other.east) == 0
+                && Double.compare(radius, other.radius) == 0;
+    }
+
+    /**
+     * Hash the shape and bounds.
+     *
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(circle, centerLatitude, centerLongitude, south, west, north, east, radius);
+    }
+
+    /**
+     * Describe the area.
+     *
+     * @return The area as text, like "within 500.0 m of (53.5, -113.5)".
+     */
+    @Override
+    public String toString() {
+        return circle ? "within " + radius + " m of (" + centerLatitude + ", " + centerLongitude + ")"
+                : "inside (" + south + ", " + west + ") to (" + north + ", " + east + ")";
+    }
+}
@@ -0,0 +1,125 @@
+package main.utility;
+
+import java.util.Arrays;
+
+/**
+ * The GroupAggregate class holds the count and assessed value totals of one group of a group-by query.
+ * A group has one key per grouped dimension. Subtotals of a rollup leave the keys of the dimensions they
+ * add up as null, the grand total has every key null.
+ * <p>
+ * Author: Fahad Ali
+ */
+public class GroupAggregate {
+    private final String[] keys;
+    private final int count;
+    private final long total;
+    private final int min;
+    private final int max;
+
+    /**
+     * Constructor for a GroupAggregate.
+     *
+     * @param keys  The key of the group in every dimension, null for dimensions a subtotal adds up.
+     * @param count The number of properties in the group.
+     * @param total The total assessed value.
+     * @param min   The lowest assessed value.
+     * @param max   The highest assessed value.
+     */
+    public GroupAggregate(String[] keys, int count, long total, int min, int max) {
+        this.keys = keys.clone();
+        this.count = count;
+        this.total = total;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Get the key of the group in one dimension.
+     *
+     * @param dimension The position of the dimension in the query.
+     * @return The key, or null if the group is a subtotal over the dimension.
+     */
+    public String getKey(int dimension) {
+        return keys[dimension];
+    }
+
+    /**
+     * Get the keys of the group in every dimension.
+     *
+     * @return A copy of the keys.
+     */
+    public String[] getKeys() {
+        return keys.clone();
+    }
+
+    /**
+     * Check if the group is a subtotal of a rollup.
+     *
+     * @return True if a key of the group is null.
+     */
+    public boolean isSubtotal() {
+        for (String key : keys) {
+            if (key == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the number of properties in the group.
+     *
+     * @return The count.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the total assessed value of the group.
+     *
+     * @return The total.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Get the mean assessed value of the group.
+     *
+     * @return The mean, or 0 for an empty group.
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    /**
+     * Get the lowest assessed value of the group.
+     *
+     * @return The minimum.
+     */
+    public int getMin() {
+        return min;
+    }
+
+    /**
+     * Get the highest assessed value of the group.
+     *
+     * @return The maximum.
+     */
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * Returns a string representation of the group.
+     *
+     * @return The keys of the group and its totals.
+     */
+    @Override
+    public String toString() {
+        return Arrays.toString(keys) + ": n = " + count + ", mean = $" + String.format("%,.0f", getMean())
+                + ", min = $" + String.format("%,d", min) + ", max = $" + String.format("%,d", max)
+                + ", total = $" + String.format("%,d", total);
+    }
+}
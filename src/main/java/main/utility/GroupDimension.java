@@ -0,0 +1,45 @@
+package main.utility;
+
+/**
+ * The GroupDimension enum lists the columns properties can be grouped by in a group-by query.
+ * Text columns group by their dictionary codes, VALUE_BAND groups assessed values into bands of a chosen width.
+ * <p>
+ * Author: Fahad Ali
+ */
+public enum GroupDimension {
+    NEIGHBOURHOOD(PropertyStore.NEIGHBORHOOD),
+    WARD(PropertyStore.WARD),
+    ASSESSMENT_CLASS(PropertyStore.ASSESSMENT_CLASS1),
+    GARAGE(PropertyStore.GARAGE),
+    STREET_NAME(PropertyStore.STREET_NAME),
+    VALUE_BAND(-1);
+
+    private final int column;
+
+    /**
+     * Constructor for a GroupDimension.
+     *
+     * @param column The text column constant of PropertyStore, or -1 for the assessed value bands.
+     */
+    GroupDimension(int column) {
+        this.column = column;
+    }
+
+    /**
+     * Check if the dimension is a text column.
+     *
+     * @return True for every dimension but VALUE_BAND.
+     */
+    public boolean isText() {
+        return column >= 0;
+    }
+
+    /**
+     * Get the text column the properties are grouped by. An assessment class groups by its first class.
+     *
+     * @return The text column constant of PropertyStore, or -1 for VALUE_BAND.
+     */
+    public int getColumn() {
+        return column;
+    }
+}
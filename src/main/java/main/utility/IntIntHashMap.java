@@ -0,0 +1,199 @@
+package main.utility;
+
+/**
+ * IntIntHashMap maps int keys to int values with open addressing and linear probing.
+ * Keys and values are stored in two flat int arrays, so an entry costs a fixed 8 bytes per slot
+ * and lookups never box or allocate. The table is kept at most half full.
+ * <p>
+ * Author: Fahad Ali
+ */
+public class IntIntHashMap {
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private int[] values; // value + 1, so 0 marks an empty slot
+    private int size;
+    private int mask;
+
+    /**
+     * Constructor for an empty IntIntHashMap.
+     */
+    public IntIntHashMap() {
+        this(0);
+    }
+
+    /**
+     * Constructor for an IntIntHashMap sized to hold a number of entries without growing.
+     *
+     * @param expectedSize The number of entries expected.
+     */
+    public IntIntHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Map a key to a value, replacing any value the key had.
+     *
+     * @param key   The key.
+     * @param value The value, must not be negative.
+     */
+    public void put(int key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value " + value);
+        }
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        int slot = slot(key);
+        if (values[slot] == 0) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value + 1;
+    }
+
+    /**
+     * Get the value of a key.
+     *
+     * @param key The key.
+     * @return The value, or -1 if the key is not in the map.
+     */
+    public int get(int key) {
+        return values[slot(key)] - 1;
+    }
+
+    /**
+     * Get the values of many keys at once.
+     *
+     * @param keys   The keys to look up.
+     * @param result Receives the value of each key, or -1 for keys that are not in the map.
+     *               Must be at least as long as keys.
+     */
+    public void getAll(int[] keys, int[] result) {
+        int[] table = this.keys;
+        int[] stored = values;
+        int tableMask = mask;
+        for (int i = 0; i < keys.length; i++) {
+            int key = keys[i];
+            int slot = mix(key) & tableMask;
+            while (stored[slot] != 0 && table[slot] != key) {
+                slot = (slot + 1) & tableMask;
+            }
+            result[i] = stored[slot] - 1;
+        }
+    }
+
+    /**
+     * Check if a key is in the map.
+     *
+     * @param key The key.
+     * @return True if the key has a value.
+     */
+    public boolean containsKey(int key) {
+        return values[slot(key)] != 0;
+    }
+
+    /**
+     * Copy every entry of another map into this one, adding an offset to each value.
+     *
+     * @param other  The map to copy.
+     * @param offset The amount added to every value.
+     */
+    public void putAll(IntIntHashMap other, int offset) {
+        if ((size + other.size) * 2 > keys.length) {
+            rehash(capacityFor(size + other.size));
+        }
+        for (int slot = 0; slot < other.keys.length; slot++) {
+            if (other.values[slot] != 0) {
+                put(other.keys[slot], other.values[slot] - 1 + offset);
+            }
+        }
+    }
+
+    /**
+     * Get the number of entries.
+     *
+     * @return The size of the map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check if the map has no entries.
+     *
+     * @return True if the map is empty.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Find the slot holding a key, or the empty slot where it would go.
+     *
+     * @param key The key.
+     * @return The slot index.
+     */
+    private int slot(int key) {
+        int slot = mix(key) & mask;
+        while (values[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Spread the bits of a key so sequential account numbers don't cluster.
+     *
+     * @param key The key.
+     * @return The mixed hash.
+     */
+    private static int mix(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Get the table capacity needed for a number of entries.
+     *
+     * @param entries The number of entries.
+     * @return A power of two at least twice the number of entries.
+     */
+    private static int capacityFor(int entries) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < entries * 2L) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Create empty tables.
+     *
+     * @param capacity The number of slots, a power of two.
+     */
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Move every entry into bigger tables.
+     *
+     * @param capacity The new number of slots, a power of two.
+     */
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldValues[slot] != 0) {
+                int target = slot(oldKeys[slot]);
+                keys[target] = oldKeys[slot];
+                values[target] = oldValues[slot];
+            }
+        }
+    }
+
+}
@@ -0,0 +1,232 @@
+package main.utility;
+
+import java.util.Arrays;
+
+/**
+ * KllSketch is a mergeable quantile sketch over int values, after the KLL sketch of Karnin, Lang and Liberty.
+ * Values are kept in a stack of compactors, a value in compactor h stands for 2^h values of the stream.
+ * When the sketch is full the lowest compactor over its capacity is sorted and every other value of it,
+ * starting at a random one of the first two, moves up a level. Capacities shrink by a factor of 2/3 per level
+ * below the top one, so the sketch holds O(k) values however many are added.
+ * <p>
+ * Quantiles are answered with a rank error that shrinks with k, about 1.5% of the count for the default k of 200.
+ * Two sketches merge by concatenating their compactors level by level and compacting again,
+ * which keeps the same error bound, so sketches of small groups can be merged into the sketch of any union.
+ * <p>
+ * Author: Fahad Ali
+ */
+public class KllSketch {
+    public static final int DEFAULT_K = 200;
+    private static final double CAPACITY_RATIO = 2.0 / 3.0;
+
+    private final int k;
+    private int[][] levels = new int[1][8];
+    private int[] levelSizes = new int[1];
+    private int retained;
+    private int maxRetained;
+    private long count;
+    private long random = 0x9E3779B97F4A7C15L; // xorshift state, fixed so a sketch is reproducible
+
+    /**
+     * Constructor for an empty KllSketch with the default k.
+     */
+    public KllSketch() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * Constructor for an empty KllSketch.
+     *
+     * @param k The capacity of the top compactor, larger values keep more values and give smaller errors.
+     */
+    public KllSketch(int k) {
+        if (k < 8) {
+            throw new IllegalArgumentException("k must be at least 8, was " + k);
+        }
+        this.k = k;
+        maxRetained = capacity(0);
+    }
+
+    /**
+     * Add a value to the sketch.
+     *
+     * @param value The value.
+     */
+    public void update(int value) {
+        append(0, value);
+        count++;
+        if (retained >= maxRetained) {
+            compress();
+        }
+    }
+
+    /**
+     * Add every value summarized by another sketch, the other sketch is not changed.
+     *
+     * @param other The sketch to merge into this one.
+     */
+    public void merge(KllSketch other) {
+        while (levels.length < other.levels.length) {
+            grow();
+        }
+        for (int level = 0; level < other.levels.length; level++) {
+            for (int i = 0; i < other.levelSizes[level]; i++) {
+                append(level, other.levels[level][i]);
+            }
+        }
+        count += other.count;
+        while (retained >= maxRetained) {
+            compress();
+        }
+    }
+
+    /**
+     * Get the number of values added to the sketch, including merged sketches.
+     *
+     * @return The count.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Check if no value was added to the sketch.
+     *
+     * @return True if the sketch is empty.
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Get the approximate value at a rank.
+     *
+     * @param rank The rank, between 0 and 1.
+     * @return The value.
+     */
+    public int quantile(double rank) {
+        return quantiles(rank)[0];
+    }
+
+    /**
+     * Get the approximate values at many ranks, sorting the retained values once.
+     *
+     * @param ranks The ranks, each between 0 and 1.
+     * @return The value at each rank, in the order of the ranks.
+     */
+    public int[] quantiles(double... ranks) {
+        if (count == 0) {
+            throw new IllegalStateException("Empty sketch");
+        }
+        // each retained value with its weight packed in one long, sorting by value
+        long[] weighted = new long[retained];
+        int n = 0;
+        for (int level = 0; level < levels.length; level++) {
+            for (int i = 0; i < levelSizes[level]; i++) {
+                weighted[n++] = ((long) levels[level][i] << 32) | level;
+            }
+        }
+        Arrays.sort(weighted);
+
+        int[] result = new int[ranks.length];
+        for (int r = 0; r < ranks.length; r++) {
+            if (ranks[r] < 0 || ranks[r] > 1) {
+                throw new IllegalArgumentException("Rank out of range: " + ranks[r]);
+            }
+            // the weights add up to the count, find the first value whose cumulative weight reaches the rank
+            long target = Math.max(1, (long) Math.ceil(ranks[r] * count));
+            long cumulative = 0;
+            int i = 0;
+            while (i < n - 1 && (cumulative += 1L << (int) weighted[i]) < target) {
+                i++;
+            }
+            result[r] = (int) (weighted[i] >> 32);
+        }
+        return result;
+    }
+
+    /**
+     * Compact the lowest compactor that is over its capacity into the level above it.
+     */
+    private void compress() {
+        for (int level = 0; level < levels.length; level++) {
+            if (levelSizes[level] >= capacity(level)) {
+                if (level + 1 == levels.length) {
+                    grow();
+                }
+                compact(level);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sort a compactor and move every other value of it up a level, an odd value out stays behind.
+     *
+     * @param level The level to compact.
+     */
+    private void compact(int level) {
+        int size = levelSizes[level];
+        int[] values = levels[level];
+        Arrays.sort(values, 0, size);
+        int kept = size & 1;
+        int offset = nextBit();
+        for (int i = kept + offset; i < size; i += 2) {
+            append(level + 1, values[i]);
+        }
+        // an odd number of values leaves the smallest one in the compactor
+        levelSizes[level] = kept;
+        retained -= size - kept;
+    }
+
+    /**
+     * Add a value to a compactor.
+     *
+     * @param level The level of the compactor.
+     * @param value The value.
+     */
+    private void append(int level, int value) {
+        if (levelSizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+        }
+        levels[level][levelSizes[level]++] = value;
+        retained++;
+    }
+
+    /**
+     * Add a compactor on top, which lowers the capacity of every compactor below it.
+     */
+    private void grow() {
+        int height = levels.length + 1;
+        levels = Arrays.copyOf(levels, height);
+        levels[height - 1] = new int[8];
+        levelSizes = Arrays.copyOf(levelSizes, height);
+        maxRetained = 0;
+        for (int level = 0; level < height; level++) {
+            maxRetained += capacity(level);
+        }
+    }
+
+    /**
+     * Get the capacity of a compactor, k at the top and 2/3 of the level above for each level below.
+     *
+     * @param level The level of the compactor.
+     * @return The capacity, at least 2.
+     */
+    private int capacity(int level) {
+        int depth = levels.length - level - 1;
+        return Math.max(2, (int) Math.ceil(k * Math.pow(CAPACITY_RATIO, depth)));
+    }
+
+    /**
+     * Get a pseudo random bit.
+     *
+     * @return 0 or 1.
+     */
+    private int nextBit() {
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (int) (random >>> 63);
+    }
+}
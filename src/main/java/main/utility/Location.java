@@ -6,27 +6,85 @@ package main.utility;
  * Author: Fahad Ali
  */
 public class Location {
-    private final String lat;
-    private final String lon;
+    public static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+    private final double lat;
+    private final double lon;
 
     /**
-     * Constructor for the BuildingInformation
+     * Constructor for the Location
      * Initializes the variables with the provided values.
      *
-     * @param lat Latitude of property
-     * @param lon Longitude of property
+     * @param lat Latitude of property, NaN if unknown
+     * @param lon Longitude of property, NaN if unknown
      */
-    public Location(String lat, String lon) {
+    public Location(double lat, double lon) {
         this.lat = lat;
         this.lon = lon;
     }
 
+    /**
+     * Get the latitude of the property.
+     *
+     * @return The latitude, NaN if unknown.
+     */
+    public double getLatitude() {
+        return lat;
+    }
+
+    /**
+     * Get the longitude of the property.
+     *
+     * @return The longitude, NaN if unknown.
+     */
+    public double getLongitude() {
+        return lon;
+    }
+
+    /**
+     * Get the great circle distance to another location.
+     *
+     * @param other The other location.
+     * @return The distance in meters, NaN if either location is unknown.
+     */
+    public double distanceTo(Location other) {
+        return distance(lat, lon, other.lat, other.lon);
+    }
+
+    /**
+     * Get the great circle distance between two points with the haversine formula, which stays accurate
+     * for the short distances between neighbouring properties.
+     *
+     * @param lat1 Latitude of the first point in degrees.
+     * @param lon1 Longitude of the first point in degrees.
+     * @param lat2 Latitude of the second point in degrees.
+     * @param lon2 Longitude of the second point in degrees.
+     * @return The distance in meters, NaN if a coordinate is NaN.
+     */
+    public static double distance(double lat1, double lon1, double lat2, double lon2) {
+        double sinLat = Math.sin(Math.toRadians(lat2 - lat1) / 2);
+        double sinLon = Math.sin(Math.toRadians(lon2 - lon1) / 2);
+        double h = sinLat * sinLat
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * sinLon * sinLon;
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.sqrt(Math.min(1, h)));
+    }
+
     /**
      * Get the point location as a formatted string, latitude and longitude.
      *
      * @return A  string representing the point location with the format "(latitude, longitude)".
      */
     public String getPointLocation() {
-        return String.format("(%s, %s)", lat, lon);
+        return String.format("(%s, %s)", format(lat), format(lon));
+    }
+
+    /**
+     * Format a coordinate for display, unknown coordinates are left blank.
+     *
+     * @param coordinate The coordinate.
+     * @return The coordinate as a string.
+     */
+    private static String format(double coordinate) {
+        return Double.isNaN(coordinate) ? "" : String.valueOf(coordinate);
     }
 }
@@ -6,33 +6,48 @@ import java.util.Objects;
 /**
  * PropertyAssessment represents a property assessment, contains information
  * such as building details, neighborhood information, location, and assessment class.
+ * It is a lightweight view of one row of a PropertyStore, the detail objects are created when asked for.
  * <p>
  * Author: Fahad Ali
  */
 public class PropertyAssessment implements Comparable<PropertyAssessment> {
-    NumberFormat currencyFormatter = NumberFormat.getCurrencyInstance();
-    private final BuildingInformation buildingInfo;
-    private final NeighborhoodInfo neighborhoodInfo;
-    private final Location location;
-    private final AssessmentClass assessmentClass;
+    private static final ThreadLocal<NumberFormat> currencyFormatter = ThreadLocal.withInitial(() -> {
+        NumberFormat formatter = NumberFormat.getCurrencyInstance();
+        formatter.setMaximumFractionDigits(0);
+        return formatter;
+    });
+    private final PropertyStore store;
+    private final int row;
 
     /**
      * Constructor for the PropertyAssessment
      * Initializes the private instance variables with the provided values.
-     * This class combines all the classes into one singular property.
+     * This class combines all the columns of a row into one singular property.
      *
-     * @param buildingInfo     Building information class
-     * @param neighborhoodInfo Neighborhood information class
-     * @param location         Location information class
-     * @param assessmentClass  Assessment information class
+     * @param store The PropertyStore holding the property.
+     * @param row   The row of the property in the store.
      */
-    public PropertyAssessment(BuildingInformation buildingInfo,
-                              NeighborhoodInfo neighborhoodInfo,
-                              Location location, AssessmentClass assessmentClass) {
-        this.buildingInfo = buildingInfo; // account num, suite, house number, street name, garage
-        this.neighborhoodInfo = neighborhoodInfo; // neighborhoodID, neighborhood, ward, assessed, value
-        this.location = location; // point location tuple
-        this.assessmentClass = assessmentClass; // assessment class 1,2,3 and their percents
+    public PropertyAssessment(PropertyStore store, int row) {
+        this.store = store;
+        this.row = row;
+    }
+
+    /**
+     * Get the store holding this property.
+     *
+     * @return The PropertyStore.
+     */
+    public PropertyStore getStore() {
+        return store;
+    }
+
+    /**
+     * Get the row of this property in its store.
+     *
+     * @return The row index.
+     */
+    public int getRow() {
+        return row;
     }
 
     /**
@@ -41,7 +56,10 @@ public class PropertyAssessment implements Comparable<PropertyAssessment> {
      * @return The BuildingInformation object.
      */
     public BuildingInformation getBuildingInfo() {
-        return buildingInfo;
+        // account num, suite, house number, street name, garage
+        return new BuildingInformation(store.getInt(PropertyStore.ACCOUNT_NUM, row),
+                store.getInt(PropertyStore.SUITE, row), store.getInt(PropertyStore.HOUSE_NUM, row),
+                store.getText(PropertyStore.STREET_NAME, row), store.getText(PropertyStore.GARAGE, row));
     }
 
     /**
@@ -50,7 +68,10 @@ public class PropertyAssessment implements Comparable<PropertyAssessment> {
      * @return The NeighborhoodInfo object.
      */
     public NeighborhoodInfo getNeighborhoodInfo() {
-        return neighborhoodInfo;
+        // neighborhoodID, neighborhood, ward, assessed, value
+        return new NeighborhoodInfo(store.getInt(PropertyStore.NEIGHBORHOOD_ID, row),
+                store.getText(PropertyStore.NEIGHBORHOOD, row), store.getText(PropertyStore.WARD, row),
+                store.getInt(PropertyStore.ASSESSED_VALUE, row));
     }
 
     /**
@@ -59,7 +80,9 @@ public class PropertyAssessment implements Comparable<PropertyAssessment> {
      * @return The Location object.
      */
     public Location getLocation() {
-        return location;
+        // point location tuple
+        return new Location(store.getDouble(PropertyStore.LATITUDE, row),
+                store.getDouble(PropertyStore.LONGITUDE, row));
     }
 
     /**
@@ -68,7 +91,31 @@ public class PropertyAssessment implements Comparable<PropertyAssessment> {
      * @return The AssessmentClass object.
      */
     public AssessmentClass getAssessmentClass() {
-        return assessmentClass;
+        // assessment class 1,2,3 and their percents
+        return new AssessmentClass(store.getDouble(PropertyStore.ASSESSMENT_CLASS1_PERCENT, row),
+                store.getDouble(PropertyStore.ASSESSMENT_CLASS2_PERCENT, row),
+                store.getDouble(PropertyStore.ASSESSMENT_CLASS3_PERCENT, row),
+                store.getText(PropertyStore.ASSESSMENT_CLASS1, row),
+                store.getText(PropertyStore.ASSESSMENT_CLASS2, row),
+                store.getText(PropertyStore.ASSESSMENT_CLASS3, row));
+    }
+
+    /**
+     * Get the account number without building the BuildingInformation.
+     *
+     * @return The account number.
+     */
+    public int getAccountNum() {
+        return store.getAccountNum(row);
+    }
+
+    /**
+     * Get the assessed value without building the NeighborhoodInfo.
+     *
+     * @return The assessed value.
+     */
+    public int getAssessedValue() {
+        return store.getAssessedValue(row);
     }
 
     /**
@@ -82,7 +129,7 @@ public class PropertyAssessment implements Comparable<PropertyAssessment> {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         PropertyAssessment that = (PropertyAssessment) o;
-        return Objects.equals(buildingInfo.getAccountNum(), that.buildingInfo.getAccountNum());
+        return getAccountNum() == that.getAccountNum();
     }
 
     /**
@@ -92,7 +139,7 @@ public class PropertyAssessment implements Comparable<PropertyAssessment> {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(buildingInfo.getAccountNum());
+        return Objects.hash(getAccountNum());
     }
 
     /**
@@ -103,9 +150,9 @@ public class PropertyAssessment implements Comparable<PropertyAssessment> {
      */
     @Override
     public int compareTo(PropertyAssessment o) {
-        if (this.neighborhoodInfo.getAssessedValue() == o.neighborhoodInfo.getAssessedValue()) {
+        if (this.getAssessedValue() == o.getAssessedValue()) {
             return 0;
-        } else if (this.neighborhoodInfo.getAssessedValue() > o.neighborhoodInfo.getAssessedValue()) {
+        } else if (this.getAssessedValue() > o.getAssessedValue()) {
             return 1;
         } else {
             return -1;
@@ -119,8 +166,9 @@ public class PropertyAssessment implements Comparable<PropertyAssessment> {
      */
     @Override
     public String toString() {
-        // format to currency
-        currencyFormatter.setMaximumFractionDigits(0);
+        BuildingInformation buildingInfo = getBuildingInfo();
+        NeighborhoodInfo neighborhoodInfo = getNeighborhoodInfo();
+        AssessmentClass assessmentClass = getAssessmentClass();
 
         // deal with 0 and 0.0 that are returned during parsing form ProcessData.java (if the cell is blank)
         String suiteValue = buildingInfo.getSuite() == 0 ? "" : String.valueOf(buildingInfo.getSuite());
@@ -136,12 +184,12 @@ public class PropertyAssessment implements Comparable<PropertyAssessment> {
                         "Location = %s",
                 buildingInfo.getAccountNum(),
                 suiteValue, buildingInfo.getHouseNum(), buildingInfo.getStreetName(),
-                currencyFormatter.format(neighborhoodInfo.getAssessedValue()),
+                currencyFormatter.get().format(neighborhoodInfo.getAssessedValue()),
                 assessmentClass.getAssessmentClass1(), assessmentClass1PercentStr,
                 assessmentClass.getAssessmentClass2(), assessmentClass2PercentStr,
                 assessmentClass.getAssessmentClass3(), assessmentClass3PercentStr,
                 neighborhoodInfo.getNeighborhood(), neighborhoodInfo.getWard(),
-                location.getPointLocation());
+                getLocation().getPointLocation());
     }
 
     /**
@@ -1,56 +1,103 @@
-
 package main.utility;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntUnaryOperator;
 
 /**
  * The PropertyAssessments class manages a list of PropertyAssessment objects and provides methods
  * for adding, accessing, and manipulating the property assessment data.
+ * The properties live in a PropertyStore, this class keeps the list of store rows that belong to it.
  * <p>
  * Author: Fahad Ali
  */
 public class PropertyAssessments {
-    private final ArrayList<PropertyAssessment> propertyAssessmentList;
-    private final HashMap<Integer, PropertyAssessment> propertyByAccountNum = new HashMap<>();
+    private PropertyStore store;
+    private int[] rows;
+    private int size;
+    private long version; // changes whenever rows are added
+    private final IntIntHashMap rowByAccountNum = new IntIntHashMap();
 
     /**
      * Constructor for the PropertyAssessments
      * Initializes the private instance variables with the provided values.
-     * This class is one of the main driving classes for the program. It creates an ArrayList of PropertyAssessment objects
+     * This class is one of the main driving classes for the program. It keeps a list of rows of a PropertyStore
      * and manages them through the provided methods. It also hashes the account number for quick retrieval.
      *
-     * @param propertyAssessmentList an ArrayList
+     * @param store The PropertyStore the rows belong to.
+     * @param rows  The rows, the array is used as it is.
+     * @param size  The number of rows used from the array.
      */
-    public PropertyAssessments(ArrayList<PropertyAssessment> propertyAssessmentList) {
-        this.propertyAssessmentList = propertyAssessmentList;
+    public PropertyAssessments(PropertyStore store, int[] rows, int size) {
+        this.store = store;
+        this.rows = rows;
+        this.size = size;
     }
 
-
     /**
      * Default constructor for PropertyAssessments.
-     * Initializes an empty list of PropertyAssessment objects and uses specified API.
+     * Initializes an empty list of PropertyAssessment objects in a new PropertyStore.
      */
     public PropertyAssessments() {
-        this.propertyAssessmentList = new ArrayList<>();
+        this(new PropertyStore(), new int[16], 0);
     }
 
     /**
      * Add a PropertyAssessment object to the list of property assessments.
      *
-     * @param property The PropertyAssessment object to be added.
+     * @param property The PropertyAssessment to be added, it must belong to the store of this list.
      */
     public void addList(PropertyAssessment property) {
-        propertyAssessmentList.add(property);
+        if (property.getStore() != store) {
+            throw new IllegalArgumentException("Property belongs to another PropertyStore");
+        }
+        appendRow(property.getRow());
+    }
+
+    /**
+     * Add a store row to the list and hash it by its account number.
+     *
+     * @param row The row of the store to be added.
+     */
+    public void addRow(int row) {
+        appendRow(row);
+        rowByAccountNum.put(store.getAccountNum(row), row);
     }
 
     /**
-     * Get the list of PropertyAssessment objects.
+     * Add and hash every PropertyAssessment of another PropertyAssessments, keeping their order.
+     * Used to merge partial results parsed on separate threads. Rows of another store are copied into this store.
      *
-     * @return An ArrayList of PropertyAssessment objects.
+     * @param other The PropertyAssessments to be merged into this one.
      */
-    public ArrayList<PropertyAssessment> getPropertyAssessmentList() {
-        return propertyAssessmentList;
+    public void addAll(PropertyAssessments other) {
+        if (size == 0 && store.size() == 0 && rowByAccountNum.isEmpty()) {
+            // nothing to merge with, take over the other store as it is
+            store = other.store;
+            rows = Arrays.copyOf(other.rows, Math.max(other.size, 16));
+            size = other.size;
+            rowByAccountNum.putAll(other.rowByAccountNum, 0);
+            version++;
+            return;
+        }
+
+        int offset = other.store == store ? 0 : store.append(other.store);
+        for (int i = 0; i < other.size; i++) {
+            appendRow(other.rows[i] + offset);
+        }
+        rowByAccountNum.putAll(other.rowByAccountNum, offset);
+    }
+
+    /**
+     * Get the list of PropertyAssessment objects. The list is a read-only view,
+     * each PropertyAssessment is created when it is read.
+     *
+     * @return A List of PropertyAssessment objects.
+     */
+    public List<PropertyAssessment> getPropertyAssessmentList() {
+        return new PropertyList();
     }
 
     /**
@@ -59,7 +106,59 @@ public class PropertyAssessments {
      * @return The size of the list.
      */
     public int size() {
-        return propertyAssessmentList.size();
+        return size;
+    }
+
+    /**
+     * Get the store the properties live in.
+     *
+     * @return The PropertyStore.
+     */
+    public PropertyStore getStore() {
+        return store;
+    }
+
+    /**
+     * Get the store row at a position of the list.
+     *
+     * @param index The position in the list.
+     * @return The store row.
+     */
+    public int getRow(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return rows[index];
+    }
+
+    /**
+     * Get the version of the list, which changes every time rows are added to it.
+     * Anything computed from the list is out of date once the version differs.
+     *
+     * @return The version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the store rows of the list in order.
+     *
+     * @return A new array with the store row of every position.
+     */
+    public int[] getRows() {
+        return Arrays.copyOf(rows, size);
+    }
+
+    /**
+     * Copy the list so rows can be added to either one without changing the other. Both share the PropertyStore.
+     *
+     * @return A new PropertyAssessments with the same rows and account numbers.
+     */
+    public PropertyAssessments copy() {
+        PropertyAssessments copy = new PropertyAssessments(store, Arrays.copyOf(rows, Math.max(size, 16)), size);
+        copy.rowByAccountNum.putAll(rowByAccountNum, 0);
+        return copy;
     }
 
     /**
@@ -68,7 +167,7 @@ public class PropertyAssessments {
      * @param property The PropertyAssessment to be hashed.
      */
     public void hashProperty(PropertyAssessment property) {
-        propertyByAccountNum.put(property.getBuildingInfo().getAccountNum(), property);
+        rowByAccountNum.put(property.getAccountNum(), property.getRow());
     }
 
     /**
@@ -78,6 +177,159 @@ public class PropertyAssessments {
      * @return The PropertyAssessment associated with the specified account number.
      */
     public PropertyAssessment getPropertyByAccountNum(int accountNum) {
-        return propertyByAccountNum.get(accountNum);
+        int row = rowByAccountNum.get(accountNum);
+        return row < 0 ? null : new PropertyAssessment(store, row);
+    }
+
+    /**
+     * Retrieve the store row of a property by its account number without creating a PropertyAssessment.
+     *
+     * @param accountNum The account number to look up.
+     * @return The store row, or -1 if no property has the account number.
+     */
+    public int getRowByAccountNum(int accountNum) {
+        return rowByAccountNum.get(accountNum);
+    }
+
+    /**
+     * Retrieve the properties of many account numbers at once. Account numbers that are not found are skipped.
+     *
+     * @param accountNums The account numbers to look up.
+     * @return A PropertyAssessments with the found properties in the order of the account numbers.
+     */
+    public PropertyAssessments getPropertiesByAccountNums(int[] accountNums) {
+        int[] found = new int[accountNums.length];
+        rowByAccountNum.getAll(accountNums, found);
+        int count = 0;
+        for (int row : found) {
+            if (row >= 0) {
+                found[count++] = row;
+            }
+        }
+        return new PropertyAssessments(store, found, count);
+    }
+
+    /**
+     * Get one page of the list, optionally sorted. A sorted page keeps only the first offset + limit properties
+     * of the sort order in a bounded heap, so the whole list is never sorted.
+     * Orders over text columns rank every row of the store first, a SortPermutation built once saves that work.
+     *
+     * @param offset  The position of the first property of the page in the sorted list.
+     * @param limit   The largest number of properties on the page.
+     * @param sortKey The order of the properties.
+     * @return The page, with the size of the whole list as its total count.
+     */
+    public PropertyPage getPage(int offset, int limit, PropertySortKey sortKey) {
+        if (sortKey == PropertySortKey.UNSORTED) {
+            return getPage(offset, limit, (IntUnaryOperator) null);
+        }
+        if (sortKey.hasSortValue()) {
+            return getPage(offset, limit, row -> sortKey.sortValue(store, row));
+        }
+        int[] ranks = sortKey.ranks(store);
+        return getPage(offset, limit, sortKey.isDescending() ? row -> ~ranks[row] : row -> ranks[row]);
+    }
+
+    /**
+     * Get one page of the list sorted by a value of every store row, smaller values first.
+     * Properties with equal values keep their list order.
+     *
+     * @param offset    The position of the first property of the page in the sorted list.
+     * @param limit     The largest number of properties on the page.
+     * @param sortValue Gives the sort value of a store row, null keeps the list order.
+     * @return The page, with the size of the whole list as its total count.
+     */
+    public PropertyPage getPage(int offset, int limit, IntUnaryOperator sortValue) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Negative offset or limit");
+        }
+        int from = Math.min(offset, size);
+        int to = (int) Math.min((long) from + limit, size);
+        int[] pageRows;
+        if (sortValue == null) {
+            pageRows = Arrays.copyOfRange(rows, from, to);
+        } else {
+            int[] positions = topPositions(to, sortValue);
+            pageRows = new int[to - from];
+            for (int i = from; i < to; i++) {
+                pageRows[i - from] = rows[positions[i]];
+            }
+        }
+        return new PropertyPage(new PropertyAssessments(store, pageRows, pageRows.length), size, from);
+    }
+
+    /**
+     * Find the positions of the first properties in a sort order with a bounded max-heap.
+     * Each property is a long with its sort value in the high bits and its list position in the low bits,
+     * so ties sort by position. The heap keeps the best count keys seen so far with the worst on top,
+     * a property only enters when it sorts before the top, so the cost is O(n log count).
+     *
+     * @param count     The number of positions to find.
+     * @param sortValue Gives the sort value of a store row.
+     * @return The positions in sort order.
+     */
+    private int[] topPositions(int count, IntUnaryOperator sortValue) {
+        long[] heap = new long[count];
+        int heapSize = 0;
+        for (int position = 0; position < size && count > 0; position++) {
+            long key = ((long) sortValue.applyAsInt(rows[position]) << 32) | position;
+            if (heapSize < count) {
+                int child = heapSize++;
+                while (child > 0 && heap[(child - 1) >>> 1] < key) {
+                    heap[child] = heap[(child - 1) >>> 1];
+                    child = (child - 1) >>> 1;
+                }
+                heap[child] = key;
+            } else if (key < heap[0]) {
+                int parent = 0;
+                int child;
+                while ((child = 2 * parent + 1) < heapSize) {
+                    if (child + 1 < heapSize && heap[child + 1] > heap[child]) {
+                        child++;
+                    }
+                    if (heap[child] <= key) {
+                        break;
+                    }
+                    heap[parent] = heap[child];
+                    parent = child;
+                }
+                heap[parent] = key;
+            }
+        }
+
+        Arrays.sort(heap, 0, heapSize);
+        int[] positions = new int[heapSize];
+        for (int i = 0; i < heapSize; i++) {
+            positions[i] = (int) heap[i];
+        }
+        return positions;
+    }
+
+    /**
+     * Append a row to the list, growing the row array when needed.
+     *
+     * @param row The store row.
+     */
+    private void appendRow(int row) {
+        if (size == rows.length) {
+            rows = Arrays.copyOf(rows, Math.max(16, size + (size >> 1)));
+        }
+        rows[size++] = row;
+        version++;
+    }
+
+    /**
+     * Read-only list view that creates a PropertyAssessment for the row at each position.
+     */
+    private class PropertyList extends AbstractList<PropertyAssessment> implements RandomAccess {
+        @Override
+        public PropertyAssessment get(int index) {
+            return new PropertyAssessment(store, getRow(index));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
     }
-}
\ No newline at end of file
+}
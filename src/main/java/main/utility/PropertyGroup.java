@@ -0,0 +1,31 @@
+package main.utility;
+
+/**
+ * The PropertyGroup enum lists the text columns properties can be grouped by for statistics.
+ * <p>
+ * Author: Fahad Ali
+ */
+public enum PropertyGroup {
+    NEIGHBOURHOOD(PropertyStore.NEIGHBORHOOD),
+    WARD(PropertyStore.WARD);
+
+    private final int column;
+
+    /**
+     * Constructor for a PropertyGroup.
+     *
+     * @param column The text column constant of PropertyStore the properties are grouped by.
+     */
+    PropertyGroup(int column) {
+        this.column = column;
+    }
+
+    /**
+     * Get the text column the properties are grouped by.
+     *
+     * @return The text column constant of PropertyStore.
+     */
+    public int getColumn() {
+        return column;
+    }
+}
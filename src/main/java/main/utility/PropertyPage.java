@@ -0,0 +1,82 @@
+package main.utility;
+
+import java.util.List;
+
+/**
+ * The PropertyPage class holds one page of a search result together with the number of properties
+ * the whole search matched.
+ * <p>
+ * Author: Fahad Ali
+ */
+public class PropertyPage {
+    private final PropertyAssessments properties;
+    private final int totalCount;
+    private final int offset;
+
+    /**
+     * Constructor for a PropertyPage.
+     *
+     * @param properties The properties of the page, in page order.
+     * @param totalCount The number of properties the search matched.
+     * @param offset     The position of the first property of the page in the whole result.
+     */
+    public PropertyPage(PropertyAssessments properties, int totalCount, int offset) {
+        this.properties = properties;
+        this.totalCount = totalCount;
+        this.offset = offset;
+    }
+
+    /**
+     * Get the properties of the page.
+     *
+     * @return The properties of the page.
+     */
+    public PropertyAssessments getProperties() {
+        return properties;
+    }
+
+    /**
+     * Get the properties of the page as a list.
+     *
+     * @return A read-only List of PropertyAssessment objects.
+     */
+    public List<PropertyAssessment> getPropertyAssessmentList() {
+        return properties.getPropertyAssessmentList();
+    }
+
+    /**
+     * Get the number of properties the whole search matched.
+     *
+     * @return The total number of matches.
+     */
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Get the position of the first property of the page in the whole result.
+     *
+     * @return The offset of the page.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Get the number of properties on the page.
+     *
+     * @return The size of the page.
+     */
+    public int size() {
+        return properties.size();
+    }
+
+    /**
+     * Check if more properties follow this page.
+     *
+     * @return True if the whole result continues after this page.
+     */
+    public boolean hasNextPage() {
+        return offset + properties.size() < totalCount;
+    }
+}
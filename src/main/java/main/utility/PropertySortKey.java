@@ -0,0 +1,263 @@
+package main.utility;
+
+import java.util.Arrays;
+
+/**
+ * The PropertySortKey enum lists the orders a page of properties can be sorted in, one ascending and one
+ * descending order for every column of the property table.
+ * Properties that tie keep the order they have in their list.
+ * <p>
+ * Author: Fahad Ali
+ */
+public enum PropertySortKey {
+    UNSORTED,
+    ASSESSED_VALUE_ASCENDING,
+    ASSESSED_VALUE_DESCENDING,
+    ACCOUNT_NUMBER_ASCENDING,
+    ACCOUNT_NUMBER_DESCENDING,
+    ADDRESS_ASCENDING,
+    ADDRESS_DESCENDING,
+    NEIGHBOURHOOD_ASCENDING,
+    NEIGHBOURHOOD_DESCENDING,
+    ASSESSMENT_CLASS_ASCENDING,
+    ASSESSMENT_CLASS_DESCENDING;
+
+    /**
+     * Check if the order is descending.
+     *
+     * @return True for the descending orders.
+     */
+    public boolean isDescending() {
+        switch (this) {
+            case ASSESSED_VALUE_DESCENDING:
+            case ACCOUNT_NUMBER_DESCENDING:
+            case ADDRESS_DESCENDING:
+            case NEIGHBOURHOOD_DESCENDING:
+            case ASSESSMENT_CLASS_DESCENDING:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Get the ascending order of the same column.
+     *
+     * @return The ascending key, UNSORTED stays UNSORTED.
+     */
+    public PropertySortKey getAscending() {
+        switch (this) {
+            case ASSESSED_VALUE_DESCENDING:
+                return ASSESSED_VALUE_ASCENDING;
+            case ACCOUNT_NUMBER_DESCENDING:
+                return ACCOUNT_NUMBER_ASCENDING;
+            case ADDRESS_DESCENDING:
+                return ADDRESS_ASCENDING;
+            case NEIGHBOURHOOD_DESCENDING:
+                return NEIGHBOURHOOD_ASCENDING;
+            case ASSESSMENT_CLASS_DESCENDING:
+                return ASSESSMENT_CLASS_ASCENDING;
+            default:
+                return this;
+        }
+    }
+
+    /**
+     * Check if the order is over an int column, so every row has a sort value of its own.
+     * The text columns are sorted by the ranks of their rows instead.
+     *
+     * @return True for the account number and assessed value orders.
+     */
+    public boolean hasSortValue() {
+        switch (getAscending()) {
+            case ASSESSED_VALUE_ASCENDING:
+            case ACCOUNT_NUMBER_ASCENDING:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Get the value a row is sorted by, smaller values come first.
+     *
+     * @param store The PropertyStore holding the row.
+     * @param row   The row.
+     * @return The sort value of the row.
+     * @throws IllegalStateException If the order is over a text column, which is sorted by ranks.
+     */
+    public int sortValue(PropertyStore store, int row) {
+        switch (this) {
+            case ASSESSED_VALUE_ASCENDING:
+                return store.getAssessedValue(row);
+            case ASSESSED_VALUE_DESCENDING:
+                return ~store.getAssessedValue(row); // reverses the order and, unlike negating, never overflows
+            case ACCOUNT_NUMBER_ASCENDING:
+                return store.getAccountNum(row);
+            case ACCOUNT_NUMBER_DESCENDING:
+                return ~store.getAccountNum(row);
+            case UNSORTED:
+                return 0;
+            default:
+                throw new IllegalStateException(this + " is sorted by ranks");
+        }
+    }
+
+    /**
+     * Rank every row of a store in the ascending order of the column. Rows with equal values share a rank
+     * and the ranks have no gaps, so a rank is the number of distinct values that sort before the row.
+     * Addresses sort by street name, then house number, then suite. Names sort ignoring case,
+     * an assessment class sorts by its first class.
+     *
+     * @param store The PropertyStore to rank.
+     * @return The rank of every row.
+     * @throws IllegalStateException If the order is UNSORTED.
+     */
+    public int[] ranks(PropertyStore store) {
+        switch (getAscending()) {
+            case ASSESSED_VALUE_ASCENDING:
+                return denseRanks(store.intColumn(PropertyStore.ASSESSED_VALUE), store.size());
+            case ACCOUNT_NUMBER_ASCENDING:
+                return denseRanks(store.intColumn(PropertyStore.ACCOUNT_NUM), store.size());
+            case ADDRESS_ASCENDING:
+                int[] streetAndHouse = thenBy(rowRanks(store, PropertyStore.STREET_NAME),
+                        denseRanks(store.intColumn(PropertyStore.HOUSE_NUM), store.size()));
+                return thenBy(streetAndHouse, denseRanks(store.intColumn(PropertyStore.SUITE), store.size()));
+            case NEIGHBOURHOOD_ASCENDING:
+                return rowRanks(store, PropertyStore.NEIGHBORHOOD);
+            case ASSESSMENT_CLASS_ASCENDING:
+                return rowRanks(store, PropertyStore.ASSESSMENT_CLASS1);
+            default:
+                throw new IllegalStateException(this + " has no order to rank");
+        }
+    }
+
+    /**
+     * Rank every row of a store by the name in a text column.
+     *
+     * @param store      The PropertyStore to rank.
+     * @param textColumn The text column constant.
+     * @return The rank of every row.
+     */
+    private static int[] rowRanks(PropertyStore store, int textColumn) {
+        int[] codeRanks = codeRanks(store.getDictionary(textColumn));
+        int[] codes = store.codeColumn(textColumn);
+        int[] ranks = new int[store.size()];
+
+        // names no row holds would leave gaps, so only the used names are counted
+        int[] denseRanks = new int[codeRanks.length];
+        for (int row = 0; row < ranks.length; row++) {
+            denseRanks[codeRanks[codes[row]]] = 1;
+        }
+        int used = 0;
+        for (int rank = 0; rank < denseRanks.length; rank++) {
+            int isUsed = denseRanks[rank];
+            denseRanks[rank] = used;
+            used += isUsed;
+        }
+        for (int row = 0; row < ranks.length; row++) {
+            ranks[row] = denseRanks[codeRanks[codes[row]]];
+        }
+        return ranks;
+    }
+
+    /**
+     * Rank every name of a dictionary, ignoring case first and then by case so every distinct name
+     * has its own rank. Only the names are sorted, which are far fewer than the rows.
+     *
+     * @param dictionary The dictionary of a text column.
+     * @return The rank of every code.
+     */
+    private static int[] codeRanks(StringDictionary dictionary) {
+        Integer[] codes = new Integer[dictionary.size()];
+        for (int code = 0; code < codes.length; code++) {
+            codes[code] = code;
+        }
+        Arrays.sort(codes, (a, b) -> {
+            String first = dictionary.decode(a);
+            String second = dictionary.decode(b);
+            int order = String.CASE_INSENSITIVE_ORDER.compare(first, second);
+            return order != 0 ? order : first.compareTo(second);
+        });
+        int[] ranks = new int[codes.length];
+        for (int rank = 0; rank < codes.length; rank++) {
+            ranks[codes[rank]] = rank;
+        }
+        return ranks;
+    }
+
+    /**
+     * Rank the rows of an int column by their values. The values are sorted together with their rows,
+     * so the ranks are handed out in one pass over the sorted values.
+     *
+     * @param values   The int column.
+     * @param rowCount The number of rows to rank.
+     * @return The dense rank of every row.
+     */
+    private static int[] denseRanks(int[] values, int rowCount) {
+        long[] keys = new long[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            keys[row] = ((long) values[row] << 32) | row;
+        }
+        Arrays.sort(keys);
+        int[] ranks = new int[rowCount];
+        int rank = -1;
+        for (int i = 0; i < rowCount; i++) {
+            if (i == 0 || (keys[i] >> 32) != (keys[i - 1] >> 32)) {
+                rank++;
+            }
+            ranks[(int) keys[i]] = rank;
+        }
+        return ranks;
+    }
+
+    /**
+     * Rank the rows by one set of ranks and break its ties with another. Both are dense, so two stable
+     * counting sorts, the tie ranks first, list the rows in the combined order without comparing.
+     *
+     * @param ranks    The dense rank of every row.
+     * @param tieRanks The dense rank of every row used when the first ranks are equal.
+     * @return The dense combined rank of every row.
+     */
+    private static int[] thenBy(int[] ranks, int[] tieRanks) {
+        int rowCount = ranks.length;
+        int[] rows = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            rows[row] = row;
+        }
+        rows = countingSort(countingSort(rows, tieRanks), ranks);
+
+        int[] combined = new int[rowCount];
+        int rank = -1;
+        for (int i = 0; i < rowCount; i++) {
+            int row = rows[i];
+            if (i == 0 || ranks[row] != ranks[rows[i - 1]] || tieRanks[row] != tieRanks[rows[i - 1]]) {
+                rank++;
+            }
+            combined[row] = rank;
+        }
+        return combined;
+    }
+
+    /**
+     * Sort rows by a dense key, rows with equal keys keep their order.
+     *
+     * @param rows The rows to sort.
+     * @param keys The dense key of every row, each below the number of rows.
+     * @return The sorted rows in a new array.
+     */
+    private static int[] countingSort(int[] rows, int[] keys) {
+        int[] start = new int[keys.length + 1];
+        for (int row : rows) {
+            start[keys[row] + 1]++;
+        }
+        for (int key = 0; key < keys.length; key++) {
+            start[key + 1] += start[key];
+        }
+        int[] sorted = new int[rows.length];
+        for (int row : rows) {
+            sorted[start[keys[row]]++] = row;
+        }
+        return sorted;
+    }
+}
@@ -0,0 +1,316 @@
+package main.utility;
+
+import java.util.Arrays;
+
+/**
+ * PropertyStore holds property assessment data column by column. Every property is a row index,
+ * numbers are kept in primitive arrays and text is kept as codes into a StringDictionary,
+ * so a property costs a few bytes per column instead of a graph of objects.
+ * <p>
+ * Columns are addressed with the constants of this class, for example
+ * {@code store.getInt(PropertyStore.ASSESSED_VALUE, row)}.
+ * <p>
+ * Author: Fahad Ali
+ */
+public class PropertyStore {
+    // int columns
+    public static final int ACCOUNT_NUM = 0;
+    public static final int SUITE = 1;
+    public static final int HOUSE_NUM = 2;
+    public static final int NEIGHBORHOOD_ID = 3;
+    public static final int ASSESSED_VALUE = 4;
+    public static final int INT_COLUMNS = 5;
+
+    // double columns
+    public static final int ASSESSMENT_CLASS1_PERCENT = 0;
+    public static final int ASSESSMENT_CLASS2_PERCENT = 1;
+    public static final int ASSESSMENT_CLASS3_PERCENT = 2;
+    public static final int LATITUDE = 3;
+    public static final int LONGITUDE = 4;
+    public static final int DOUBLE_COLUMNS = 5;
+
+    // text columns
+    public static final int STREET_NAME = 0;
+    public static final int GARAGE = 1;
+    public static final int NEIGHBORHOOD = 2;
+    public static final int WARD = 3;
+    public static final int ASSESSMENT_CLASS1 = 4;
+    public static final int ASSESSMENT_CLASS2 = 5;
+    public static final int ASSESSMENT_CLASS3 = 6;
+    public static final int TEXT_COLUMNS = 7;
+
+    // dictionaries, the three assessment class columns share one
+    public static final int STREET_DICTIONARY = 0;
+    public static final int GARAGE_DICTIONARY = 1;
+    public static final int NEIGHBORHOOD_DICTIONARY = 2;
+    public static final int WARD_DICTIONARY = 3;
+    public static final int ASSESSMENT_CLASS_DICTIONARY = 4;
+    public static final int DICTIONARIES = 5;
+    private static final int[] TEXT_DICTIONARY = {
+            STREET_DICTIONARY, GARAGE_DICTIONARY, NEIGHBORHOOD_DICTIONARY, WARD_DICTIONARY,
+            ASSESSMENT_CLASS_DICTIONARY, ASSESSMENT_CLASS_DICTIONARY, ASSESSMENT_CLASS_DICTIONARY
+    };
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int[][] ints = new int[INT_COLUMNS][];
+    private final double[][] doubles = new double[DOUBLE_COLUMNS][];
+    private final int[][] codes = new int[TEXT_COLUMNS][];
+    private final StringDictionary[] dictionaries = new StringDictionary[DICTIONARIES];
+    private int size;
+
+    /**
+     * Constructor for an empty PropertyStore.
+     */
+    public PropertyStore() {
+        for (int i = 0; i < DICTIONARIES; i++) {
+            dictionaries[i] = new StringDictionary();
+        }
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructor for a PropertyStore around existing columns, used when loading saved data.
+     * The arrays are used as they are, not copied.
+     *
+     * @param size         The number of rows.
+     * @param ints         The int columns, indexed by the int column constants.
+     * @param doubles      The double columns, indexed by the double column constants.
+     * @param codes        The text columns as dictionary codes, indexed by the text column constants.
+     * @param dictionaries The dictionaries, indexed by the dictionary constants.
+     */
+    public PropertyStore(int size, int[][] ints, double[][] doubles, int[][] codes, StringDictionary[] dictionaries) {
+        if (ints.length != INT_COLUMNS || doubles.length != DOUBLE_COLUMNS || codes.length != TEXT_COLUMNS
+                || dictionaries.length != DICTIONARIES) {
+            throw new IllegalArgumentException("Wrong number of columns");
+        }
+        System.arraycopy(ints, 0, this.ints, 0, INT_COLUMNS);
+        System.arraycopy(doubles, 0, this.doubles, 0, DOUBLE_COLUMNS);
+        System.arraycopy(codes, 0, this.codes, 0, TEXT_COLUMNS);
+        System.arraycopy(dictionaries, 0, this.dictionaries, 0, DICTIONARIES);
+        this.size = size;
+    }
+
+    /**
+     * Get the number of rows.
+     *
+     * @return The number of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add an empty row, its columns are then filled in with the setters.
+     *
+     * @return The index of the new row.
+     */
+    public int newRow() {
+        if (size == ints[0].length) {
+            allocate(Math.max(INITIAL_CAPACITY, size + (size >> 1)));
+        }
+        for (int column = 0; column < TEXT_COLUMNS; column++) {
+            codes[column][size] = dictionaries[TEXT_DICTIONARY[column]].encode("");
+        }
+        return size++;
+    }
+
+    /**
+     * Append every row of another store to this one.
+     *
+     * @param other The store to copy rows from.
+     * @return The index in this store of the first copied row.
+     */
+    public int append(PropertyStore other) {
+        int first = size;
+        int count = other.size;
+        if (size + count > ints[0].length) {
+            allocate(Math.max(size + count, size + (size >> 1)));
+        }
+        for (int column = 0; column < INT_COLUMNS; column++) {
+            System.arraycopy(other.ints[column], 0, ints[column], first, count);
+        }
+        for (int column = 0; column < DOUBLE_COLUMNS; column++) {
+            System.arraycopy(other.doubles[column], 0, doubles[column], first, count);
+        }
+
+        int[][] remaps = new int[DICTIONARIES][];
+        for (int dictionary = 0; dictionary < DICTIONARIES; dictionary++) {
+            remaps[dictionary] = dictionaries[dictionary].merge(other.dictionaries[dictionary]);
+        }
+        for (int column = 0; column < TEXT_COLUMNS; column++) {
+            int[] remap = remaps[TEXT_DICTIONARY[column]];
+            int[] source = other.codes[column];
+            int[] target = codes[column];
+            for (int row = 0; row < count; row++) {
+                target[first + row] = remap[source[row]];
+            }
+        }
+        size += count;
+        return first;
+    }
+
+    /**
+     * Set an int column of a row.
+     *
+     * @param column The int column constant.
+     * @param row    The row.
+     * @param value  The value.
+     */
+    public void setInt(int column, int row, int value) {
+        ints[column][row] = value;
+    }
+
+    /**
+     * Set a double column of a row.
+     *
+     * @param column The double column constant.
+     * @param row    The row.
+     * @param value  The value.
+     */
+    public void setDouble(int column, int row, double value) {
+        doubles[column][row] = value;
+    }
+
+    /**
+     * Set a text column of a row.
+     *
+     * @param column The text column constant.
+     * @param row    The row.
+     * @param value  The value, null is stored as an empty string.
+     */
+    public void setText(int column, int row, String value) {
+        codes[column][row] = dictionaries[TEXT_DICTIONARY[column]].encode(value);
+    }
+
+    /**
+     * Get an int column of a row.
+     *
+     * @param column The int column constant.
+     * @param row    The row.
+     * @return The value.
+     */
+    public int getInt(int column, int row) {
+        return ints[column][row];
+    }
+
+    /**
+     * Get a double column of a row.
+     *
+     * @param column The double column constant.
+     * @param row    The row.
+     * @return The value.
+     */
+    public double getDouble(int column, int row) {
+        return doubles[column][row];
+    }
+
+    /**
+     * Get the dictionary code of a text column of a row.
+     *
+     * @param column The text column constant.
+     * @param row    The row.
+     * @return The code.
+     */
+    public int getCode(int column, int row) {
+        return codes[column][row];
+    }
+
+    /**
+     * Get a text column of a row.
+     *
+     * @param column The text column constant.
+     * @param row    The row.
+     * @return The text.
+     */
+    public String getText(int column, int row) {
+        return dictionaries[TEXT_DICTIONARY[column]].decode(codes[column][row]);
+    }
+
+    /**
+     * Get the dictionary used by a text column.
+     *
+     * @param column The text column constant.
+     * @return The dictionary.
+     */
+    public StringDictionary getDictionary(int column) {
+        return dictionaries[TEXT_DICTIONARY[column]];
+    }
+
+    /**
+     * Get the array backing an int column. Only the first size() entries are rows, the array must not be modified.
+     *
+     * @param column The int column constant.
+     * @return The backing array.
+     */
+    public int[] intColumn(int column) {
+        return ints[column];
+    }
+
+    /**
+     * Get the array backing a double column. Only the first size() entries are rows, the array must not be modified.
+     *
+     * @param column The double column constant.
+     * @return The backing array.
+     */
+    public double[] doubleColumn(int column) {
+        return doubles[column];
+    }
+
+    /**
+     * Get the array backing a text column. Only the first size() entries are rows, the array must not be modified.
+     *
+     * @param column The text column constant.
+     * @return The backing array of dictionary codes.
+     */
+    public int[] codeColumn(int column) {
+        return codes[column];
+    }
+
+    /**
+     * Get a dictionary by its dictionary constant.
+     *
+     * @param dictionary The dictionary constant.
+     * @return The dictionary.
+     */
+    public StringDictionary dictionary(int dictionary) {
+        return dictionaries[dictionary];
+    }
+
+    /**
+     * Get the account number of a row.
+     *
+     * @param row The row.
+     * @return The account number.
+     */
+    public int getAccountNum(int row) {
+        return ints[ACCOUNT_NUM][row];
+    }
+
+    /**
+     * Get the assessed value of a row.
+     *
+     * @param row The row.
+     * @return The assessed value.
+     */
+    public int getAssessedValue(int row) {
+        return ints[ASSESSED_VALUE][row];
+    }
+
+    /**
+     * Resize every column to a new capacity.
+     *
+     * @param capacity The new capacity.
+     */
+    private void allocate(int capacity) {
+        for (int column = 0; column < INT_COLUMNS; column++) {
+            ints[column] = ints[column] == null ? new int[capacity] : Arrays.copyOf(ints[column], capacity);
+        }
+        for (int column = 0; column < DOUBLE_COLUMNS; column++) {
+            doubles[column] = doubles[column] == null ? new double[capacity] : Arrays.copyOf(doubles[column], capacity);
+        }
+        for (int column = 0; column < TEXT_COLUMNS; column++) {
+            codes[column] = codes[column] == null ? new int[capacity] : Arrays.copyOf(codes[column], capacity);
+        }
+    }
+}
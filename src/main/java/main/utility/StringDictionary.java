@@ -0,0 +1,77 @@
+package main.utility;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * StringDictionary gives every distinct string a small integer code, so columns that repeat the same few
+ * values (street names, neighborhoods, wards, assessment classes) can be stored as int codes.
+ * Codes are handed out in the order strings are first seen, starting at 0.
+ * <p>
+ * Author: Fahad Ali
+ */
+public class StringDictionary {
+    private final HashMap<String, Integer> codes = new HashMap<>();
+    private final ArrayList<String> values = new ArrayList<>();
+
+    /**
+     * Get the code of a string, adding it to the dictionary if it is new. Null is stored as an empty string.
+     *
+     * @param value The string to encode.
+     * @return The code of the string.
+     */
+    public int encode(String value) {
+        String key = value == null ? "" : value;
+        Integer code = codes.get(key);
+        if (code == null) {
+            code = values.size();
+            codes.put(key, code);
+            values.add(key);
+        }
+        return code;
+    }
+
+    /**
+     * Get the code of a string without adding it.
+     *
+     * @param value The string to look up.
+     * @return The code of the string, or -1 if it is not in the dictionary.
+     */
+    public int find(String value) {
+        Integer code = codes.get(value == null ? "" : value);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * Get the string for a code.
+     *
+     * @param code The code.
+     * @return The string the code stands for.
+     */
+    public String decode(int code) {
+        return values.get(code);
+    }
+
+    /**
+     * Get the number of distinct strings.
+     *
+     * @return The size of the dictionary.
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Add every string of another dictionary to this one.
+     *
+     * @param other The dictionary to merge in.
+     * @return A table mapping each code of the other dictionary to its code in this dictionary.
+     */
+    public int[] merge(StringDictionary other) {
+        int[] remap = new int[other.size()];
+        for (int code = 0; code < remap.length; code++) {
+            remap[code] = encode(other.decode(code));
+        }
+        return remap;
+    }
+}
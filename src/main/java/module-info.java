@@ -3,6 +3,7 @@ module com.example.demo {
     requires javafx.fxml;
     requires com.google.gson;
     requires java.net.http;
+    requires static jdk.incubator.vector; // optional, enables the vectorized scans in main.index
 
 
     opens com.application.main to javafx.fxml;